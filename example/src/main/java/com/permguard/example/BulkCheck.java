@@ -0,0 +1,525 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.permguard.pep.client.AZClient;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.exception.ErrorKind;
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.model.response.EvaluationResponse;
+import com.permguard.pep.server.AZServer;
+import com.permguard.pep.utils.AZRequestReader;
+import com.permguard.pep.utils.Hash128;
+import com.permguard.pep.utils.RequestFingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+/**
+ * Command line tool evaluating a JSONL file of authorization requests, one request per line, in the shape of
+ * {@code requests/ok_onlyone1.json}, and writing one JSONL response per request, in the order of the input.
+ * <p>
+ * The input is memory-mapped and parsed one line at a time, checks run through {@link AZClient#checkAll} with
+ * bounded concurrency, and consecutive atomic requests sharing the same authorization model can be batched into
+ * multi-evaluation RPCs. A checkpoint next to the output records how far the run got, so it can be resumed.
+ * Starting at a given input offset appends to the output instead of replacing it.
+ * <pre>
+ * BulkCheck --input requests.jsonl --output responses.jsonl [--host localhost] [--port 9094] [--tls]
+ *           [--concurrency 16] [--batch 1] [--offset BYTES | --resume] [--local-server]
+ * </pre>
+ */
+public class BulkCheck {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options == null) {
+            System.err.println("Usage: BulkCheck --input <file> --output <file> [--host <host>] [--port <port>] [--tls]"
+                    + " [--concurrency <n>] [--batch <n>] [--offset <bytes> | --resume] [--local-server]");
+            System.exit(2);
+        }
+
+        Path checkpoint = options.output.resolveSibling(options.output.getFileName() + ".checkpoint");
+        long inputOffset = 0;
+        long outputBytes = 0;
+        if (options.resume) {
+            if (Files.exists(checkpoint)) {
+                String[] saved = Files.readString(checkpoint).trim().split(" ");
+                inputOffset = Long.parseLong(saved[0]);
+                outputBytes = Long.parseLong(saved[1]);
+            }
+        } else if (options.offset >= 0) {
+            inputOffset = options.offset;
+            outputBytes = Files.exists(options.output) ? Files.size(options.output) : 0;
+        }
+
+        AZServer server = null;
+        if (options.localServer) {
+            server = new AZServer();
+            server.start(options.port);
+        }
+        AZConfig config = new AZConfig(options.host, options.port, options.plaintext);
+        AZClient client = new AZClient(config);
+
+        int exitCode = 0;
+        try (FileChannel input = FileChannel.open(options.input, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(options.output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Lines written after the last checkpoint are evaluated again, so they are dropped first.
+            output.truncate(outputBytes);
+            output.position(outputBytes);
+
+            RequestReader reader = new RequestReader(input, inputOffset, options.batch);
+            ResultWriter writer = new ResultWriter(output, checkpoint, reader, input.size(), outputBytes, inputOffset);
+            client.checkAll(reader, options.concurrency, true).subscribe(writer);
+            writer.await();
+            System.err.println(writer.progress("Done"));
+            if (writer.failure != null) {
+                System.err.println("❌ Bulk check stopped: " + writer.failure.getMessage());
+                exitCode = 1;
+            }
+        } finally {
+            client.shutdown();
+            if (server != null) {
+                server.stop();
+            }
+        }
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Requests read from consecutive lines of the input, checked with a single RPC.
+     */
+    static final class Group {
+        private final List<AZRequest> requests = new ArrayList<>();
+        private long endOffset;
+
+        /**
+         * Builds the request sent to the PDP: the request itself, or a multi-evaluation request sharing its model.
+         */
+        private AZRequest toRequest() {
+            if (requests.size() == 1) {
+                return requests.get(0);
+            }
+            List<Evaluation> evaluations = new ArrayList<>(requests.size());
+            for (AZRequest atomic : requests) {
+                evaluations.add(new Evaluation(atomic.getRequestId(), atomic.getSubject(), atomic.getResource(),
+                        atomic.getAction(), atomic.getContext()));
+            }
+            return new AZRequest(null, requests.get(0).getAuthorizationModel(), null, null, null, null, evaluations);
+        }
+    }
+
+    /**
+     * Publisher of request groups read from the memory-mapped input, on its own thread and only on demand.
+     */
+    static final class RequestReader implements Flow.Publisher<AZRequest>, Flow.Subscription {
+        private final FileChannel channel;
+        private final long size;
+        private final int batch;
+        private final ExecutorService thread = Executors.newSingleThreadExecutor(task -> {
+            Thread reader = new Thread(task, "bulk-check-reader");
+            reader.setDaemon(true);
+            return reader;
+        });
+        private final ConcurrentLinkedQueue<Group> emitted = new ConcurrentLinkedQueue<>();
+        private Flow.Subscriber<? super AZRequest> subscriber;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+        private byte[] line = new byte[8192];
+        private AZRequest lookahead;
+        private long lookaheadEnd;
+        private long demand;
+        private boolean done;
+
+        RequestReader(FileChannel channel, long offset, int batch) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.position = offset;
+            this.batch = batch;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super AZRequest> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            thread.execute(() -> {
+                demand += n;
+                while (demand > 0 && !done) {
+                    Group group;
+                    try {
+                        group = nextGroup();
+                    } catch (IOException | RuntimeException e) {
+                        done = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    if (group == null) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    demand--;
+                    emitted.add(group);
+                    subscriber.onNext(group.toRequest());
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            thread.execute(() -> done = true);
+        }
+
+        /**
+         * Takes the group matching the next result, the results being emitted in the order of the requests.
+         */
+        Group poll() {
+            return emitted.poll();
+        }
+
+        private Group nextGroup() throws IOException {
+            Group group = new Group();
+            Hash128 groupModel = null;
+            while (group.requests.size() < batch) {
+                if (lookahead == null && !readRequest()) {
+                    break;
+                }
+                boolean batchable = batch > 1 && (lookahead.getEvaluations() == null || lookahead.getEvaluations().isEmpty());
+                if (!group.requests.isEmpty()) {
+                    if (!batchable || !sameModel(groupModel, lookahead.getAuthorizationModel())) {
+                        break;
+                    }
+                } else if (batchable) {
+                    groupModel = modelHash(lookahead.getAuthorizationModel());
+                }
+                group.requests.add(lookahead);
+                group.endOffset = lookaheadEnd;
+                lookahead = null;
+                if (!batchable) {
+                    break;
+                }
+            }
+            return group.requests.isEmpty() ? null : group;
+        }
+
+        /**
+         * Parses the next non-blank line into the lookahead request.
+         */
+        private boolean readRequest() throws IOException {
+            while (position < size) {
+                long start = position;
+                int length = 0;
+                long end = -1;
+                while (position < size) {
+                    byte b = byteAt(position++);
+                    if (b == '\n') {
+                        end = position;
+                        break;
+                    }
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = b;
+                }
+                if (end < 0) {
+                    end = position;
+                }
+                if (isBlank(line, length)) {
+                    continue;
+                }
+                try {
+                    lookahead = AZRequestReader.read(line, 0, length);
+                } catch (IOException e) {
+                    throw new IOException("Invalid request at offset " + start + ": " + e.getMessage(), e);
+                }
+                lookaheadEnd = end;
+                return true;
+            }
+            return false;
+        }
+
+        private byte byteAt(long offset) throws IOException {
+            if (window == null || offset < windowStart || offset >= windowStart + window.capacity()) {
+                windowStart = offset;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW_BYTES, size - offset));
+            }
+            return window.get((int) (offset - windowStart));
+        }
+
+        private static boolean isBlank(byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                if (!Character.isWhitespace(bytes[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Hash128 modelHash(AZModel model) {
+            Hash128 hash = new Hash128();
+            RequestFingerprint.hashModel(model, hash);
+            return hash;
+        }
+
+        private static boolean sameModel(Hash128 expected, AZModel model) {
+            Hash128 actual = modelHash(model);
+            return expected.high() == actual.high() && expected.low() == actual.low();
+        }
+    }
+
+    /**
+     * Subscriber writing the results as JSONL on its own thread, asking for more results as it goes.
+     */
+    static final class ResultWriter implements Flow.Subscriber<AZResult> {
+        private final FileChannel channel;
+        private final OutputStream output;
+        private final Path checkpoint;
+        private final RequestReader reader;
+        private final long inputSize;
+        private final long startOffset;
+        private final ExecutorService thread = Executors.newSingleThreadExecutor(task -> {
+            Thread writer = new Thread(task, "bulk-check-writer");
+            writer.setDaemon(true);
+            return writer;
+        });
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long startNanos = System.nanoTime();
+        private Flow.Subscription subscription;
+        private long outputBytes;
+        private long inputOffset;
+        private long records;
+        private long denied;
+        private long failed;
+        private long lastProgress = System.currentTimeMillis();
+        private volatile Throwable failure;
+
+        ResultWriter(FileChannel channel, Path checkpoint, RequestReader reader, long inputSize, long outputBytes,
+                     long inputOffset) {
+            this.channel = channel;
+            this.output = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            this.checkpoint = checkpoint;
+            this.reader = reader;
+            this.inputSize = inputSize;
+            this.outputBytes = outputBytes;
+            this.inputOffset = inputOffset;
+            this.startOffset = inputOffset;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(256);
+        }
+
+        @Override
+        public void onNext(AZResult result) {
+            thread.execute(() -> {
+                try {
+                    write(reader.poll(), result);
+                } catch (IOException e) {
+                    failure = e;
+                    subscription.cancel();
+                    done.countDown();
+                    return;
+                }
+                subscription.request(1);
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            thread.execute(() -> {
+                failure = throwable;
+                finish();
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            thread.execute(this::finish);
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+
+        private void write(Group group, AZResult result) throws IOException {
+            List<AZRequest> requests = group.requests;
+            if (requests.size() == 1) {
+                writeLine(requests.get(0), result.isSuccess() ? result.getResponse() : null, result);
+            } else {
+                List<EvaluationResponse> evaluations = result.isSuccess() ? result.getResponse().getEvaluations() : null;
+                boolean complete = evaluations != null && evaluations.size() == requests.size();
+                for (int i = 0; i < requests.size(); i++) {
+                    if (complete) {
+                        EvaluationResponse evaluation = evaluations.get(i);
+                        writeLine(requests.get(i), new AZResponse(evaluation.isDecision(), evaluation.getRequestId(),
+                                evaluation.getContext(), List.of()), result);
+                    } else {
+                        writeLine(requests.get(i), null, result.isSuccess()
+                                ? AZResult.failure(ErrorKind.INTERNAL,
+                                "The PDP returned an incomplete batch.", null)
+                                : result);
+                    }
+                }
+            }
+            inputOffset = group.endOffset;
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                lastProgress = now;
+                saveCheckpoint();
+                System.err.println(progress("Progress"));
+            }
+        }
+
+        private void writeLine(AZRequest request, AZResponse response, AZResult result) throws IOException {
+            byte[] json;
+            if (response != null) {
+                json = objectMapper.writeValueAsBytes(response);
+                if (!response.isDecision()) {
+                    denied++;
+                }
+            } else {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("requestId", request.getRequestId());
+                error.put("error", Map.of("kind", result.getErrorKind().name(),
+                        "retryable", result.isRetryable(), "message", String.valueOf(result.getErrorMessage())));
+                json = objectMapper.writeValueAsBytes(error);
+                failed++;
+            }
+            output.write(json);
+            output.write('\n');
+            outputBytes += json.length + 1;
+            records++;
+        }
+
+        private void saveCheckpoint() throws IOException {
+            output.flush();
+            channel.force(false);
+            Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            Files.writeString(temp, inputOffset + " " + outputBytes + "\n", StandardCharsets.US_ASCII);
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void finish() {
+            try {
+                saveCheckpoint();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = new UncheckedIOException(e);
+                }
+            }
+            done.countDown();
+        }
+
+        String progress(String label) {
+            double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+            double percent = inputSize > 0 ? 100.0 * inputOffset / inputSize : 100.0;
+            return String.format("%s: %d records (%d denied, %d failed), %.0f records/s, %.0f MB/s, input %.1f%% at offset %d",
+                    label, records, denied, failed, records / seconds,
+                    (inputOffset - startOffset) / seconds / (1024 * 1024), percent, inputOffset);
+        }
+    }
+
+    /**
+     * Command line options.
+     */
+    static final class Options {
+        private Path input;
+        private Path output;
+        private String host = "localhost";
+        private int port = 9094;
+        private boolean plaintext = true;
+        private int concurrency = 16;
+        private int batch = 1;
+        private long offset = -1;
+        private boolean resume;
+        private boolean localServer;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    switch (args[i]) {
+                        case "--input" -> options.input = Path.of(args[++i]);
+                        case "--output" -> options.output = Path.of(args[++i]);
+                        case "--host" -> options.host = args[++i];
+                        case "--port" -> options.port = Integer.parseInt(args[++i]);
+                        case "--tls" -> options.plaintext = false;
+                        case "--concurrency" -> options.concurrency = Integer.parseInt(args[++i]);
+                        case "--batch" -> options.batch = Integer.parseInt(args[++i]);
+                        case "--offset" -> {
+                            options.offset = Long.parseLong(args[++i]);
+                            if (options.offset < 0) {
+                                return null;
+                            }
+                        }
+                        case "--resume" -> options.resume = true;
+                        case "--local-server" -> options.localServer = true;
+                        default -> {
+                            return null;
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+            if (options.input == null || options.output == null || options.concurrency < 1 || options.batch < 1
+                    || (options.resume && options.offset >= 0)) {
+                return null;
+            }
+            return options;
+        }
+    }
+}
@@ -18,20 +18,31 @@
 
 package com.permguard.example;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.permguard.pep.builder.*;
 import com.permguard.pep.client.AZClient;
 import com.permguard.pep.config.AZConfig;
 import com.permguard.pep.model.request.*;
 import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.server.AZServer;
+import com.permguard.pep.utils.AZRequestReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Utility class for testing authorization requests, equivalent to check.py in Python.
+ * <p>
+ * With {@code --local-server} the checks run against the in-process mock PDP, so the example needs no network,
+ * including when compiled as a native image with the {@code native} profile. The time from process start to the
+ * first decision and the resident set size are printed at the end.
+ * <pre>
+ * Check [--port 9094] [--local-server]
+ * </pre>
  */
 public class Check {
 
@@ -41,16 +52,33 @@ public class Check {
     public static final String EMAIL = "amy.smith@acmecorp.com";
     public static final String USER = "user";
     public static final String KEYCLOAK = "keycloak";
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-
-    public static void main(String[] args) {
-
+    private static long firstDecisionMillis = -1;
+
+    public static void main(String[] args) throws IOException {
+        int port = 9094;
+        boolean localServer = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--local-server" -> localServer = true;
+                default -> {
+                    System.err.println("Usage: Check [--port <port>] [--local-server]");
+                    System.exit(2);
+                }
+            }
+        }
 
-        AZConfig config = new AZConfig("localhost", 9094, true);
+        AZServer server = null;
+        if (localServer) {
+            server = new AZServer();
+            server.start(port);
+        }
+        AZConfig config = new AZConfig("localhost", port, true);
         AZClient client = new AZClient(config);
 
         System.out.println("\n🔹 Running checkJsonRequest()");
         checkJsonRequest(client);
+        firstDecisionMillis = uptimeMillis();
 
         System.out.println("\n🔹 Running checkAtomicRequest()");
         checkAtomicRequest(client);
@@ -59,6 +87,11 @@ public class Check {
         checkMultipleEvaluationsRequest(client);
 
         client.shutdown();
+        if (server != null) {
+            server.stop();
+        }
+        System.out.println("\nTime to first decision: " + firstDecisionMillis + " ms");
+        System.out.println("Resident set size: " + residentSetSize());
     }
 
     /**
@@ -71,7 +104,7 @@ public class Check {
         try {
             // Load JSON as InputStream from resources folder and print its content
             InputStream inputStream = Check.class.getClassLoader().getResourceAsStream(JSON_FILE_PATH);
-            AZRequest request = objectMapper.readValue(inputStream, AZRequest.class);
+            AZRequest request = AZRequestReader.read(inputStream);
             inputStream.close();
 
             long requestStartTime = System.currentTimeMillis();
@@ -267,4 +300,33 @@ public class Check {
             }
         }
     }
+
+    /**
+     * Gets the time since the process started, which for a native image is not covered by the JVM uptime.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    private static long uptimeMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> System.currentTimeMillis() - start.toEpochMilli())
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    /**
+     * Gets the resident set size of the process, as reported by Linux.
+     *
+     * @return The resident set size, or "n/a" if it is not available.
+     */
+    private static String residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return line.substring(6).trim();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not on Linux.
+        }
+        return "n/a";
+    }
 }
@@ -0,0 +1,137 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.example;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.builder.PrincipalBuilder;
+import com.permguard.pep.client.AZClient;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Entities;
+import com.permguard.pep.model.request.Principal;
+import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.server.AZServer;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup benchmark measuring the time from JVM start to the first authorization decision.
+ * <p>
+ * Prints the JVM uptime when {@code main} is entered, the time spent creating the client and the time spent on
+ * the first check, which includes connecting to the PDP. It is also the training run of the AppCDS class list
+ * shipped in {@code main/cds}, see the README for how to regenerate and use it.
+ * <pre>
+ * TimeToFirstDecision [--host localhost] [--port 9094] [--tls] [--local-server]
+ * </pre>
+ */
+public class TimeToFirstDecision {
+
+    public static void main(String[] args) throws Exception {
+        long mainNanos = System.nanoTime();
+        long uptimeAtMain = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        String host = "localhost";
+        int port = 9094;
+        boolean plaintext = true;
+        boolean localServer = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host" -> host = args[++i];
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--tls" -> plaintext = false;
+                    case "--local-server" -> localServer = true;
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: TimeToFirstDecision [--host <host>] [--port <port>] [--tls] [--local-server]");
+            System.exit(2);
+        }
+
+        AZServer server = null;
+        if (localServer) {
+            server = new AZServer();
+            server.start(port);
+        }
+        long clientNanos = System.nanoTime();
+        AZClient client = new AZClient(new AZConfig(host, port, plaintext));
+        long checkNanos = System.nanoTime();
+        try {
+            AZResponse response = client.check(firstRequest());
+            long doneNanos = System.nanoTime();
+            long uptimeAtDecision = ManagementFactory.getRuntimeMXBean().getUptime();
+
+            System.out.println("JVM start to main:       " + uptimeAtMain + " ms");
+            System.out.println("Client creation:         " + millis(checkNanos - clientNanos) + " ms");
+            System.out.println("First check:             " + millis(doneNanos - checkNanos) + " ms");
+            System.out.println("Main to first decision:  " + millis(doneNanos - mainNanos) + " ms");
+            System.out.println("JVM start to decision:   " + uptimeAtDecision + " ms");
+            System.out.println("Decision:                " + (response != null && response.isDecision()));
+        } finally {
+            client.shutdown();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Builds the atomic request of {@code requests/ok_onlyone1.json} with the builders, so the benchmark does not
+     * pay for a JSON binding the SDK itself does not need.
+     */
+    private static AZRequest firstRequest() {
+        Principal principal = new PrincipalBuilder(Check.EMAIL)
+                .withType(Check.USER)
+                .withSource(Check.KEYCLOAK)
+                .build();
+        Entities entities = new Entities("cedar", List.of(
+                Map.of(
+                        "uid", Map.of("type", "PharmaAuthZFlow::Platform::BranchInfo", "id", "subscription"),
+                        "attrs", Map.of("active", true),
+                        "parents", List.of()
+                )
+        ));
+        return new AZAtomicRequestBuilder(
+                Check.ZONE_ID,
+                Check.POLICY_STORE_ID,
+                "platform-creator",
+                "PharmaAuthZFlow::Platform::Subscription",
+                "PharmaAuthZFlow::Platform::Action::create"
+        )
+                .withRequestId("ttfd")
+                .withPrincipal(principal)
+                .withEntitiesItems("cedar", entities)
+                .withSubjectSource(Check.KEYCLOAK)
+                .withSubjectProperty("isSuperUser", true)
+                .withResourceId("e3a786fd07e24bfa95ba4341d3695ae8")
+                .withResourceProperty("isEnabled", true)
+                .withActionProperty("isEnabled", true)
+                .withContextProperty("time", "2025-01-23T16:17:46+00:00")
+                .withContextProperty("isSubscriptionActive", true)
+                .build();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.audit;
+
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Action;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.request.Resource;
+import com.permguard.pep.model.request.Subject;
+import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.model.response.ContextResponse;
+import com.permguard.pep.model.response.EvaluationResponse;
+import com.permguard.pep.model.response.ReasonResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit log of authorization decisions.
+ * <p>
+ * Decisions are offered to a bounded lock-free ring buffer, so the check path never waits on the sink:
+ * when the ring is full the record is dropped and counted instead. A background thread drains the ring
+ * in batches into an {@link AuditSink} and flushes the sink whenever the ring is empty.
+ * <p>
+ * The ring follows the bounded multi-producer design by Dmitry Vyukov: each slot carries a sequence number
+ * telling producers when it is free and the single consumer when it is filled, so producers only contend on
+ * the claim of a slot. The drainer parks while the ring is empty and the producer filling it unparks it, so
+ * an idle log costs no wakeups. Closing seals the tail of the ring: records claimed before the seal are written,
+ * later ones are dropped and counted.
+ */
+public class AuditLog implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(AuditLog.class.getName());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SEALED = Long.MIN_VALUE;
+
+    private final AuditSink sink;
+    private final int batchSize;
+    private final int mask;
+    private final AtomicReferenceArray<AuditRecord> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread drainer;
+    private final AtomicBoolean idle = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Constructor with parameters. Starts the background drainer.
+     *
+     * @param sink      The sink the records are written to, closed with the log.
+     * @param capacity  The maximum number of records waiting to be written, rounded up to a power of two.
+     * @param batchSize The maximum number of records handed to the sink at once.
+     */
+    public AuditLog(AuditSink sink, int capacity, int batchSize) {
+        if (capacity <= 0 || capacity > 1 << 30 || batchSize <= 0) {
+            throw new IllegalArgumentException("The capacity and the batch size must be positive.");
+        }
+        this.sink = sink;
+        this.batchSize = batchSize;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.drainer = new Thread(this::drainLoop, "permguard-audit-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Logs the decisions of a response, one record per evaluation. Never blocks.
+     *
+     * @param request  The checked request.
+     * @param response The response of the PDP.
+     */
+    public void log(AZRequest request, AZResponse response) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        AZModel model = request.getAuthorizationModel();
+        long zoneId = model != null ? model.getZoneId() : 0;
+        String policyStoreId = model != null && model.getPolicyStore() != null ? model.getPolicyStore().getId() : null;
+        List<Evaluation> evaluations = request.getEvaluations();
+        List<EvaluationResponse> results = response.getEvaluations();
+        if (evaluations == null || evaluations.isEmpty() || results == null || results.isEmpty()) {
+            offer(recordOf(now, request.getRequestId(), zoneId, policyStoreId, request.getSubject(), request.getResource(),
+                    request.getAction(), response.isDecision(), response.getContext()));
+            return;
+        }
+        int count = Math.min(evaluations.size(), results.size());
+        for (int i = 0; i < count; i++) {
+            Evaluation evaluation = evaluations.get(i);
+            EvaluationResponse result = results.get(i);
+            if (evaluation == null || result == null) {
+                continue;
+            }
+            offer(recordOf(now, requestIdOf(result, evaluation),
+                    zoneId, policyStoreId,
+                    evaluation.getSubject() != null ? evaluation.getSubject() : request.getSubject(),
+                    evaluation.getResource() != null ? evaluation.getResource() : request.getResource(),
+                    evaluation.getAction() != null ? evaluation.getAction() : request.getAction(),
+                    result.isDecision(), result.getContext()));
+        }
+    }
+
+    /**
+     * Offers a record to the log. Never blocks.
+     *
+     * @param record The record.
+     * @return True if the record was queued, false if it was dropped because the log is full or closed.
+     */
+    public boolean offer(AuditRecord record) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        long position = tail.get();
+        for (;;) {
+            if (position < 0) {
+                // The log was closed while this record was being offered.
+                dropped.incrementAndGet();
+                return false;
+            }
+            int index = (int) position & mask;
+            long lag = sequences.getAcquire(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.setPlain(index, record);
+                    // A volatile write, ordered before the read of the idle flag the drainer sets before parking.
+                    sequences.set(index, position + 1);
+                    if (idle.get() && idle.compareAndSet(true, false)) {
+                        LockSupport.unpark(drainer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (lag < 0) {
+                // The slot still holds a record from the previous lap: the ring is full.
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of records handed to the sink.
+     *
+     * @return The number of written records.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Gets the number of records dropped because the ring was full or the log closed.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of records the sink failed to write.
+     *
+     * @return The number of failed records.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Writes the pending records, then flushes and closes the sink.
+     */
+    @Override
+    public void close() {
+        tail.getAndUpdate(position -> position | SEALED);
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AuditRecord recordOf(long now, String requestId, long zoneId, String policyStoreId,
+                                        Subject subject, Resource resource, Action action,
+                                        boolean decision, ContextResponse context) {
+        return new AuditRecord(now, requestId, zoneId, policyStoreId,
+                subject != null ? subject.getType() : null, subject != null ? subject.getId() : null,
+                resource != null ? resource.getType() : null, resource != null ? resource.getId() : null,
+                action != null ? action.getName() : null, decision,
+                context != null ? codeOf(context.getReasonAdmin()) : null,
+                context != null ? codeOf(context.getReasonUser()) : null);
+    }
+
+    private static String requestIdOf(EvaluationResponse result, Evaluation evaluation) {
+        // The PDP may omit the identifier of an evaluation, which is then mapped to an empty string.
+        String requestId = result.getRequestId();
+        return requestId != null && !requestId.isEmpty() ? requestId : evaluation.getRequestId();
+    }
+
+    private static String codeOf(ReasonResponse reason) {
+        return reason != null ? reason.getCode() : null;
+    }
+
+    /**
+     * Takes the next record of the ring, or null if it is empty. Only called by the drainer.
+     */
+    private AuditRecord poll() {
+        int index = (int) head & mask;
+        if (sequences.getAcquire(index) != head + 1) {
+            return null;
+        }
+        AuditRecord record = slots.getPlain(index);
+        slots.setPlain(index, null);
+        sequences.setRelease(index, head + mask + 1);
+        head++;
+        return record;
+    }
+
+    private void drainLoop() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        boolean dirty = false;
+        boolean failing = false;
+        for (;;) {
+            // Read before draining, so records offered before the log was closed are still written.
+            boolean stopping = closed;
+            AuditRecord record;
+            while (batch.size() < batchSize && (record = poll()) != null) {
+                batch.add(record);
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    sink.write(batch);
+                    written.addAndGet(batch.size());
+                    dirty = true;
+                    failing = false;
+                } catch (Exception e) {
+                    failed.addAndGet(batch.size());
+                    if (!failing) {
+                        // Logged once per outage of the sink rather than once per batch.
+                        LOGGER.log(System.Logger.Level.WARNING, "Unable to write the audit log", e);
+                        failing = true;
+                    }
+                }
+                batch.clear();
+                continue;
+            }
+            if (dirty) {
+                try {
+                    sink.flush();
+                } catch (Exception e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Unable to flush the audit log", e);
+                }
+                dirty = false;
+            }
+            if (stopping) {
+                if (head == (tail.get() & ~SEALED)) {
+                    break;
+                }
+                // A producer claimed a slot before the seal and is about to fill it.
+                Thread.onSpinWait();
+                continue;
+            }
+            idle.set(true);
+            // Checked again after raising the flag, a record offered in between would not unpark the drainer.
+            if (sequences.get((int) head & mask) != head + 1 && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle.set(false);
+        }
+        try {
+            sink.close();
+        } catch (Exception e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to close the audit log", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.audit;
+
+/**
+ * An authorization decision as written to the audit log.
+ */
+public final class AuditRecord {
+    private final long timestampMillis;
+    private final String requestId;
+    private final long zoneId;
+    private final String policyStoreId;
+    private final String subjectType;
+    private final String subjectId;
+    private final String resourceType;
+    private final String resourceId;
+    private final String action;
+    private final boolean decision;
+    private final String adminReasonCode;
+    private final String userReasonCode;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param timestampMillis The epoch millis the decision was received at.
+     * @param requestId       The request ID, or null if the request had none.
+     * @param zoneId          The zone ID of the authorization model.
+     * @param policyStoreId   The policy store ID of the authorization model.
+     * @param subjectType     The subject type.
+     * @param subjectId       The subject ID.
+     * @param resourceType    The resource type.
+     * @param resourceId      The resource ID.
+     * @param action          The action name.
+     * @param decision        The decision.
+     * @param adminReasonCode The reason code for administrators, or null if the PDP gave none.
+     * @param userReasonCode  The reason code for users, or null if the PDP gave none.
+     */
+    public AuditRecord(long timestampMillis, String requestId, long zoneId, String policyStoreId,
+                       String subjectType, String subjectId, String resourceType, String resourceId,
+                       String action, boolean decision, String adminReasonCode, String userReasonCode) {
+        this.timestampMillis = timestampMillis;
+        this.requestId = requestId;
+        this.zoneId = zoneId;
+        this.policyStoreId = policyStoreId;
+        this.subjectType = subjectType;
+        this.subjectId = subjectId;
+        this.resourceType = resourceType;
+        this.resourceId = resourceId;
+        this.action = action;
+        this.decision = decision;
+        this.adminReasonCode = adminReasonCode;
+        this.userReasonCode = userReasonCode;
+    }
+
+    /**
+     * Gets the time the decision was received at.
+     *
+     * @return The epoch millis.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Gets the request ID.
+     *
+     * @return The request ID, or null if the request had none.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the zone ID.
+     *
+     * @return The zone ID of the authorization model.
+     */
+    public long getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * Gets the policy store ID.
+     *
+     * @return The policy store ID of the authorization model.
+     */
+    public String getPolicyStoreId() {
+        return policyStoreId;
+    }
+
+    /**
+     * Gets the subject type.
+     *
+     * @return The subject type.
+     */
+    public String getSubjectType() {
+        return subjectType;
+    }
+
+    /**
+     * Gets the subject ID.
+     *
+     * @return The subject ID.
+     */
+    public String getSubjectId() {
+        return subjectId;
+    }
+
+    /**
+     * Gets the resource type.
+     *
+     * @return The resource type.
+     */
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * Gets the resource ID.
+     *
+     * @return The resource ID.
+     */
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    /**
+     * Gets the action name.
+     *
+     * @return The action name.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the decision.
+     *
+     * @return True if the request was allowed.
+     */
+    public boolean isDecision() {
+        return decision;
+    }
+
+    /**
+     * Gets the reason code for administrators.
+     *
+     * @return The reason code, or null if the PDP gave none.
+     */
+    public String getAdminReasonCode() {
+        return adminReasonCode;
+    }
+
+    /**
+     * Gets the reason code for users.
+     *
+     * @return The reason code, or null if the PDP gave none.
+     */
+    public String getUserReasonCode() {
+        return userReasonCode;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.audit;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the audit log. Implementations are only called from the background thread of an
+ * {@link AuditLog}, so they do not need to be thread safe and may block on I/O.
+ */
+public interface AuditSink extends AutoCloseable {
+
+    /**
+     * Writes a batch of records.
+     *
+     * @param records The records, in the order they were logged. The list is reused after the call returns.
+     * @throws IOException If the records cannot be written; they are counted as failed.
+     */
+    void write(List<AuditRecord> records) throws IOException;
+
+    /**
+     * Flushes the written records to durable storage. Called whenever the log has nothing left to drain.
+     *
+     * @throws IOException If the records cannot be flushed.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Releases the resources of the sink. Called once, after the last batch was written and flushed.
+     *
+     * @throws IOException If the sink cannot be closed.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
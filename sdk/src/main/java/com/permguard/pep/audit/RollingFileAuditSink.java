@@ -0,0 +1,179 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.audit;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Audit sink appending JSON lines to a file that is rolled over once it reaches a size limit.
+ * <p>
+ * Records are written to {@code <name>.jsonl}. When it is full it becomes {@code <name>.1.jsonl}, the previous
+ * rolled files are shifted by one and the oldest one beyond the retention limit is deleted.
+ */
+public class RollingFileAuditSink implements AuditSink {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final String name;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private CountingOutputStream file;
+    private JsonGenerator generator;
+
+    /**
+     * Constructor with parameters. Opens the current file, appending to it if it exists.
+     *
+     * @param directory    The directory of the log files, created if missing.
+     * @param name         The base name of the log files.
+     * @param maxFileBytes The size a file is rolled over at.
+     * @param maxFiles     The number of rolled files kept besides the current one.
+     * @throws IOException If the current file cannot be opened.
+     */
+    public RollingFileAuditSink(Path directory, String name, long maxFileBytes, int maxFiles) throws IOException {
+        if (maxFileBytes <= 0 || maxFiles < 0) {
+            throw new IllegalArgumentException("The file size limit must be positive and the number of files not negative.");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    @Override
+    public void write(List<AuditRecord> records) throws IOException {
+        for (AuditRecord record : records) {
+            if (file.count >= maxFileBytes) {
+                roll();
+            }
+            generator.writeStartObject();
+            generator.writeNumberField("ts", record.getTimestampMillis());
+            writeField("request_id", record.getRequestId());
+            generator.writeNumberField("zone_id", record.getZoneId());
+            writeField("policy_store_id", record.getPolicyStoreId());
+            writeField("subject_type", record.getSubjectType());
+            writeField("subject_id", record.getSubjectId());
+            writeField("resource_type", record.getResourceType());
+            writeField("resource_id", record.getResourceId());
+            writeField("action", record.getAction());
+            generator.writeBooleanField("decision", record.isDecision());
+            writeField("reason_admin", record.getAdminReasonCode());
+            writeField("reason_user", record.getUserReasonCode());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            // The generator is flushed so the byte count seen by the next record is exact.
+            generator.flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+        file.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void writeField(String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    private void open() throws IOException {
+        Path current = fileAt(0);
+        OutputStream output = Files.newOutputStream(current, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        file = new CountingOutputStream(new BufferedOutputStream(output, BUFFER_BYTES), Files.size(current));
+        generator = JSON.createGenerator(file, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+        if (file.count > 0 && !endsWithNewLine(current)) {
+            // A record left partially written by a crash is terminated, so the next one starts on its own line.
+            file.write('\n');
+        }
+    }
+
+    private void roll() throws IOException {
+        generator.close();
+        Files.deleteIfExists(fileAt(maxFiles));
+        for (int i = maxFiles - 1; i >= 0; i--) {
+            Path source = fileAt(i);
+            if (Files.exists(source)) {
+                Files.move(source, fileAt(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.deleteIfExists(fileAt(0));
+        open();
+    }
+
+    private static boolean endsWithNewLine(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private Path fileAt(int index) {
+        return directory.resolve(index == 0 ? name + ".jsonl" : name + "." + index + ".jsonl");
+    }
+
+    /**
+     * Output stream keeping track of the size of the file it writes to.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out, long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
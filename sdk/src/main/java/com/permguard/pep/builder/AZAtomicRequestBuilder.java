@@ -19,6 +19,7 @@
 package com.permguard.pep.builder;
 
 import com.permguard.pep.model.request.*;
+import com.permguard.pep.utils.Symbols;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -52,7 +53,7 @@ public class AZAtomicRequestBuilder {
     public AZAtomicRequestBuilder(long zoneId, String policyStoreId, String id, String resourceType, String actionName) {
         this.requestBuilder = new AZRequestBuilder(zoneId, policyStoreId);
         this.subjectId = id; // ✅ Store the original subject ID
-        this.subjectType = "workload"; // ✅ Default to workload (can be modified)
+        this.subjectType = Symbols.WORKLOAD; // ✅ Default to workload (can be modified)
         this.resourceType = resourceType; // ✅ Store the resource type
         this.actionName = actionName; // ✅ Store the action name
 
@@ -0,0 +1,186 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.builder;
+
+import com.permguard.pep.model.request.*;
+import com.permguard.pep.utils.Symbols;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builder for creating an AZMatrixRequest object, checking every subject against every resource and action.
+ * <p>
+ * Each subject, resource and action is added once, however many cells of the matrix it appears in.
+ */
+public class AZMatrixRequestBuilder {
+    private final AZModel authorizationModel;
+    private String requestId;
+    private final List<Subject> subjects = new ArrayList<>();
+    private final List<Resource> resources = new ArrayList<>();
+    private final List<Action> actions = new ArrayList<>();
+    private final Map<String, Object> context = new HashMap<>();
+
+    /**
+     * Constructor with required authorization model.
+     *
+     * @param zoneId        The authorization zone ID.
+     * @param policyStoreId The ID of the policy store.
+     */
+    public AZMatrixRequestBuilder(long zoneId, String policyStoreId) {
+        this.authorizationModel = new AZModel(zoneId, new PolicyStore(Symbols.LEDGER, policyStoreId), null, null);
+    }
+
+    /**
+     * Sets the request ID.
+     *
+     * @param requestId The unique request ID.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withRequestId(String requestId) {
+        this.requestId = requestId;
+        return this;
+    }
+
+    /**
+     * Sets the principal.
+     *
+     * @param principal The principal making the request.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withPrincipal(Principal principal) {
+        this.authorizationModel.setPrincipal(principal);
+        return this;
+    }
+
+    /**
+     * Sets the entities of the authorization model.
+     *
+     * @param schema   The schema name for the entities.
+     * @param entities The list of entities to be included.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withEntitiesItems(String schema, Entities entities) {
+        this.authorizationModel.setEntities(new Entities(Symbols.intern(schema), entities.getItems()));
+        return this;
+    }
+
+    /**
+     * Adds a subject, a row of the matrix.
+     *
+     * @param subject The subject to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withSubject(Subject subject) {
+        this.subjects.add(subject);
+        return this;
+    }
+
+    /**
+     * Adds subjects, rows of the matrix.
+     *
+     * @param subjects The subjects to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withSubjects(List<Subject> subjects) {
+        this.subjects.addAll(subjects);
+        return this;
+    }
+
+    /**
+     * Adds a resource.
+     *
+     * @param resource The resource to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withResource(Resource resource) {
+        this.resources.add(resource);
+        return this;
+    }
+
+    /**
+     * Adds resources.
+     *
+     * @param resources The resources to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withResources(List<Resource> resources) {
+        this.resources.addAll(resources);
+        return this;
+    }
+
+    /**
+     * Adds an action.
+     *
+     * @param action The action to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withAction(Action action) {
+        this.actions.add(action);
+        return this;
+    }
+
+    /**
+     * Adds actions.
+     *
+     * @param actions The actions to check.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withActions(List<Action> actions) {
+        this.actions.addAll(actions);
+        return this;
+    }
+
+    /**
+     * Sets the context shared by every evaluation, replacing the properties added so far.
+     *
+     * @param context Additional context for the evaluations.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withContext(Map<String, Object> context) {
+        this.context.clear();
+        this.context.putAll(context);
+        return this;
+    }
+
+    /**
+     * Adds a property to the context shared by every evaluation.
+     *
+     * @param key   The property key.
+     * @param value The property value.
+     * @return The current builder instance.
+     */
+    public AZMatrixRequestBuilder withContextProperty(String key, Object value) {
+        this.context.put(key, value);
+        return this;
+    }
+
+    /**
+     * Builds the AZMatrixRequest object.
+     *
+     * @return A new AZMatrixRequest instance.
+     */
+    public AZMatrixRequest build() {
+        return new AZMatrixRequest(requestId, authorizationModel, new ArrayList<>(subjects), new ArrayList<>(resources),
+                new ArrayList<>(actions), context.isEmpty() ? null : new HashMap<>(context));
+    }
+}
@@ -19,6 +19,7 @@
 package com.permguard.pep.builder;
 
 import com.permguard.pep.model.request.*;
+import com.permguard.pep.utils.Symbols;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -43,7 +44,7 @@ public class AZRequestBuilder {
      * @param policyStoreId The ID of the policy store.
      */
     public AZRequestBuilder(long zoneId, String policyStoreId) {
-        this.authorizationModel = new AZModel(zoneId, new PolicyStore("ledger", policyStoreId), null, null);
+        this.authorizationModel = new AZModel(zoneId, new PolicyStore(Symbols.LEDGER, policyStoreId), null, null);
     }
 
     /**
@@ -131,7 +132,7 @@ public class AZRequestBuilder {
      * @return The current builder instance.
      */
     public AZRequestBuilder withEntitiesItems(String schema, Entities entities) {
-        this.authorizationModel.setEntities(new Entities(schema, entities.getItems()));
+        this.authorizationModel.setEntities(new Entities(Symbols.intern(schema), entities.getItems()));
         return this;
     }
 
@@ -19,6 +19,7 @@
 package com.permguard.pep.builder;
 
 import com.permguard.pep.model.request.Action;
+import com.permguard.pep.utils.Symbols;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -36,7 +37,7 @@ public class ActionBuilder {
      * @param name The name of the action.
      */
     public ActionBuilder(String name) {
-        this.name = name;
+        this.name = Symbols.intern(name);
     }
 
     /**
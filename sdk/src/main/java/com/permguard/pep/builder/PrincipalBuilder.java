@@ -19,12 +19,13 @@
 package com.permguard.pep.builder;
 
 import com.permguard.pep.model.request.Principal;
+import com.permguard.pep.utils.Symbols;
 
 /**
  * Builder for creating a Principal object.
  */
 public class PrincipalBuilder {
-    private String type = "user"; // Default type
+    private String type = Symbols.USER; // Default type
     private String id;
     private String source;
     private String identityToken;
@@ -46,7 +47,7 @@ public class PrincipalBuilder {
      * @return The current builder instance.
      */
     public PrincipalBuilder withType(String type) {
-        this.type = type;
+        this.type = Symbols.intern(type);
         return this;
     }
 
@@ -57,7 +58,7 @@ public class PrincipalBuilder {
      * @return The current builder instance.
      */
     public PrincipalBuilder withSource(String source) {
-        this.source = source;
+        this.source = Symbols.intern(source);
         return this;
     }
 
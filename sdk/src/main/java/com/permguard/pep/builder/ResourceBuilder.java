@@ -20,6 +20,7 @@ package com.permguard.pep.builder;
 
 
 import com.permguard.pep.model.request.Resource;
+import com.permguard.pep.utils.Symbols;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -38,7 +39,7 @@ public class ResourceBuilder {
      * @param type The type of the resource.
      */
     public ResourceBuilder(String type) {
-        this.type = type;
+        this.type = Symbols.intern(type);
     }
 
     /**
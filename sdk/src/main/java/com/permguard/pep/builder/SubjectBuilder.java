@@ -20,6 +20,7 @@ package com.permguard.pep.builder;
 
 
 import com.permguard.pep.model.request.Subject;
+import com.permguard.pep.utils.Symbols;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -28,7 +29,7 @@ import java.util.Map;
  * Builder for creating a Subject object.
  */
 public class SubjectBuilder {
-    private String type = "user"; // Default type
+    private String type = Symbols.USER; // Default type
     private String id;
     private String source;
     private Map<String, Object> properties = new HashMap<>();
@@ -49,7 +50,7 @@ public class SubjectBuilder {
      * @return The current builder instance.
      */
     public SubjectBuilder withType(String type) {
-        this.type = type;
+        this.type = Symbols.intern(type);
         return this;
     }
 
@@ -60,7 +61,7 @@ public class SubjectBuilder {
      * @return The current builder instance.
      */
     public SubjectBuilder withSource(String source) {
-        this.source = source;
+        this.source = Symbols.intern(source);
         return this;
     }
 
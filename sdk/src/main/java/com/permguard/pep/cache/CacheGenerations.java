@@ -0,0 +1,177 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.cache;
+
+import com.permguard.pep.utils.Hash128;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generation counters mixed into every decision cache key.
+ * <p>
+ * Invalidation never walks the cache: bumping a counter changes the key of every decision it covers,
+ * so old entries become unreachable and are reclaimed by normal eviction. Zones, policy stores and
+ * subjects are hashed onto fixed-size counter tables; a collision only invalidates a few extra entries.
+ * <p>
+ * Cache keys are hashed with a secret random key, so a caller who controls the request content cannot craft
+ * a request whose key collides with the cached decision of another request. The key travels with the
+ * snapshot of the cache, so restored entries stay reachable after a restart.
+ */
+public final class CacheGenerations {
+
+    static final int SLOTS = 4096;
+
+    private final AtomicLong global = new AtomicLong();
+    private final AtomicLongArray zones = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray policyStores = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray subjects = new AtomicLongArray(SLOTS);
+    private final ConcurrentHashMap<String, Long> policyVersions = new ConcurrentHashMap<>();
+    private volatile long[] key = randomKey();
+
+    /**
+     * Creates a hasher for a decision cache key, keyed with the secret of this instance.
+     *
+     * @return A new keyed hasher.
+     */
+    public Hash128 newKeyHash() {
+        long[] current = key;
+        return new Hash128(current[0], current[1]);
+    }
+
+    /**
+     * Invalidates every cached decision.
+     */
+    public void bumpAll() {
+        global.incrementAndGet();
+    }
+
+    /**
+     * Invalidates the cached decisions of a zone.
+     *
+     * @param zoneId The zone ID.
+     */
+    public void bumpZone(long zoneId) {
+        zones.incrementAndGet(slotOf(Long.hashCode(zoneId)));
+    }
+
+    /**
+     * Invalidates the cached decisions of a policy store.
+     *
+     * @param policyStoreId The policy store ID.
+     */
+    public void bumpPolicyStore(String policyStoreId) {
+        policyStores.incrementAndGet(slotOf(policyStoreId.hashCode()));
+    }
+
+    /**
+     * Invalidates the cached decisions of a subject.
+     *
+     * @param type The subject type.
+     * @param id   The subject ID.
+     */
+    public void bumpSubject(String type, String id) {
+        subjects.incrementAndGet(slotOf(31 * type.hashCode() + id.hashCode()));
+    }
+
+    /**
+     * Sets the policy version token of a policy store. Decisions cached under another token become unreachable.
+     * Tokens are not exported with the counters, so they must be set again after a snapshot is restored.
+     *
+     * @param policyStoreId The policy store ID.
+     * @param versionToken  The version token, or null to clear it.
+     */
+    public void setPolicyVersion(String policyStoreId, String versionToken) {
+        if (versionToken == null) {
+            policyVersions.remove(policyStoreId);
+        } else {
+            Hash128 hash = new Hash128().putString(versionToken);
+            policyVersions.put(policyStoreId, hash.high() ^ hash.low());
+        }
+    }
+
+    /**
+     * Feeds the generations covering a decision into its cache key.
+     *
+     * @param key           The key being computed.
+     * @param zoneId        The zone ID of the request.
+     * @param policyStoreId The policy store ID of the request.
+     * @param subjectType   The subject type of the request.
+     * @param subjectId     The subject ID of the request.
+     */
+    public void mixInto(Hash128 key, long zoneId, String policyStoreId, String subjectType, String subjectId) {
+        Long version = policyVersions.isEmpty() ? null : policyVersions.get(policyStoreId);
+        key.putLong(global.get())
+                .putLong(zones.get(slotOf(Long.hashCode(zoneId))))
+                .putLong(policyStores.get(slotOf(policyStoreId.hashCode())))
+                .putLong(subjects.get(slotOf(31 * subjectType.hashCode() + subjectId.hashCode())))
+                .putLong(version != null ? version : 0L);
+    }
+
+    /**
+     * Copies the counters, so they survive a restart along with the snapshot of the cache.
+     */
+    long[] export() {
+        long[] values = new long[1 + 3 * SLOTS];
+        values[0] = global.get();
+        for (int i = 0; i < SLOTS; i++) {
+            values[1 + i] = zones.get(i);
+            values[1 + SLOTS + i] = policyStores.get(i);
+            values[1 + 2 * SLOTS + i] = subjects.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Raises the counters to at least the exported values, so decisions invalidated before a restart stay unreachable.
+     */
+    void importFrom(long[] values) {
+        global.accumulateAndGet(values[0], Math::max);
+        for (int i = 0; i < SLOTS; i++) {
+            zones.accumulateAndGet(i, values[1 + i], Math::max);
+            policyStores.accumulateAndGet(i, values[1 + SLOTS + i], Math::max);
+            subjects.accumulateAndGet(i, values[1 + 2 * SLOTS + i], Math::max);
+        }
+    }
+
+    /**
+     * Gets the secret key of the cache keys, so it can be persisted with the snapshot of the cache.
+     */
+    long[] exportKey() {
+        return key.clone();
+    }
+
+    /**
+     * Adopts the secret key of a snapshot. Must be called before any decision is cached.
+     */
+    void importKey(long key0, long key1) {
+        this.key = new long[]{key0, key1};
+    }
+
+    private static long[] randomKey() {
+        SecureRandom random = new SecureRandom();
+        return new long[]{random.nextLong(), random.nextLong()};
+    }
+
+    private static int slotOf(int hash) {
+        return (hash ^ (hash >>> 16)) & (SLOTS - 1);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.cache;
+
+/**
+ * A decision read back from a {@link DecisionCache}.
+ */
+public final class CachedDecision {
+    private final boolean decision;
+    private final String reasonCode;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param decision   The authorization decision (true = allowed, false = denied).
+     * @param reasonCode The reason code returned by the PDP, or null.
+     */
+    public CachedDecision(boolean decision, String reasonCode) {
+        this.decision = decision;
+        this.reasonCode = reasonCode;
+    }
+
+    /**
+     * Gets the authorization decision.
+     *
+     * @return True if the request is authorized, false otherwise.
+     */
+    public boolean isDecision() {
+        return decision;
+    }
+
+    /**
+     * Gets the reason code.
+     *
+     * @return The reason code, or null if none was cached.
+     */
+    public String getReasonCode() {
+        return reasonCode;
+    }
+}
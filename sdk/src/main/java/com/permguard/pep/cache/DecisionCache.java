@@ -0,0 +1,67 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.cache;
+
+/**
+ * Storage backend for authorization decisions cached by the AZClient.
+ * Entries are addressed by a 128-bit request fingerprint, keyed with a secret so it cannot be forced to
+ * collide, and hold only the decision
+ * and an optional reason code, never the full response.
+ */
+public interface DecisionCache extends AutoCloseable {
+
+    /**
+     * Looks up a decision.
+     *
+     * @param keyHigh The high 64 bits of the request fingerprint.
+     * @param keyLow  The low 64 bits of the request fingerprint.
+     * @return The cached decision, or null if absent or expired.
+     */
+    CachedDecision get(long keyHigh, long keyLow);
+
+    /**
+     * Stores a decision, replacing any previous entry with the same key.
+     *
+     * @param keyHigh       The high 64 bits of the request fingerprint.
+     * @param keyLow        The low 64 bits of the request fingerprint.
+     * @param zoneId        The zone ID of the request.
+     * @param policyStoreId The policy store ID of the request.
+     * @param decision      The authorization decision.
+     * @param reasonCode    The reason code returned by the PDP, or null.
+     */
+    void put(long keyHigh, long keyLow, long zoneId, String policyStoreId, boolean decision, String reasonCode);
+
+    /**
+     * Removes every entry from the cache.
+     */
+    void clear();
+
+    /**
+     * Gets the number of live entries, which may include entries that expired but were not evicted yet.
+     *
+     * @return The number of entries.
+     */
+    long size();
+
+    /**
+     * Releases the resources held by the cache.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,369 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Compact binary snapshot of an {@link OffHeapDecisionCache}, used to warm a new process.
+ * <p>
+ * File layout: a 40-byte header (magic, version, written-at epoch millis, offset of the dictionaries, secret key
+ * of the cache keys),
+ * fixed 28-byte records (key high, key low, expiry epoch millis, meta), the scope and reason code
+ * dictionaries the record meta words refer to and finally the {@link CacheGenerations} counters.
+ * Each dictionary starts with its highest index and its number of entries: policy store IDs and reason codes longer
+ * than 65535 UTF-8 bytes are left out, together with the records referring to them.
+ * <p>
+ * A snapshot is memory-mapped when opened and restored one scope at a time, so entries are only
+ * reloaded for the zone and policy store of a request actually served by the new process. The records
+ * are indexed by scope once when the snapshot is opened, so restoring a scope only reads its own records.
+ * The file holds the secret key of the cache keys, so it must stay readable by the application only.
+ */
+public final class DecisionCacheSnapshot {
+
+    private static final int MAGIC = 0x50474443;
+    private static final int VERSION = 4;
+    private static final int HEADER_BYTES = 40;
+    private static final int RECORD_BYTES = 28;
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_STRING_BYTES = 0xffff;
+
+    private final MappedByteBuffer records;
+    private final int[] scopeStarts;
+    private final int[] scopeRecords;
+    private final long[] scopeZoneIds;
+    private final String[] scopePolicyStoreIds;
+    private final String[] reasonCodes;
+    private final long[] generations;
+    private final long key0;
+    private final long key1;
+    private final ConcurrentHashMap<ScopeKey, Integer> pendingScopes = new ConcurrentHashMap<>();
+
+    private DecisionCacheSnapshot(MappedByteBuffer records, int[] scopeStarts, int[] scopeRecords, long[] scopeZoneIds, String[] scopePolicyStoreIds,
+                                  String[] reasonCodes, long[] generations, long key0, long key1) {
+        this.records = records;
+        this.scopeStarts = scopeStarts;
+        this.scopeRecords = scopeRecords;
+        this.scopeZoneIds = scopeZoneIds;
+        this.scopePolicyStoreIds = scopePolicyStoreIds;
+        this.reasonCodes = reasonCodes;
+        this.generations = generations;
+        this.key0 = key0;
+        this.key1 = key1;
+        for (int i = 1; i < scopeZoneIds.length; i++) {
+            if (scopePolicyStoreIds[i] != null) {
+                pendingScopes.put(new ScopeKey(scopeZoneIds[i], scopePolicyStoreIds[i]), i);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file.
+     *
+     * @param path The snapshot file.
+     * @return The snapshot, or null if the file does not exist or is not a valid snapshot.
+     * @throws IOException If the file cannot be read.
+     */
+    public static DecisionCacheSnapshot open(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                return null;
+            }
+            long tablesOffset = mapped.getLong(16);
+            if (tablesOffset < HEADER_BYTES || tablesOffset > length || (tablesOffset - HEADER_BYTES) % RECORD_BYTES != 0) {
+                return null;
+            }
+            ByteBuffer tables = mapped.duplicate().position((int) tablesOffset);
+            int scopeCount = tables.getInt();
+            int scopeEntries = tables.getInt();
+            if (scopeEntries < 0 || scopeEntries > scopeCount) {
+                return null;
+            }
+            long[] zoneIds = new long[scopeCount + 1];
+            String[] policyStoreIds = new String[scopeCount + 1];
+            for (int i = 0; i < scopeEntries; i++) {
+                int index = tables.getInt();
+                if (index <= 0 || index > scopeCount) {
+                    return null;
+                }
+                zoneIds[index] = tables.getLong();
+                policyStoreIds[index] = readString(tables);
+            }
+            int reasonCount = tables.getInt();
+            int reasonEntries = tables.getInt();
+            if (reasonEntries < 0 || reasonEntries > reasonCount) {
+                return null;
+            }
+            String[] codes = new String[reasonCount + 1];
+            for (int i = 0; i < reasonEntries; i++) {
+                int index = tables.getInt();
+                if (index <= 0 || index > reasonCount) {
+                    return null;
+                }
+                codes[index] = readString(tables);
+            }
+            long[] generations = new long[tables.getInt()];
+            if (generations.length != 1 + 3 * CacheGenerations.SLOTS) {
+                return null;
+            }
+            tables.asLongBuffer().get(generations);
+            MappedByteBuffer records = mapped.slice(HEADER_BYTES, (int) tablesOffset - HEADER_BYTES);
+
+            // Counting sort of the record indexes by scope: scopeStarts[s] is the first position of scope s.
+            int count = records.capacity() / RECORD_BYTES;
+            int[] scopeStarts = new int[scopeCount + 2];
+            for (int i = 0; i < count; i++) {
+                int scope = OffHeapDecisionCache.scopeOf(records.getInt(i * RECORD_BYTES + 24));
+                if (scope == 0 || scope > scopeCount || policyStoreIds[scope] == null) {
+                    return null;
+                }
+                scopeStarts[scope + 1]++;
+            }
+            for (int scope = 1; scope < scopeStarts.length; scope++) {
+                scopeStarts[scope] += scopeStarts[scope - 1];
+            }
+            int[] scopeRecords = new int[count];
+            int[] next = scopeStarts.clone();
+            for (int i = 0; i < count; i++) {
+                scopeRecords[next[OffHeapDecisionCache.scopeOf(records.getInt(i * RECORD_BYTES + 24))]++] = i;
+            }
+            return new DecisionCacheSnapshot(records, scopeStarts, scopeRecords, zoneIds, policyStoreIds, codes, generations,
+                    mapped.getLong(24), mapped.getLong(32));
+        } catch (RuntimeException e) {
+            // A truncated or corrupted snapshot is treated as missing, the cache simply starts cold.
+            return null;
+        }
+    }
+
+    /**
+     * Writes the live entries of a cache and its generation counters, replacing the target file atomically.
+     *
+     * @param cache       The cache to persist.
+     * @param generations The generation counters mixed into the cache keys.
+     * @param path        The snapshot file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(OffHeapDecisionCache cache, CacheGenerations generations, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+            channel.position(HEADER_BYTES);
+            cache.forEachEntry((keyHigh, keyLow, expires, meta) -> {
+                int scope = OffHeapDecisionCache.scopeOf(meta);
+                int reason = OffHeapDecisionCache.reasonOf(meta);
+                if (scope == 0 || !isStorable(cache.scopePolicyStoreId(scope))
+                        || reason != 0 && !isStorable(cache.reasonCode(reason))) {
+                    return;
+                }
+                ensure(channel, chunk, RECORD_BYTES);
+                chunk.putLong(keyHigh).putLong(keyLow).putLong(expires).putInt(meta);
+            });
+            flush(channel, chunk);
+            long tablesOffset = channel.position();
+
+            // Dictionaries only grow, so writing them after the records covers every index in use.
+            int scopeCount = cache.scopeCount();
+            int scopeEntries = 0;
+            for (int i = 1; i <= scopeCount; i++) {
+                scopeEntries += isStorable(cache.scopePolicyStoreId(i)) ? 1 : 0;
+            }
+            chunk.putInt(scopeCount).putInt(scopeEntries);
+            for (int i = 1; i <= scopeCount; i++) {
+                byte[] policyStoreId = cache.scopePolicyStoreId(i).getBytes(StandardCharsets.UTF_8);
+                if (policyStoreId.length <= MAX_STRING_BYTES) {
+                    ensure(channel, chunk, 14 + policyStoreId.length);
+                    chunk.putInt(i).putLong(cache.scopeZoneId(i)).putShort((short) policyStoreId.length).put(policyStoreId);
+                }
+            }
+            int reasonCount = cache.reasonCount();
+            int reasonEntries = 0;
+            for (int i = 1; i <= reasonCount; i++) {
+                reasonEntries += isStorable(cache.reasonCode(i)) ? 1 : 0;
+            }
+            ensure(channel, chunk, 8);
+            chunk.putInt(reasonCount).putInt(reasonEntries);
+            for (int i = 1; i <= reasonCount; i++) {
+                byte[] code = cache.reasonCode(i).getBytes(StandardCharsets.UTF_8);
+                if (code.length <= MAX_STRING_BYTES) {
+                    ensure(channel, chunk, 6 + code.length);
+                    chunk.putInt(i).putShort((short) code.length).put(code);
+                }
+            }
+            long[] counters = generations.export();
+            ensure(channel, chunk, 4);
+            chunk.putInt(counters.length);
+            for (long counter : counters) {
+                ensure(channel, chunk, 8);
+                chunk.putLong(counter);
+            }
+            flush(channel, chunk);
+
+            long[] key = generations.exportKey();
+            chunk.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putLong(tablesOffset)
+                    .putLong(key[0]).putLong(key[1]);
+            chunk.flip();
+            channel.write(chunk, 0);
+            channel.force(false);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the generation counters and the secret key of the cache keys, so decisions invalidated before the
+     * snapshot was written stay unreachable and the others can be found again. Must be called before any entry is
+     * restored or cached.
+     *
+     * @param target The generation counters of the new process.
+     */
+    public void restoreGenerations(CacheGenerations target) {
+        target.importFrom(generations);
+        target.importKey(key0, key1);
+    }
+
+    /**
+     * Reloads into a cache the entries of one zone and policy store that are still within their TTL.
+     * Each scope is restored at most once; later calls for the same scope return immediately.
+     * Restored entries never replace a decision cached since the process started.
+     *
+     * @param cache         The cache to warm.
+     * @param zoneId        The zone ID of the authorization model.
+     * @param policyStoreId The policy store ID of the authorization model.
+     * @return The number of restored entries.
+     */
+    public int restore(OffHeapDecisionCache cache, long zoneId, String policyStoreId) {
+        int scope = claim(zoneId, policyStoreId);
+        return scope != 0 ? restoreScope(cache, scope, zoneId, policyStoreId) : 0;
+    }
+
+    /**
+     * Claims one zone and policy store on the calling thread and reloads its entries on an executor,
+     * so the caller never waits for the snapshot to be read.
+     *
+     * @param cache         The cache to warm.
+     * @param zoneId        The zone ID of the authorization model.
+     * @param policyStoreId The policy store ID of the authorization model.
+     * @param executor      The executor reading the entries.
+     * @return The number of restored entries, completed with zero if the scope was already claimed.
+     */
+    public CompletableFuture<Integer> restoreAsync(OffHeapDecisionCache cache, long zoneId, String policyStoreId,
+                                                   Executor executor) {
+        int scope = claim(zoneId, policyStoreId);
+        if (scope == 0) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return CompletableFuture.supplyAsync(() -> restoreScope(cache, scope, zoneId, policyStoreId), executor);
+    }
+
+    /**
+     * Checks whether some scope of the snapshot has not been restored yet.
+     *
+     * @return True if there are scopes left to restore.
+     */
+    public boolean hasPendingScopes() {
+        return !pendingScopes.isEmpty();
+    }
+
+    private int claim(long zoneId, String policyStoreId) {
+        if (pendingScopes.isEmpty()) {
+            return 0;
+        }
+        Integer scope = pendingScopes.remove(new ScopeKey(zoneId, policyStoreId != null ? policyStoreId : ""));
+        return scope != null ? scope : 0;
+    }
+
+    private int restoreScope(OffHeapDecisionCache cache, int scope, long zoneId, String policyStoreId) {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (int position = scopeStarts[scope]; position < scopeStarts[scope + 1]; position++) {
+            int offset = scopeRecords[position] * RECORD_BYTES;
+            long expires = records.getLong(offset + 16);
+            if (expires <= now) {
+                continue;
+            }
+            int meta = records.getInt(offset + 24);
+            int reason = OffHeapDecisionCache.reasonOf(meta);
+            cache.restore(records.getLong(offset), records.getLong(offset + 8), expires, zoneId, policyStoreId,
+                    OffHeapDecisionCache.decisionOf(meta), reason < reasonCodes.length ? reasonCodes[reason] : null);
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Tells whether a string fits the 16-bit length of the dictionaries, without encoding the short ones.
+     */
+    private static boolean isStorable(String value) {
+        return value.length() <= MAX_STRING_BYTES / 3 || value.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer chunk, int bytes) {
+        if (chunk.remaining() < bytes) {
+            flush(channel, chunk);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer chunk) {
+        chunk.flip();
+        try {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    private record ScopeKey(long zoneId, String policyStoreId) {
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Decision cache that keeps its entries in direct memory, so the heap footprint stays flat
+ * regardless of how many decisions are cached.
+ * <p>
+ * The table is set-associative: a fingerprint selects a bucket of eight fixed-size slots and
+ * a full bucket evicts with the CLOCK (second chance) policy. Writers serialize on striped
+ * locks while readers are lock-free, validating each slot against a per-slot sequence stamp.
+ * <p>
+ * Slot layout (32 bytes): key high (8), key low (8), expiry epoch millis (8), meta (4), stamp (4).
+ * Reason codes and scopes (zone and policy store pairs) are interned in small bounded dictionaries
+ * and stored as indexes in the meta word.
+ * Direct memory is bounded by {@code -XX:MaxDirectMemorySize} and is released when the cache is garbage collected.
+ */
+public final class OffHeapDecisionCache implements DecisionCache {
+
+    private static final int SLOT_BYTES = 32;
+    private static final int WAYS = 8;
+    private static final int BUCKET_BYTES = SLOT_BYTES * WAYS;
+    private static final int CLOCK_BYTES = 16;
+    private static final int REGION_SHIFT = 22;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int MAX_BUCKETS = 1 << 28;
+    private static final int STRIPES = 256;
+    private static final int READ_RETRIES = 4;
+
+    private static final int OFF_KEY_HIGH = 0;
+    private static final int OFF_KEY_LOW = 8;
+    private static final int OFF_EXPIRES = 16;
+    private static final int OFF_META = 24;
+    private static final int OFF_STAMP = 28;
+    private static final int OFF_HAND = WAYS;
+
+    private static final int META_OCCUPIED = 1;
+    private static final int META_DECISION = 1 << 1;
+    private static final int SCOPE_SHIFT = 2;
+    private static final int SCOPE_MASK = 0x3fff;
+    private static final int MAX_SCOPES = SCOPE_MASK;
+    private static final int REASON_SHIFT = 16;
+    private static final int MAX_REASON_CODES = 0xffff;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer[] tables;
+    private final ByteBuffer[] clocks;
+    private final Object[] locks;
+    private final int bucketMask;
+    private final long ttlMillis;
+    private final AtomicLong size = new AtomicLong();
+    private final ConcurrentHashMap<String, Integer> reasonIndex = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> reasonCodes = new AtomicReferenceArray<>(MAX_REASON_CODES + 1);
+    private int reasonCount;
+    private final ConcurrentHashMap<Scope, Integer> scopeIndex = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Scope> scopes = new AtomicReferenceArray<>(MAX_SCOPES + 1);
+    private int scopeCount;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param capacity  The maximum number of cached decisions, rounded up to a power of two.
+     * @param ttlMillis The time to live of each decision, in milliseconds.
+     */
+    public OffHeapDecisionCache(long capacity, long ttlMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("TTL must be positive.");
+        }
+        long buckets = Long.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS));
+        if (buckets * WAYS < capacity) {
+            buckets <<= 1;
+        }
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Capacity exceeds " + (long) MAX_BUCKETS * WAYS + " entries.");
+        }
+        int bucketCount = (int) buckets;
+        int regionBuckets = Math.min(bucketCount, 1 << REGION_SHIFT);
+        int regionCount = bucketCount / regionBuckets;
+        this.tables = new ByteBuffer[regionCount];
+        this.clocks = new ByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            tables[i] = allocate(regionBuckets * BUCKET_BYTES);
+            clocks[i] = allocate(regionBuckets * CLOCK_BYTES);
+        }
+        this.locks = new Object[Math.min(STRIPES, bucketCount)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.bucketMask = bucketCount - 1;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Gets the time to live of each decision.
+     *
+     * @return The time to live, in milliseconds.
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    @Override
+    public CachedDecision get(long keyHigh, long keyLow) {
+        int bucket = (int) keyLow & bucketMask;
+        ByteBuffer table = tables[bucket >>> REGION_SHIFT];
+        int base = (bucket & REGION_MASK) * BUCKET_BYTES;
+        long now = System.currentTimeMillis();
+        for (int way = 0; way < WAYS; way++) {
+            int slot = base + way * SLOT_BYTES;
+            for (int attempt = 0; attempt < READ_RETRIES; attempt++) {
+                int stamp = (int) INTS.getAcquire(table, slot + OFF_STAMP);
+                if ((stamp & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                long high = (long) LONGS.get(table, slot + OFF_KEY_HIGH);
+                long low = (long) LONGS.get(table, slot + OFF_KEY_LOW);
+                long expires = (long) LONGS.get(table, slot + OFF_EXPIRES);
+                int meta = (int) INTS.get(table, slot + OFF_META);
+                VarHandle.loadLoadFence();
+                if ((int) INTS.get(table, slot + OFF_STAMP) != stamp) {
+                    continue;
+                }
+                if ((meta & META_OCCUPIED) == 0 || high != keyHigh || low != keyLow) {
+                    break;
+                }
+                if (expires <= now) {
+                    return null;
+                }
+                // Racy by design: a lost reference bit only makes the entry an earlier eviction candidate.
+                clocks[bucket >>> REGION_SHIFT].put((bucket & REGION_MASK) * CLOCK_BYTES + way, (byte) 1);
+                int reason = meta >>> REASON_SHIFT;
+                return new CachedDecision((meta & META_DECISION) != 0, reason == 0 ? null : reasonCodes.get(reason));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(long keyHigh, long keyLow, long zoneId, String policyStoreId, boolean decision, String reasonCode) {
+        int meta = META_OCCUPIED
+                | (decision ? META_DECISION : 0)
+                | scopeIndexOf(zoneId, policyStoreId) << SCOPE_SHIFT
+                | reasonIndexOf(reasonCode) << REASON_SHIFT;
+        insert(keyHigh, keyLow, System.currentTimeMillis() + ttlMillis, meta, true);
+    }
+
+    @Override
+    public void clear() {
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            ByteBuffer table = tables[bucket >>> REGION_SHIFT];
+            int base = (bucket & REGION_MASK) * BUCKET_BYTES;
+            synchronized (locks[bucket & (locks.length - 1)]) {
+                for (int way = 0; way < WAYS; way++) {
+                    int slot = base + way * SLOT_BYTES;
+                    if (((int) INTS.get(table, slot + OFF_META) & META_OCCUPIED) != 0) {
+                        writeSlot(table, slot, 0L, 0L, 0L, 0);
+                        size.decrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Direct memory has no explicit release in the JDK; it is returned once the cache is unreachable.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Visits every live entry with a consistent view of each slot.
+     */
+    void forEachEntry(EntryVisitor visitor) {
+        long now = System.currentTimeMillis();
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            ByteBuffer table = tables[bucket >>> REGION_SHIFT];
+            int base = (bucket & REGION_MASK) * BUCKET_BYTES;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = base + way * SLOT_BYTES;
+                for (int attempt = 0; attempt < READ_RETRIES; attempt++) {
+                    int stamp = (int) INTS.getAcquire(table, slot + OFF_STAMP);
+                    if ((stamp & 1) != 0) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    long high = (long) LONGS.get(table, slot + OFF_KEY_HIGH);
+                    long low = (long) LONGS.get(table, slot + OFF_KEY_LOW);
+                    long expires = (long) LONGS.get(table, slot + OFF_EXPIRES);
+                    int meta = (int) INTS.get(table, slot + OFF_META);
+                    VarHandle.loadLoadFence();
+                    if ((int) INTS.get(table, slot + OFF_STAMP) != stamp) {
+                        continue;
+                    }
+                    if ((meta & META_OCCUPIED) != 0 && expires > now) {
+                        visitor.visit(high, low, expires, meta);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores an entry read back from a snapshot, keeping its original expiry.
+     * An entry cached since the process started is fresher, so it is kept.
+     */
+    void restore(long keyHigh, long keyLow, long expires, long zoneId, String policyStoreId, boolean decision, String reasonCode) {
+        int meta = META_OCCUPIED
+                | (decision ? META_DECISION : 0)
+                | scopeIndexOf(zoneId, policyStoreId) << SCOPE_SHIFT
+                | reasonIndexOf(reasonCode) << REASON_SHIFT;
+        insert(keyHigh, keyLow, expires, meta, false);
+    }
+
+    static boolean decisionOf(int meta) {
+        return (meta & META_DECISION) != 0;
+    }
+
+    static int scopeOf(int meta) {
+        return (meta >>> SCOPE_SHIFT) & SCOPE_MASK;
+    }
+
+    static int reasonOf(int meta) {
+        return meta >>> REASON_SHIFT;
+    }
+
+    int scopeCount() {
+        synchronized (scopeIndex) {
+            return scopeCount;
+        }
+    }
+
+    long scopeZoneId(int index) {
+        return scopes.get(index).zoneId();
+    }
+
+    String scopePolicyStoreId(int index) {
+        return scopes.get(index).policyStoreId();
+    }
+
+    int reasonCount() {
+        synchronized (reasonIndex) {
+            return reasonCount;
+        }
+    }
+
+    String reasonCode(int index) {
+        return reasonCodes.get(index);
+    }
+
+    private void insert(long keyHigh, long keyLow, long expires, int meta, boolean replace) {
+        long now = System.currentTimeMillis();
+        int bucket = (int) keyLow & bucketMask;
+        ByteBuffer table = tables[bucket >>> REGION_SHIFT];
+        ByteBuffer clock = clocks[bucket >>> REGION_SHIFT];
+        int base = (bucket & REGION_MASK) * BUCKET_BYTES;
+        int clockBase = (bucket & REGION_MASK) * CLOCK_BYTES;
+        synchronized (locks[bucket & (locks.length - 1)]) {
+            int target = -1;
+            int free = -1;
+            boolean fresh = false;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = base + way * SLOT_BYTES;
+                int slotMeta = (int) INTS.get(table, slot + OFF_META);
+                if ((slotMeta & META_OCCUPIED) == 0) {
+                    if (free < 0 || !fresh) {
+                        free = way;
+                        fresh = true;
+                    }
+                    continue;
+                }
+                if ((long) LONGS.get(table, slot + OFF_KEY_HIGH) == keyHigh
+                        && (long) LONGS.get(table, slot + OFF_KEY_LOW) == keyLow) {
+                    if (!replace) {
+                        return;
+                    }
+                    target = way;
+                    break;
+                }
+                if (free < 0 && (long) LONGS.get(table, slot + OFF_EXPIRES) <= now) {
+                    free = way;
+                }
+            }
+            if (target < 0) {
+                target = free >= 0 ? free : clockVictim(clock, clockBase);
+                if (target == free && fresh) {
+                    size.incrementAndGet();
+                }
+            }
+            writeSlot(table, base + target * SLOT_BYTES, keyHigh, keyLow, expires, meta);
+            clock.put(clockBase + target, (byte) 0);
+        }
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes + Long.BYTES - 1).alignedSlice(Long.BYTES);
+    }
+
+    private static void writeSlot(ByteBuffer table, int slot, long high, long low, long expires, int meta) {
+        int stamp = (int) INTS.get(table, slot + OFF_STAMP);
+        INTS.setOpaque(table, slot + OFF_STAMP, stamp + 1);
+        VarHandle.storeStoreFence();
+        LONGS.set(table, slot + OFF_KEY_HIGH, high);
+        LONGS.set(table, slot + OFF_KEY_LOW, low);
+        LONGS.set(table, slot + OFF_EXPIRES, expires);
+        INTS.set(table, slot + OFF_META, meta);
+        INTS.setRelease(table, slot + OFF_STAMP, stamp + 2);
+    }
+
+    private static int clockVictim(ByteBuffer clock, int clockBase) {
+        int hand = clock.get(clockBase + OFF_HAND) & (WAYS - 1);
+        for (int step = 0; step < 2 * WAYS; step++) {
+            if (clock.get(clockBase + hand) == 0) {
+                break;
+            }
+            clock.put(clockBase + hand, (byte) 0);
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        clock.put(clockBase + OFF_HAND, (byte) ((hand + 1) & (WAYS - 1)));
+        return hand;
+    }
+
+    private int scopeIndexOf(long zoneId, String policyStoreId) {
+        Scope scope = new Scope(zoneId, policyStoreId != null ? policyStoreId : "");
+        Integer index = scopeIndex.get(scope);
+        if (index != null) {
+            return index;
+        }
+        synchronized (scopeIndex) {
+            index = scopeIndex.get(scope);
+            if (index != null) {
+                return index;
+            }
+            if (scopeCount == MAX_SCOPES) {
+                return 0;
+            }
+            int next = ++scopeCount;
+            scopes.set(next, scope);
+            scopeIndex.put(scope, next);
+            return next;
+        }
+    }
+
+    private int reasonIndexOf(String reasonCode) {
+        if (reasonCode == null) {
+            return 0;
+        }
+        Integer index = reasonIndex.get(reasonCode);
+        if (index != null) {
+            return index;
+        }
+        synchronized (reasonIndex) {
+            index = reasonIndex.get(reasonCode);
+            if (index != null) {
+                return index;
+            }
+            if (reasonCount == MAX_REASON_CODES) {
+                return 0;
+            }
+            int next = ++reasonCount;
+            reasonCodes.set(next, reasonCode);
+            reasonIndex.put(reasonCode, next);
+            return next;
+        }
+    }
+
+    /**
+     * Receives the live entries of the cache.
+     */
+    interface EntryVisitor {
+        void visit(long keyHigh, long keyLow, long expires, int meta);
+    }
+
+    private record Scope(long zoneId, String policyStoreId) {
+    }
+}
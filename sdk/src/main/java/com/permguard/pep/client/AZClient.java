@@ -18,50 +18,310 @@
 
 package com.permguard.pep.client;
 
+import com.permguard.pep.audit.AuditLog;
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.builder.PrincipalBuilder;
+import com.permguard.pep.cache.CacheGenerations;
+import com.permguard.pep.cache.CachedDecision;
+import com.permguard.pep.cache.DecisionCache;
+import com.permguard.pep.cache.DecisionCacheSnapshot;
+import com.permguard.pep.cache.OffHeapDecisionCache;
 import com.permguard.pep.config.AZConfig;
 import com.permguard.pep.exception.AuthorizationException;
+import com.permguard.pep.exception.ErrorKind;
 import com.permguard.pep.internal.proto.AuthorizationCheck;
 import com.permguard.pep.internal.proto.V1PDPServiceGrpc;
 import com.permguard.pep.model.request.*;
 import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.model.response.DecisionBatch;
+import com.permguard.pep.model.response.DecisionMatrix;
+import com.permguard.pep.tracing.Tracer;
+import com.permguard.pep.tracing.TracingInterceptor;
+import com.permguard.pep.utils.Hash128;
+import com.permguard.pep.utils.RequestFingerprint;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.ConnectivityState;
+import io.grpc.DecompressorRegistry;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.StatusRuntimeException;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.NettyChannelBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Client for interacting with the Policy Decision Point (PDP) authorization service.
  */
 public class AZClient {
+    private static final System.Logger LOGGER = System.getLogger(AZClient.class.getName());
+
+    /**
+     * The AuthorizationCheck method of the PDP, bound to marshallers that reuse their serialization buffers
+     * and splice the pre-encoded authorization model into each request.
+     */
+    private static final MethodDescriptor<SplicedCheckRequest, AuthorizationCheck.AuthorizationCheckResponse> AUTHORIZATION_CHECK_METHOD =
+            V1PDPServiceGrpc.getAuthorizationCheckMethod().toBuilder(
+                    new SplicedCheckRequest.Marshaller(),
+                    new PooledMarshaller<>(AuthorizationCheck.AuthorizationCheckResponse.getDefaultInstance())).build();
+
+    /**
+     * Call listeners only record the outcome, so they run on the transport thread.
+     */
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
     private final AZConfig config;
-    private final ManagedChannel channel;
-    private final V1PDPServiceGrpc.V1PDPServiceBlockingStub blockingStub;
+    private final ClientInterceptor[] interceptors;
+    private final CompressorRegistry compressors;
+    private final DecompressorRegistry decompressors;
+    private volatile Connection connection;
+    private boolean closed;
+    private final CallOptions callOptions;
+    private final int compressionThresholdBytes;
     private final Mapper mapper;
+    private final DecisionCache decisionCache;
+    private final TrafficRecorder trafficRecorder;
+    private final AuditLog auditLog;
+    private final SlowCheckSampler slowCheckSampler;
+    private final ScheduledExecutorService slowCheckDumpScheduler;
+    private final CacheGenerations cacheGenerations = new CacheGenerations();
+    private final Path snapshotPath;
+    private final ScheduledExecutorService snapshotScheduler;
+    private volatile DecisionCacheSnapshot snapshot;
+    private final ThreadPoolExecutor snapshotRestorer;
+    private CompletableFuture<Void> warmUp;
 
     /**
      * Constructs a new client with the given configuration.
-     * Initializes the channel and stub.
+     * The channel is created on first use.
      *
      * @param config the configuration for the client
      */
     public AZClient(AZConfig config) {
+        this(config, new ClientInterceptor[0]);
+    }
+
+    /**
+     * Constructs a new client with the given configuration and additional interceptors.
+     * The channel is created on first use.
+     *
+     * @param config       the configuration for the client
+     * @param interceptors the interceptors applied to the calls to the PDP, after the ones of the configuration
+     */
+    public AZClient(AZConfig config, ClientInterceptor... interceptors) {
         this.config = config;
-        ManagedChannelBuilder<?> builder = ManagedChannelBuilder
-                .forAddress(config.getHost(), config.getPort());
-        if (config.isUsePlaintext()) {
-            builder.usePlaintext();
+        this.interceptors = interceptors.clone();
+        if (config.getCompression() != null || !config.getCodecs().isEmpty()) {
+            CompressorRegistry compressorRegistry = CompressorRegistry.getDefaultInstance();
+            DecompressorRegistry decompressorRegistry = DecompressorRegistry.getDefaultInstance();
+            if (!config.getCodecs().isEmpty()) {
+                compressorRegistry = CompressorRegistry.newEmptyInstance();
+                compressorRegistry.register(new Codec.Gzip());
+                compressorRegistry.register(Codec.Identity.NONE);
+                for (Codec codec : config.getCodecs()) {
+                    compressorRegistry.register(codec);
+                    decompressorRegistry = decompressorRegistry.with(codec, true);
+                }
+            }
+            if (config.getCompression() != null && compressorRegistry.lookupCompressor(config.getCompression()) == null) {
+                throw new IllegalArgumentException("Unknown compression: " + config.getCompression() + ".");
+            }
+            this.compressors = compressorRegistry;
+            this.decompressors = decompressorRegistry;
+        } else {
+            this.compressors = null;
+            this.decompressors = null;
         }
+        this.callOptions = config.getCompression() != null
+                ? CallOptions.DEFAULT.withExecutor(DIRECT_EXECUTOR).withCompression(config.getCompression())
+                : CallOptions.DEFAULT.withExecutor(DIRECT_EXECUTOR);
+        this.compressionThresholdBytes = config.getCompression() != null ? config.getCompressionThresholdBytes() : 0;
         this.mapper = new Mapper();
-        this.channel = builder.build();
-        this.blockingStub = V1PDPServiceGrpc.newBlockingStub(channel);
+        this.decisionCache = config.getDecisionCache();
+        this.trafficRecorder = config.getTrafficRecorder();
+        this.auditLog = config.getAuditLog();
+        this.slowCheckSampler = config.getSlowCheckSampler();
+        this.snapshotPath = config.getDecisionCacheSnapshotPath();
+        if (snapshotPath != null && !(decisionCache instanceof OffHeapDecisionCache)) {
+            throw new IllegalArgumentException("Decision cache snapshots require an OffHeapDecisionCache.");
+        }
+        this.snapshot = snapshotPath != null ? openSnapshot(snapshotPath) : null;
+        if (snapshot != null) {
+            snapshot.restoreGenerations(cacheGenerations);
+        }
+        this.snapshotRestorer = snapshot != null ? newSnapshotRestorer() : null;
+        this.snapshotScheduler = snapshotPath != null && config.getDecisionCacheSnapshotIntervalMillis() > 0
+                ? scheduleSnapshots(config.getDecisionCacheSnapshotIntervalMillis())
+                : null;
+        this.slowCheckDumpScheduler = slowCheckSampler != null && config.getSlowCheckDumpIntervalMillis() > 0
+                ? scheduleSlowCheckDumps(config.getSlowCheckDumpIntervalMillis())
+                : null;
+        if (config.isWarmUpOnStart()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Warms the client up: connects the channel eagerly, waits until it is ready, then runs synthetic checks
+     * to load and compile the request and response mapping and the gRPC call path.
+     * <p>
+     * Synthetic checks bypass the decision cache, the audit log, the traffic recorder and the slow check sampler,
+     * and their decisions are discarded. They are still real RPCs: they reach the PDP through every configured
+     * interceptor and, unless a warm-up request is configured, ask for zone 0 and a {@code permguard-warm-up}
+     * policy store, which the PDP is expected to deny or reject. Interceptors that meter, authenticate or alert on
+     * checks see them too.
+     * <p>
+     * Calling this method again returns the same future, unless the previous warm-up failed: it is then retried.
+     *
+     * @return A future completed once the client is warm, or completed exceptionally with an AuthorizationException
+     * if the PDP could not be reached within the warm-up timeout.
+     */
+    public synchronized CompletableFuture<Void> warmUp() {
+        if (warmUp != null) {
+            return warmUp;
+        }
+        long timeoutMillis = config.getWarmUpTimeoutMillis();
+        CompletableFuture<Void> current = awaitReady(timeoutMillis)
+                .thenCompose(ready -> runSyntheticChecks(0, config.getWarmUpChecks()))
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((ignored, e) -> {
+                    if (e == null) {
+                        return null;
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof AuthorizationException failure) {
+                        throw failure;
+                    }
+                    if (cause instanceof TimeoutException) {
+                        throw new AuthorizationException("The PDP was not ready within " + timeoutMillis + " ms.",
+                                ErrorKind.UNAVAILABLE, null, false);
+                    }
+                    throw new AuthorizationException("Warm-up failed.", ErrorKind.INTERNAL, cause, true);
+                });
+        warmUp = current;
+        current.whenComplete((ignored, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    if (warmUp == current) {
+                        warmUp = null;
+                    }
+                }
+            }
+        });
+        return current;
     }
 
     /**
      * Closes the channel when it is no longer needed.
+     * When snapshots are enabled, the decision cache is persisted one last time.
+     * When traffic is recorded, the pending requests are written and the log is closed.
+     * When decisions are audited, the pending records are written and the audit log is closed.
+     * When slow checks are dumped periodically, the samples not dumped yet are logged.
      */
     public void shutdown() {
-        if (channel != null && !channel.isShutdown()) {
-            channel.shutdown();
+        Connection current;
+        synchronized (this) {
+            closed = true;
+            current = connection;
+        }
+        if (current != null) {
+            close(current);
+        }
+        if (trafficRecorder != null) {
+            trafficRecorder.close();
+        }
+        if (auditLog != null) {
+            auditLog.close();
+        }
+        if (slowCheckDumpScheduler != null) {
+            slowCheckDumpScheduler.shutdownNow();
+            dumpSlowChecks();
+        }
+        if (snapshotRestorer != null) {
+            snapshotRestorer.shutdownNow();
         }
+        if (snapshotPath != null) {
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+            }
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Invalidates every cached decision.
+     * Old entries become unreachable immediately and are reclaimed by eviction.
+     */
+    public void invalidateAll() {
+        cacheGenerations.bumpAll();
+    }
+
+    /**
+     * Invalidates the cached decisions of a zone.
+     *
+     * @param zoneId The zone ID.
+     */
+    public void invalidateZone(long zoneId) {
+        cacheGenerations.bumpZone(zoneId);
+    }
+
+    /**
+     * Invalidates the cached decisions of a policy store, for instance after its policies changed.
+     *
+     * @param policyStoreId The policy store ID.
+     */
+    public void invalidatePolicyStore(String policyStoreId) {
+        cacheGenerations.bumpPolicyStore(policyStoreId);
+    }
+
+    /**
+     * Invalidates the cached decisions of a subject.
+     *
+     * @param type The subject type.
+     * @param id   The subject ID.
+     */
+    public void invalidateSubject(String type, String id) {
+        cacheGenerations.bumpSubject(type, id);
+    }
+
+    /**
+     * Sets the policy version token of a policy store, which becomes part of the cache key of its decisions.
+     * Changing the token makes the decisions cached under the previous one unreachable.
+     * <p>
+     * Tokens are not persisted with the decision cache snapshot: restored decisions are only found once the token
+     * they were cached under is set again. A process that does not track the policy version must discard the
+     * snapshot when the policies change, or restored decisions would outlive the policies they were made with.
+     *
+     * @param policyStoreId The policy store ID.
+     * @param versionToken  The version token, or null to clear it.
+     */
+    public void setPolicyVersion(String policyStoreId, String versionToken) {
+        cacheGenerations.setPolicyVersion(policyStoreId, versionToken);
     }
 
     /**
@@ -69,22 +329,813 @@ public class AZClient {
      *
      * @param requestPayload The request payload containing the authorization check details.
      * @return The response from the PDP.
+     * @throws AuthorizationException If the request is invalid or the check fails.
      */
     public AZResponse check(AZRequest requestPayload) {
+        AZResult result = tryCheck(requestPayload);
+        if (result.isSuccess()) {
+            return result.getResponse();
+        }
+        throw exceptionOf(result);
+    }
+
+    /**
+     * Performs a multi-evaluation authorization check, decoding the response into a compact batch.
+     * Decisions are kept in a bitset and only the reasons of denied evaluations are kept, so large batches
+     * do not create an {@link com.permguard.pep.model.response.EvaluationResponse} per evaluation.
+     *
+     * @param requestPayload The request payload containing the evaluations.
+     * @return The decisions of the evaluations.
+     * @throws AuthorizationException If the request is invalid or the check fails.
+     */
+    public DecisionBatch checkBatch(AZRequest requestPayload) {
+        PendingCheck pending = prepare(requestPayload);
+        if (pending.result != null) {
+            AZResult result = finish(pending, null, 0, pending.result);
+            if (result.isSuccess()) {
+                return mapper.mapDecisionBatch(result.getResponse());
+            }
+            throw exceptionOf(result);
+        }
+        UnaryOutcome outcome = null;
+        AZResult result;
         try {
+            outcome = start(pending.grpcRequest);
+            result = complete(pending, outcome.future.get(), true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome.call.cancel("Thread interrupted", null);
+            result = finish(pending, null, 0,
+                    AZResult.failure(ErrorKind.UNAVAILABLE, "Authorization check interrupted.", null));
+        } catch (Exception e) {
+            result = finish(pending, null, 0, AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e));
+        }
+        if (!result.isSuccess()) {
+            throw exceptionOf(result);
+        }
+        List<Evaluation> evaluations = requestPayload.getEvaluations();
+        int requested = evaluations != null ? evaluations.size() : 0;
+        if (requested > 0 && outcome.response.getEvaluationsCount() != requested) {
+            throw new AuthorizationException("The PDP returned " + outcome.response.getEvaluationsCount()
+                    + " evaluations for " + requested + " requested.", ErrorKind.INTERNAL, null, false);
+        }
+        return mapper.mapDecisionBatch(outcome.response);
+    }
+
+    /**
+     * Performs an authorization check against the PDP, reporting failures as a result instead of an exception.
+     *
+     * @param requestPayload The request payload containing the authorization check details.
+     * @return The response from the PDP, or the classified failure.
+     */
+    public AZResult tryCheck(AZRequest requestPayload) {
+        PendingCheck pending = prepare(requestPayload);
+        if (pending.result != null) {
+            return finish(pending, null, 0, pending.result);
+        }
+        UnaryOutcome outcome = null;
+        try {
+            outcome = start(pending.grpcRequest);
+            return complete(pending, outcome.future.get(), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome.call.cancel("Thread interrupted", null);
+            return finish(pending, null, 0,
+                    AZResult.failure(ErrorKind.UNAVAILABLE, "Authorization check interrupted.", null));
+        } catch (Exception e) {
+            return finish(pending, null, 0, AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e));
+        }
+    }
+
+    /**
+     * Performs an authorization check against the PDP without blocking the calling thread.
+     * The returned future never completes exceptionally: failures are reported in the result.
+     * Its dependent actions may run on a gRPC transport thread and must not block.
+     *
+     * @param requestPayload The request payload containing the authorization check details.
+     * @return A future completed with the response from the PDP, or the classified failure.
+     */
+    public CompletableFuture<AZResult> checkAsync(AZRequest requestPayload) {
+        PendingCheck pending = prepare(requestPayload);
+        if (pending.result != null) {
+            return CompletableFuture.completedFuture(finish(pending, null, 0, pending.result));
+        }
+        try {
+            return start(pending.grpcRequest).future.thenApply(outcome -> complete(pending, outcome, false));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(
+                    finish(pending, null, 0, AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e)));
+        }
+    }
+
+    /**
+     * Checks a stream of requests, each one with its own RPC.
+     * At most {@code maxConcurrency} checks are in flight and the requests pulled from the source are bounded
+     * by the demand of the subscriber, so memory stays fixed whatever the length of the stream.
+     * Failed checks are emitted as failed results and do not terminate the stream.
+     * Results are emitted on the common fork-join pool, see {@link #checkAll(Flow.Publisher, int, boolean, Executor)}.
+     *
+     * @param requests       The requests to check.
+     * @param maxConcurrency The maximum number of checks in flight.
+     * @param ordered        Whether results are emitted in the order of the requests, rather than as they complete.
+     * @return A publisher of the results, which can be subscribed once.
+     */
+    public Flow.Publisher<AZResult> checkAll(Flow.Publisher<AZRequest> requests, int maxConcurrency, boolean ordered) {
+        return checkAll(requests, maxConcurrency, ordered, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks a stream of requests, each one with its own RPC, emitting the results on the given executor.
+     * RPCs complete on the gRPC event loop, which may be shared by every channel of the process: the completions
+     * are handed to {@code executor} so that the subscriber, and the mapping of the next requests, never block it.
+     * A direct executor is allowed only when the subscriber never blocks.
+     *
+     * @param requests       The requests to check.
+     * @param maxConcurrency The maximum number of checks in flight.
+     * @param ordered        Whether results are emitted in the order of the requests, rather than as they complete.
+     * @param executor       The executor calling the subscriber.
+     * @return A publisher of the results, which can be subscribed once.
+     */
+    public Flow.Publisher<AZResult> checkAll(Flow.Publisher<AZRequest> requests, int maxConcurrency, boolean ordered,
+                                             Executor executor) {
+        return new CheckPublisher<>(requests, batch -> checkAsync(batch.get(0)).thenApply(List::of),
+                maxConcurrency, 1, ordered, executor);
+    }
+
+    /**
+     * Checks a stream of evaluations against a shared authorization model, batching them into multi-evaluation RPCs.
+     * A batch is sent once it is full, the source completed or it waited a few milliseconds for more evaluations.
+     * Each evaluation gets its own result; a failed RPC fails every evaluation of its batch.
+     * Results are emitted on the common fork-join pool,
+     * see {@link #checkAll(AZModel, Flow.Publisher, int, int, boolean, Executor)}.
+     *
+     * @param model          The authorization model shared by every evaluation.
+     * @param evaluations    The evaluations to check.
+     * @param maxConcurrency The maximum number of RPCs in flight.
+     * @param batchSize      The maximum number of evaluations per RPC.
+     * @param ordered        Whether results are emitted in the order of the evaluations, rather than as they complete.
+     * @return A publisher of the results, which can be subscribed once.
+     */
+    public Flow.Publisher<AZResult> checkAll(AZModel model, Flow.Publisher<Evaluation> evaluations,
+                                             int maxConcurrency, int batchSize, boolean ordered) {
+        return checkAll(model, evaluations, maxConcurrency, batchSize, ordered, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks a stream of evaluations against a shared authorization model in batches, emitting the results on the
+     * given executor. RPCs complete on the gRPC event loop, which may be shared by every channel of the process:
+     * the completions are handed to {@code executor} so that the subscriber, and the mapping and encoding of the
+     * next batch, never block it. A direct executor is allowed only when the subscriber never blocks.
+     *
+     * @param model          The authorization model shared by every evaluation.
+     * @param evaluations    The evaluations to check.
+     * @param maxConcurrency The maximum number of RPCs in flight.
+     * @param batchSize      The maximum number of evaluations per RPC.
+     * @param ordered        Whether results are emitted in the order of the evaluations, rather than as they complete.
+     * @param executor       The executor calling the subscriber.
+     * @return A publisher of the results, which can be subscribed once.
+     */
+    public Flow.Publisher<AZResult> checkAll(AZModel model, Flow.Publisher<Evaluation> evaluations,
+                                             int maxConcurrency, int batchSize, boolean ordered, Executor executor) {
+        return new CheckPublisher<>(evaluations, batch -> checkAsync(new AZRequest(null, model, null, null, null, null, batch))
+                .thenApply(result -> mapper.splitEvaluations(result, batch.size())),
+                maxConcurrency, batchSize, ordered, executor);
+    }
+
+    /**
+     * Checks every combination of the subjects, resources and actions of a matrix, blocking until it is decided.
+     * See {@link #checkMatrixAsync(AZMatrixRequest, int, int)}.
+     *
+     * @param request        The matrix request.
+     * @param maxConcurrency The maximum number of RPCs in flight.
+     * @param chunkSize      The maximum number of cells per RPC, rounded up to a multiple of 64.
+     * @return The decisions, with the cells whose check failed flagged.
+     */
+    public DecisionMatrix checkMatrix(AZMatrixRequest request, int maxConcurrency, int chunkSize) {
+        return checkMatrixAsync(request, maxConcurrency, chunkSize).join();
+    }
+
+    /**
+     * Checks every combination of the subjects, resources and actions of a matrix without blocking.
+     * <p>
+     * Each subject, resource and action is converted to its gRPC form once, and the cells are sent in chunks of
+     * multi-evaluation RPCs. The decisions are read straight from the responses into a bitset, so no object is
+     * created per cell. The returned future never completes exceptionally: an invalid request fails every cell,
+     * a failed RPC fails the cells of its chunk, and the first failure is reported by the matrix.
+     * Responses are processed on the common fork-join pool, see
+     * {@link #checkMatrixAsync(AZMatrixRequest, int, int, Executor)}.
+     *
+     * @param request        The matrix request.
+     * @param maxConcurrency The maximum number of RPCs in flight.
+     * @param chunkSize      The maximum number of cells per RPC, rounded up to a multiple of 64.
+     * @return A future completed with the decisions, with the cells whose check failed flagged.
+     */
+    public CompletableFuture<DecisionMatrix> checkMatrixAsync(AZMatrixRequest request, int maxConcurrency, int chunkSize) {
+        return checkMatrixAsync(request, maxConcurrency, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks every combination of the subjects, resources and actions of a matrix without blocking, processing the
+     * responses on the given executor. The decisions of a chunk are recorded, audited and sampled, and the next
+     * chunk is encoded and sent, on the executor rather than on the transport threads, so a large matrix does not
+     * stall the other calls of the client. Once the executor rejects tasks, the chunks are processed inline.
+     *
+     * @param request        The matrix request.
+     * @param maxConcurrency The maximum number of RPCs in flight.
+     * @param chunkSize      The maximum number of cells per RPC, rounded up to a multiple of 64.
+     * @param executor       The executor processing the responses.
+     * @return A future completed with the decisions, with the cells whose check failed flagged.
+     */
+    public CompletableFuture<DecisionMatrix> checkMatrixAsync(AZMatrixRequest request, int maxConcurrency, int chunkSize,
+                                                              Executor executor) {
+        if (maxConcurrency < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("maxConcurrency and chunkSize must be positive.");
+        }
+        List<String> problems = RequestValidator.validate(request);
+        if (!problems.isEmpty()) {
+            return CompletableFuture.completedFuture(MatrixCheck.failed(request, AZResult.failure(ErrorKind.INVALID_REQUEST,
+                    "Invalid authorization request: " + String.join("; ", problems) + ".", null)));
+        }
+        MatrixCheck matrix;
+        try {
+            matrix = new MatrixCheck(request, mapper.mapMatrix(request), chunkSize);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(MatrixCheck.failed(request,
+                    AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e)));
+        }
+        Executor chunks = task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The matrix must still complete once the executor is shut down.
+                task.run();
+            }
+        };
+        for (int i = Math.min(maxConcurrency, matrix.getChunkCount()); i > 0; i--) {
+            checkNextChunk(matrix, chunks);
+        }
+        return matrix.getResult();
+    }
+
+    /**
+     * Validates a request and looks it up in the decision cache.
+     */
+    private PendingCheck prepare(AZRequest requestPayload) {
+        long startNanos = slowCheckSampler != null ? System.nanoTime() : 0;
+        CheckEvent event = CheckEvent.start(requestPayload);
+        if (trafficRecorder != null) {
+            trafficRecorder.record(requestPayload);
+        }
+        List<String> problems = RequestValidator.validate(requestPayload);
+        if (!problems.isEmpty()) {
+            return new PendingCheck(requestPayload, null, null, event, startNanos, 0, AZResult.failure(ErrorKind.INVALID_REQUEST,
+                    "Invalid authorization request: " + String.join("; ", problems) + ".", null));
+        }
+        try {
+            // Only atomic requests are cached, multiple evaluations always reach the PDP
+            Hash128 cacheKey = null;
+            if (decisionCache != null && isCacheable(requestPayload)) {
+                AZModel model = requestPayload.getAuthorizationModel();
+                if (snapshot != null) {
+                    restoreSnapshot(model.getZoneId(), model.getPolicyStore().getId());
+                }
+                cacheKey = cacheKeyOf(requestPayload);
+                CachedDecision cached = decisionCache.get(cacheKey.high(), cacheKey.low());
+                if (cached != null) {
+                    AZResponse response = mapper.mapCachedDecision(
+                            requestPayload.getRequestId() != null ? requestPayload.getRequestId() : "", cached);
+                    if (auditLog != null) {
+                        auditLog.log(requestPayload, response);
+                    }
+                    return new PendingCheck(requestPayload, null, null, event, startNanos, 0, AZResult.success(response));
+                }
+            }
+
             // Convert to gRPC format
-            AuthorizationCheck.AuthorizationCheckRequest grpcRequest = mapper.mapAuthorizationCheckRequest(requestPayload);
-            AuthorizationCheck.AuthorizationCheckResponse grpcResponse = blockingStub.authorizationCheck(grpcRequest);
+            SplicedCheckRequest grpcRequest = mapper.mapSplicedCheckRequest(requestPayload);
+            if (event != null) {
+                event.prepared(grpcRequest.getSerializedSize());
+            }
+            return new PendingCheck(requestPayload, cacheKey, grpcRequest, event, startNanos,
+                    slowCheckSampler != null ? System.nanoTime() : 0, null);
+        } catch (Exception e) {
+            return new PendingCheck(requestPayload, null, null, event, startNanos, 0,
+                    AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e));
+        }
+    }
+
+    /**
+     * Turns the outcome of the RPC into a result, caching the decision when the request is cacheable.
+     * When the caller decodes the evaluations itself, the response of the result does not carry them.
+     */
+    private AZResult complete(PendingCheck pending, UnaryOutcome outcome, boolean withoutEvaluations) {
+        long receivedNanos = slowCheckSampler != null ? System.nanoTime() : 0;
+        if (pending.event != null) {
+            pending.event.received();
+        }
+        return finish(pending, outcome, receivedNanos, resultOf(pending, outcome, withoutEvaluations));
+    }
+
+    private AZResult resultOf(PendingCheck pending, UnaryOutcome outcome, boolean withoutEvaluations) {
+        if (outcome.status != null) {
+            return failureOf(outcome.status);
+        }
+        try {
+            AuthorizationCheck.AuthorizationCheckResponse grpcResponse = outcome.response;
+            if (pending.cacheKey != null) {
+                AZModel model = pending.request.getAuthorizationModel();
+                decisionCache.put(pending.cacheKey.high(), pending.cacheKey.low(), model.getZoneId(), model.getPolicyStore().getId(),
+                        grpcResponse.getDecision(), mapper.reasonCodeOf(grpcResponse));
+            }
 
             // Convert gRPC response back to AZResponse
-            return mapper.mapAuthResponsePayload(grpcResponse);
+            AZResponse response = withoutEvaluations && auditLog == null
+                    ? mapper.mapResponseHeader(grpcResponse)
+                    : mapper.mapAuthResponsePayload(grpcResponse);
+            if (auditLog != null) {
+                auditLog.log(pending.request, response);
+            }
+            return AZResult.success(response);
+        } catch (Exception e) {
+            return AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e);
+        }
+    }
+
+    private AuthorizationException exceptionOf(AZResult result) {
+        ErrorKind kind = result.getErrorKind();
+        return new AuthorizationException(result.getErrorMessage(), kind, result.getCause(),
+                kind == ErrorKind.INTERNAL || config.isErrorStackTraces());
+    }
+
+    private static AZResult failureOf(Status status) {
+        return AZResult.failure(errorKindOf(status.getCode()),
+                "Authorization check failed due to gRPC error: " + status.getCode()
+                        + (status.getDescription() != null ? ": " + status.getDescription() : "") + ".",
+                status.getCause());
+    }
+
+    /**
+     * Sends the unclaimed chunks of a matrix one after the other, each one once the previous one completed.
+     * Chunks completing inline, for instance on a failed channel, are chained in a loop rather than recursively.
+     * Otherwise the next chunk is sent from the executor thread that completed the previous one.
+     */
+    private void checkNextChunk(MatrixCheck matrix, Executor executor) {
+        for (int chunk = matrix.claimChunk(); chunk >= 0; chunk = matrix.claimChunk()) {
+            CompletableFuture<Void> done = checkChunk(matrix, chunk, executor);
+            if (!done.isDone()) {
+                done.whenComplete((ignored, error) -> checkNextChunk(matrix, executor));
+                return;
+            }
+        }
+    }
 
-        } catch (StatusRuntimeException e) {
-            throw new AuthorizationException("Authorization check failed due to gRPC error.", e);
+    /**
+     * Sends a chunk of a matrix. A chunk is checked like any other request: it is recorded, audited, traced and
+     * sampled when slow.
+     */
+    private CompletableFuture<Void> checkChunk(MatrixCheck matrix, int chunk, Executor executor) {
+        long startNanos = slowCheckSampler != null ? System.nanoTime() : 0;
+        AZRequest chunkRequest = matrix.requestOf(chunk);
+        CheckEvent event = CheckEvent.start(chunkRequest);
+        if (trafficRecorder != null) {
+            trafficRecorder.record(chunkRequest);
+        }
+        PendingCheck pending = new PendingCheck(chunkRequest, null, null, event, startNanos, 0, null);
+        try {
+            SplicedCheckRequest grpcRequest = matrix.encode(chunk);
+            if (event != null) {
+                event.prepared(grpcRequest.getSerializedSize());
+            }
+            PendingCheck sent = new PendingCheck(chunkRequest, null, grpcRequest, event, startNanos,
+                    slowCheckSampler != null ? System.nanoTime() : 0, null);
+            pending = sent;
+            return start(grpcRequest).future.thenAcceptAsync(outcome -> completeChunk(matrix, chunk, sent, outcome), executor);
         } catch (Exception e) {
-            throw new AuthorizationException("An unexpected error occurred.", e);
+            AZResult failure = AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e);
+            finish(pending, null, 0, failure);
+            matrix.fail(chunk, failure);
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-}
+    /**
+     * Records the decisions of a chunk, or fails its cells. A matrix never fails as a whole: failed chunks are
+     * reported in the matrix, so its future always completes.
+     */
+    private void completeChunk(MatrixCheck matrix, int chunk, PendingCheck pending, UnaryOutcome outcome) {
+        long receivedNanos = slowCheckSampler != null ? System.nanoTime() : 0;
+        if (pending.event != null) {
+            pending.event.received();
+        }
+        AZResult result;
+        try {
+            if (outcome.status != null) {
+                result = failureOf(outcome.status);
+            } else {
+                AuthorizationCheck.AuthorizationCheckResponse response = outcome.response;
+                int requested = pending.request.getEvaluations().size();
+                if (response.getEvaluationsCount() != requested) {
+                    result = AZResult.failure(ErrorKind.INTERNAL, "The PDP returned " + response.getEvaluationsCount()
+                            + " evaluations for " + requested + " requested.", null);
+                } else {
+                    if (auditLog != null) {
+                        auditLog.log(pending.request, mapper.mapAuthResponsePayload(response));
+                    }
+                    result = AZResult.success(new AZResponse(response.getDecision(),
+                            response.hasRequestID() ? response.getRequestID() : "", null, List.of()));
+                }
+            }
+        } catch (Exception e) {
+            result = AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", e);
+        }
+        finish(pending, outcome, receivedNanos, result);
+        if (result.isSuccess()) {
+            matrix.decide(chunk, outcome.response);
+        } else {
+            matrix.fail(chunk, result);
+        }
+    }
+
+    /**
+     * Completes once the channel is READY, connecting it if it is idle. Reconnection after a transient failure
+     * is left to the channel backoff.
+     */
+    private CompletableFuture<Void> awaitReady(long timeoutMillis) {
+        CompletableFuture<Void> ready = new CompletableFuture<Void>().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        watchState(ready);
+        return ready;
+    }
+
+    private void watchState(CompletableFuture<Void> ready) {
+        if (ready.isDone()) {
+            return;
+        }
+        ManagedChannel channel = connection().channel;
+        ConnectivityState state = channel.getState(true);
+        switch (state) {
+            case READY -> ready.complete(null);
+            case SHUTDOWN -> ready.completeExceptionally(new AuthorizationException(
+                    "The client was shut down before it was ready.", ErrorKind.UNAVAILABLE, null, false));
+            default -> channel.notifyWhenStateChanged(state, () -> watchState(ready));
+        }
+    }
+
+    /**
+     * Runs synthetic checks one after the other, straight on the channel.
+     * A retryable failure means the PDP is not reachable after all and fails the warm-up; any other outcome,
+     * including a rejection of the synthetic request, still exercised the whole call path.
+     */
+    private CompletableFuture<Void> runSyntheticChecks(int index, int count) {
+        if (index >= count) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AZRequest payload = config.getWarmUpRequest() != null ? config.getWarmUpRequest() : syntheticRequest(index);
+        // The validator and the flight recorder event are on the path of every check, the event takes long to load.
+        RequestValidator.validate(payload);
+        CheckEvent.isRecording();
+        SplicedCheckRequest request = mapper.mapSplicedCheckRequest(payload);
+        return start(request).future.thenCompose(outcome -> {
+            if (outcome.status != null && errorKindOf(outcome.status.getCode()).isRetryable()) {
+                return CompletableFuture.failedFuture(new AuthorizationException(
+                        "Warm-up check failed due to gRPC error: " + outcome.status.getCode() + ".",
+                        errorKindOf(outcome.status.getCode()), outcome.status.getCause(), false));
+            }
+            if (outcome.response != null) {
+                mapper.mapAuthResponsePayload(outcome.response);
+            }
+            return runSyntheticChecks(index + 1, count);
+        });
+    }
+
+    /**
+     * Builds a synthetic request covering the principal, entity, property and context mapping.
+     * Each one differs, so no mapping is answered from the mapper caches.
+     */
+    private static AZRequest syntheticRequest(int index) {
+        return new AZAtomicRequestBuilder(0, "permguard-warm-up", "warm-up", "WarmUp::Resource", "WarmUp::Action::check")
+                .withRequestId("warm-up-" + index)
+                .withPrincipal(new PrincipalBuilder("warm-up").withType("workload").withSource("permguard").build())
+                .withSubjectProperty("index", index)
+                .withResourceId("warm-up-" + index)
+                .withActionProperty("synthetic", true)
+                .withContextProperty("warm-up", Map.of("index", index, "tags", List.of("a", "b"), "ratio", 0.5))
+                .withEntitiesItems("cedar", new Entities("cedar", List.of(Map.of(
+                        "uid", Map.of("type", "WarmUp::Resource", "id", "warm-up-" + index),
+                        "attrs", Map.of("active", true, "index", index),
+                        "parents", List.of()))))
+                .build();
+    }
+
+    /**
+     * Ends the flight recorder event of a check, if a recording enabled it, and samples the check if it was slow.
+     */
+    private AZResult finish(PendingCheck pending, UnaryOutcome outcome, long receivedNanos, AZResult result) {
+        if (pending.event != null) {
+            // Only cache hits are answered successfully without a request being sent.
+            pending.event.finish(result, pending.grpcRequest == null && result.isSuccess());
+        }
+        if (slowCheckSampler != null) {
+            long endNanos = System.nanoTime();
+            if (endNanos - pending.startNanos >= slowCheckSampler.getThresholdNanos()) {
+                sampleSlowCheck(pending, outcome, receivedNanos, endNanos, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Captures the diagnostics of a slow check.
+     */
+    private void sampleSlowCheck(PendingCheck pending, UnaryOutcome outcome, long receivedNanos, long endNanos, AZResult result) {
+        SplicedCheckRequest request = pending.grpcRequest;
+        boolean sent = request != null;
+        Connection current = connection;
+        // Without a received outcome the call ended early, for instance on an interrupt: the rest counts as RPC time.
+        long rpcEndNanos = receivedNanos != 0 ? receivedNanos : endNanos;
+        slowCheckSampler.capture(pending.request,
+                sent ? request.getSerializedSize() : 0,
+                outcome != null && outcome.response != null ? outcome.response.getSerializedSize() : 0,
+                (sent ? pending.sentNanos : endNanos) - pending.startNanos,
+                sent ? rpcEndNanos - pending.sentNanos : 0,
+                sent ? endNanos - rpcEndNanos : 0,
+                result.isSuccess() ? "OK" : result.getErrorKind().name(),
+                current != null ? current.channel.getState(false).name() : "NOT_CONNECTED");
+    }
+
+    /**
+     * Starts a unary AuthorizationCheck call.
+     * The call is driven through a plain listener, so a failed call never raises an exception.
+     */
+    private UnaryOutcome start(SplicedCheckRequest request) {
+        ClientCall<SplicedCheckRequest, AuthorizationCheck.AuthorizationCheckResponse> call =
+                connection().intercepted.newCall(AUTHORIZATION_CHECK_METHOD, callOptions);
+        UnaryOutcome outcome = new UnaryOutcome(call);
+        call.start(outcome, new Metadata());
+        if (compressionThresholdBytes > 0) {
+            // Small requests gain little from compression and would still pay its CPU cost.
+            call.setMessageCompression(request.getSerializedSize() >= compressionThresholdBytes);
+        }
+        // Two messages are requested so that a misbehaving server sending more than one is detected.
+        call.request(2);
+        call.sendMessage(request);
+        call.halfClose();
+        return outcome;
+    }
+
+    /**
+     * Gets the connection to the PDP, creating it on first use. The channel, the event loops, the interceptors and
+     * the tracer are only loaded then, so a client that never checks does not pay for them.
+     */
+    private Connection connection() {
+        Connection current = connection;
+        if (current == null) {
+            synchronized (this) {
+                current = connection;
+                if (current == null) {
+                    current = connect();
+                    connection = current;
+                    if (closed) {
+                        // A client used after its shutdown behaves like one with a shut down channel.
+                        close(current);
+                    }
+                }
+            }
+        }
+        return current;
+    }
 
+    /**
+     * Builds the channel to the PDP, on the shared Netty event loops when the native transport is enabled.
+     */
+    private Connection connect() {
+        SharedEventLoops eventLoops = config.isNativeTransport() ? SharedEventLoops.acquire(config.getEventLoopThreads()) : null;
+        try {
+            ManagedChannelBuilder<?> builder;
+            if (eventLoops != null) {
+                builder = NettyChannelBuilder.forAddress(config.getHost(), config.getPort())
+                        .eventLoopGroup(eventLoops.group())
+                        .channelType(eventLoops.channelType())
+                        .executor(eventLoops.executor());
+            } else {
+                builder = ManagedChannelBuilder.forAddress(config.getHost(), config.getPort());
+            }
+            if (config.isUsePlaintext()) {
+                builder.usePlaintext();
+            }
+            if (compressors != null) {
+                builder.compressorRegistry(compressors).decompressorRegistry(decompressors);
+            }
+            ManagedChannel channel = builder.build();
+            return new Connection(channel, ClientInterceptors.intercept(channel, interceptorChain(config, interceptors)), eventLoops);
+        } catch (RuntimeException e) {
+            if (eventLoops != null) {
+                eventLoops.release();
+            }
+            throw e;
+        }
+    }
+
+    private static void close(Connection connection) {
+        ManagedChannel channel = connection.channel;
+        if (channel.isShutdown()) {
+            return;
+        }
+        channel.shutdown();
+        if (connection.eventLoops != null) {
+            // Calls already started may still complete, so the event loops are released once the channel terminated.
+            connection.eventLoops.executor().execute(() -> {
+                try {
+                    if (!channel.awaitTermination(30, TimeUnit.SECONDS)) {
+                        channel.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    channel.shutdownNow();
+                    Thread.currentThread().interrupt();
+                } finally {
+                    connection.eventLoops.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Orders the interceptors for {@link ClientInterceptors#intercept(Channel, List)}, which runs the last one first:
+     * the registered interceptors run in order and the tracing interceptor runs last, right before the transport.
+     */
+    private static List<ClientInterceptor> interceptorChain(AZConfig config, ClientInterceptor[] extra) {
+        List<ClientInterceptor> registered = new ArrayList<>(config.getInterceptors());
+        registered.addAll(Arrays.asList(extra));
+        List<ClientInterceptor> chain = new ArrayList<>(registered.size() + 1);
+        Tracer tracer = config.getTracer() != null ? config.getTracer() : config.isLoadTracer() ? Tracer.load() : null;
+        if (tracer != null) {
+            chain.add(new TracingInterceptor(tracer));
+        }
+        for (int i = registered.size() - 1; i >= 0; i--) {
+            chain.add(registered.get(i));
+        }
+        return chain;
+    }
+
+    /**
+     * Maps a gRPC status code to the kind of failure it reports.
+     */
+    private static ErrorKind errorKindOf(Status.Code code) {
+        return switch (code) {
+            case UNAVAILABLE, ABORTED, CANCELLED -> ErrorKind.UNAVAILABLE;
+            case DEADLINE_EXCEEDED -> ErrorKind.DEADLINE;
+            case RESOURCE_EXHAUSTED -> ErrorKind.OVERLOADED;
+            case INVALID_ARGUMENT, FAILED_PRECONDITION, OUT_OF_RANGE, NOT_FOUND, ALREADY_EXISTS,
+                 PERMISSION_DENIED, UNAUTHENTICATED -> ErrorKind.INVALID_REQUEST;
+            default -> ErrorKind.INTERNAL;
+        };
+    }
+
+    private static boolean isCacheable(AZRequest request) {
+        AZModel model = request.getAuthorizationModel();
+        Subject subject = request.getSubject();
+        return (request.getEvaluations() == null || request.getEvaluations().isEmpty())
+                && model != null && model.getPolicyStore() != null && model.getPolicyStore().getId() != null
+                && subject != null && subject.getType() != null && subject.getId() != null;
+    }
+
+    /**
+     * Derives the decision cache key of a request from its canonical fingerprint and the invalidation generations.
+     * The fingerprint is keyed with the secret of the generations, as a cache hit is trusted without comparing requests.
+     */
+    private Hash128 cacheKeyOf(AZRequest request) {
+        Hash128 key = cacheGenerations.newKeyHash();
+        RequestFingerprint.hash(request, key);
+        AZModel model = request.getAuthorizationModel();
+        cacheGenerations.mixInto(key, model.getZoneId(), model.getPolicyStore().getId(),
+                request.getSubject().getType(), request.getSubject().getId());
+        return key;
+    }
+
+    /**
+     * Warms the decision cache with the snapshot entries of a zone and policy store, the first time they are seen.
+     * The entries are read in the background: the checks of the scope reach the PDP until they are restored.
+     */
+    private void restoreSnapshot(long zoneId, String policyStoreId) {
+        DecisionCacheSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        current.restoreAsync((OffHeapDecisionCache) decisionCache, zoneId, policyStoreId, snapshotRestorer)
+                .whenComplete((restored, error) -> {
+                    if (error != null) {
+                        LOGGER.log(System.Logger.Level.WARNING, "Unable to restore the decision cache snapshot " + snapshotPath, error);
+                    }
+                });
+        if (!current.hasPendingScopes()) {
+            snapshot = null;
+        }
+    }
+
+    private static DecisionCacheSnapshot openSnapshot(Path path) {
+        try {
+            return DecisionCacheSnapshot.open(path);
+        } catch (IOException e) {
+            // A missing snapshot only costs a cold start, it must not prevent the client from starting.
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to read the decision cache snapshot " + path, e);
+            return null;
+        }
+    }
+
+    // A single thread, stopped while idle: scopes are restored one after the other, the first time they are seen.
+    private static ThreadPoolExecutor newSnapshotRestorer() {
+        ThreadPoolExecutor restorer = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "permguard-cache-restore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        restorer.allowCoreThreadTimeOut(true);
+        return restorer;
+    }
+
+    private ScheduledExecutorService scheduleSnapshots(long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "permguard-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeSnapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    private ScheduledExecutorService scheduleSlowCheckDumps(long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "permguard-slow-check-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::dumpSlowChecks, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    private void dumpSlowChecks() {
+        StringBuilder dump = new StringBuilder();
+        try {
+            if (slowCheckSampler.dumpNew(dump) > 0) {
+                LOGGER.log(System.Logger.Level.WARNING, "Slow authorization checks:" + System.lineSeparator() + dump);
+            }
+        } catch (IOException e) {
+            // A StringBuilder never fails to append.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeSnapshot() {
+        try {
+            DecisionCacheSnapshot.write((OffHeapDecisionCache) decisionCache, cacheGenerations, snapshotPath);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to write the decision cache snapshot " + snapshotPath, e);
+        }
+    }
+
+    /**
+     * The channel to the PDP, wrapped by the interceptors, and the shared event loops it runs on if any.
+     */
+    private record Connection(ManagedChannel channel, Channel intercepted, SharedEventLoops eventLoops) {
+    }
+
+    /**
+     * A validated request, either already answered or mapped and ready to be sent, with its flight recorder event.
+     * The timestamps are only taken when slow checks are sampled.
+     */
+    private record PendingCheck(AZRequest request, Hash128 cacheKey, SplicedCheckRequest grpcRequest, CheckEvent event,
+                                long startNanos, long sentNanos, AZResult result) {
+    }
+
+    /**
+     * Listener collecting the response or the failure status of a unary call.
+     */
+    private static final class UnaryOutcome extends ClientCall.Listener<AuthorizationCheck.AuthorizationCheckResponse> {
+        private final CompletableFuture<UnaryOutcome> future = new CompletableFuture<>();
+        private final ClientCall<?, ?> call;
+        private AuthorizationCheck.AuthorizationCheckResponse response;
+        private Status status;
+
+        private UnaryOutcome(ClientCall<?, ?> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(AuthorizationCheck.AuthorizationCheckResponse message) {
+            if (response == null) {
+                response = message;
+            } else {
+                status = Status.INTERNAL.withDescription("More than one response received for a unary call");
+            }
+        }
+
+        @Override
+        public void onClose(Status closeStatus, Metadata trailers) {
+            if (!closeStatus.isOk()) {
+                status = closeStatus;
+            } else if (status == null && response == null) {
+                status = Status.INTERNAL.withDescription("No response received for a unary call");
+            }
+            future.complete(this);
+        }
+    }
+}
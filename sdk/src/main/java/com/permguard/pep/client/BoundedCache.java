@@ -0,0 +1,152 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Concurrent map bounded by a number of entries and a total weight.
+ * <p>
+ * Entries are evicted one at a time in insertion order, so a working set slightly above the budget only
+ * loses its oldest entries instead of the whole cache. The weight only counts entries actually stored.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+class BoundedCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * Constructor with parameters, for a cache bounded by the number of entries only.
+     *
+     * @param maxEntries The maximum number of entries.
+     */
+    BoundedCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0L);
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param maxEntries The maximum number of entries.
+     * @param maxWeight  The maximum total weight of the entries.
+     * @param weigher    The function computing the weight of a value.
+     */
+    BoundedCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param key The key.
+     * @return The value, or null if absent.
+     */
+    V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores a value unless the key is already present, then evicts the oldest entries until the cache fits its budget.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return The value now associated with the key.
+     */
+    V putIfAbsent(K key, V value) {
+        V existing = entries.putIfAbsent(key, value);
+        if (existing != null) {
+            return existing;
+        }
+        insertionOrder.add(key);
+        long total = weight.addAndGet(weigher.applyAsLong(value));
+        while (entries.size() > maxEntries || total > maxWeight) {
+            K oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            V evicted = entries.remove(oldest);
+            total = evicted != null ? weight.addAndGet(-weigher.applyAsLong(evicted)) : weight.get();
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value of a key if it is still mapped to the given one, keeping its place in the eviction order.
+     *
+     * @param key      The key.
+     * @param oldValue The value expected to be associated with the key.
+     * @param newValue The new value.
+     * @return Whether the value was replaced.
+     */
+    boolean replace(K key, V oldValue, V newValue) {
+        if (!entries.replace(key, oldValue, newValue)) {
+            return false;
+        }
+        weight.addAndGet(weigher.applyAsLong(newValue) - weigher.applyAsLong(oldValue));
+        return true;
+    }
+
+    /**
+     * Removes a key if it is still mapped to the given value. Removal walks the eviction order, so it is meant
+     * for occasional invalidation rather than the hot path.
+     *
+     * @param key   The key.
+     * @param value The value expected to be associated with the key.
+     * @return Whether the entry was removed.
+     */
+    boolean remove(K key, V value) {
+        if (!entries.remove(key, value)) {
+            return false;
+        }
+        insertionOrder.remove(key);
+        weight.addAndGet(-weigher.applyAsLong(value));
+        return true;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the total weight of the entries.
+     *
+     * @return The total weight.
+     */
+    long weight() {
+        return weight.get();
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.response.AZResult;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event covering one authorization check, from its validation to the mapping of the response.
+ * <p>
+ * The event is only allocated and filled while a recording enables it, so checks pay a single enabled test otherwise.
+ */
+@Name("com.permguard.AuthorizationCheck")
+@Label("Authorization Check")
+@Category({"Permguard", "Authorization"})
+@Description("An authorization check performed by AZClient")
+@StackTrace(false)
+final class CheckEvent extends Event {
+
+    private static final CheckEvent PROBE = new CheckEvent();
+
+    @Label("Request ID")
+    String requestId;
+
+    @Label("Zone ID")
+    long zoneId;
+
+    @Label("Policy Store ID")
+    String policyStoreId;
+
+    @Label("Action")
+    String action;
+
+    @Label("Evaluations")
+    @Description("Number of evaluations of the request, 0 for an atomic request")
+    int evaluations;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Decision")
+    boolean decision;
+
+    @Label("Outcome")
+    @Description("OK, or the kind of failure")
+    String outcome;
+
+    @Label("Prepare Duration")
+    @Description("Validation, decision cache lookup and request mapping")
+    @Timespan
+    long prepareNanos;
+
+    @Label("RPC Duration")
+    @Description("From the start of the call to the reception of its outcome")
+    @Timespan
+    long rpcNanos;
+
+    @Label("Complete Duration")
+    @Description("Response mapping and decision cache update")
+    @Timespan
+    long completeNanos;
+
+    private transient long phaseStart;
+    private transient int phase;
+
+    /**
+     * Checks whether a recording enables the event. Loads the flight recorder classes the first time.
+     *
+     * @return True if the event is enabled.
+     */
+    static boolean isRecording() {
+        return PROBE.isEnabled();
+    }
+
+    /**
+     * Starts the event of a check.
+     *
+     * @param request The checked request.
+     * @return The event, or null if no recording enables it.
+     */
+    static CheckEvent start(AZRequest request) {
+        if (!isRecording()) {
+            return null;
+        }
+        CheckEvent event = new CheckEvent();
+        event.begin();
+        event.phaseStart = System.nanoTime();
+        if (request != null) {
+            event.requestId = request.getRequestId();
+            AZModel model = request.getAuthorizationModel();
+            if (model != null) {
+                event.zoneId = model.getZoneId();
+                event.policyStoreId = model.getPolicyStore() != null ? model.getPolicyStore().getId() : null;
+            }
+            event.action = request.getAction() != null ? request.getAction().getName() : null;
+            event.evaluations = request.getEvaluations() != null ? request.getEvaluations().size() : 0;
+        }
+        return event;
+    }
+
+    /**
+     * Ends the prepare phase, once the request is mapped and about to be sent.
+     *
+     * @param requestBytes The encoded size of the request.
+     */
+    void prepared(long requestBytes) {
+        long now = System.nanoTime();
+        this.prepareNanos = now - phaseStart;
+        this.requestBytes = requestBytes;
+        this.phaseStart = now;
+        this.phase = 1;
+    }
+
+    /**
+     * Ends the RPC phase, once the response or the failure status is received.
+     */
+    void received() {
+        long now = System.nanoTime();
+        this.rpcNanos = now - phaseStart;
+        this.phaseStart = now;
+        this.phase = 2;
+    }
+
+    /**
+     * Ends the event and commits it if it passes the thresholds of the recording.
+     *
+     * @param result   The result of the check.
+     * @param cacheHit Whether the decision came from the decision cache.
+     */
+    void finish(AZResult result, boolean cacheHit) {
+        long elapsed = System.nanoTime() - phaseStart;
+        // The check may end in any phase: answered from the cache, rejected, interrupted or completed.
+        switch (phase) {
+            case 0 -> prepareNanos = elapsed;
+            case 1 -> rpcNanos = elapsed;
+            default -> completeNanos = elapsed;
+        }
+        this.cacheHit = cacheHit;
+        if (result.isSuccess()) {
+            outcome = "OK";
+            decision = result.getResponse().isDecision();
+        } else {
+            outcome = result.getErrorKind().name();
+        }
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.exception.ErrorKind;
+import com.permguard.pep.model.response.AZResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Publisher checking the items of a source publisher in batches, with bounded concurrency and memory.
+ * <p>
+ * Items are pulled from the source only while fewer than {@code (maxConcurrency + 1) * batchSize} of them are
+ * buffered, in flight or waiting for downstream demand, so a slow subscriber slows the source down instead of
+ * growing a queue. A batch is dispatched when it is full, when the source completed or after a short linger,
+ * whichever comes first. State is guarded by the pipeline monitor and signals to the subscriber are serialized
+ * by a drain loop, so every callback may arrive from any thread.
+ * <p>
+ * Completed batches and linger timeouts are handed to the emission executor before draining, so the subscriber,
+ * and the mapping and encoding of the next batch, never run on the thread completing the RPC. That thread is
+ * usually a gRPC event loop shared by other channels, which a slow subscriber would otherwise stall.
+ *
+ * @param <T> The type of the checked items.
+ */
+final class CheckPublisher<T> implements Flow.Publisher<AZResult> {
+
+    private static final long LINGER_MILLIS = 2;
+
+    private final Flow.Publisher<T> source;
+    private final Function<List<T>, CompletableFuture<List<AZResult>>> dispatcher;
+    private final int maxConcurrency;
+    private final int batchSize;
+    private final boolean ordered;
+    private final Executor emitter;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param source         The items to check.
+     * @param dispatcher     The function checking a batch, completed with one result per item.
+     * @param maxConcurrency The maximum number of batches in flight.
+     * @param batchSize      The maximum number of items per batch.
+     * @param ordered        Whether results are emitted in the order of the items.
+     * @param emitter        The executor emitting the results of completed batches.
+     */
+    CheckPublisher(Flow.Publisher<T> source, Function<List<T>, CompletableFuture<List<AZResult>>> dispatcher,
+                   int maxConcurrency, int batchSize, boolean ordered, Executor emitter) {
+        if (maxConcurrency < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("maxConcurrency and batchSize must be positive.");
+        }
+        this.source = Objects.requireNonNull(source, "source");
+        this.dispatcher = dispatcher;
+        this.maxConcurrency = maxConcurrency;
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+        this.emitter = Objects.requireNonNull(emitter, "emitter");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super AZResult> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A check publisher can only be subscribed once."));
+            return;
+        }
+        source.subscribe(new Pipeline(subscriber));
+    }
+
+    /**
+     * Results of one dispatched batch, emitted one at a time.
+     */
+    private static final class Batch {
+        private List<AZResult> results;
+        private int next;
+    }
+
+    private final class Pipeline implements Flow.Subscriber<T>, Flow.Subscription {
+        private final Flow.Subscriber<? super AZResult> downstream;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final long capacity = (long) (maxConcurrency + 1) * batchSize;
+
+        // Guarded by this.
+        private Flow.Subscription upstream;
+        private List<T> buffer = new ArrayList<>();
+        private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+        private long requested;
+        private long outstanding;
+        private long held;
+        private int inFlight;
+        private boolean upstreamDone;
+        private Throwable upstreamError;
+        private Throwable protocolError;
+        private boolean lingerScheduled;
+        private boolean lingerExpired;
+        private boolean cancelled;
+
+        private Pipeline(Flow.Subscriber<? super AZResult> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                if (upstream != null) {
+                    subscription.cancel();
+                    return;
+                }
+                upstream = subscription;
+            }
+            downstream.onSubscribe(this);
+            drain();
+        }
+
+        @Override
+        public void onNext(T item) {
+            synchronized (this) {
+                if (cancelled || upstreamDone) {
+                    return;
+                }
+                outstanding--;
+                held++;
+                buffer.add(item);
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                upstreamDone = true;
+                upstreamError = throwable;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                upstreamDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    protocolError = new IllegalArgumentException("Demand must be positive, got " + n + ".");
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                buffer = new ArrayList<>();
+                batches.clear();
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            for (;;) {
+                AZResult next = null;
+                List<T> items = null;
+                Batch batch = null;
+                long demand = 0;
+                boolean linger = false;
+                Throwable error = null;
+                boolean complete = false;
+                Flow.Subscription subscription;
+                synchronized (this) {
+                    if (cancelled || upstream == null) {
+                        return;
+                    }
+                    subscription = upstream;
+                    if (protocolError != null) {
+                        error = protocolError;
+                        cancelled = true;
+                    } else if (requested > 0 && (next = poll()) != null) {
+                        requested--;
+                        held--;
+                    } else if (inFlight < maxConcurrency && !buffer.isEmpty()
+                            && (buffer.size() >= batchSize || upstreamDone || lingerExpired)) {
+                        int count = Math.min(batchSize, buffer.size());
+                        items = new ArrayList<>(buffer.subList(0, count));
+                        buffer.subList(0, count).clear();
+                        lingerExpired = false;
+                        inFlight++;
+                        batch = new Batch();
+                        if (ordered) {
+                            batches.add(batch);
+                        }
+                    } else if (upstreamDone && buffer.isEmpty() && inFlight == 0 && batches.isEmpty()) {
+                        cancelled = true;
+                        error = upstreamError;
+                        complete = error == null;
+                    } else {
+                        long room = capacity - held - outstanding;
+                        if (!upstreamDone && room >= batchSize) {
+                            outstanding += room;
+                            demand = room;
+                        }
+                        if (!buffer.isEmpty() && !lingerScheduled && !upstreamDone) {
+                            lingerScheduled = true;
+                            linger = true;
+                        }
+                    }
+                }
+
+                if (next != null) {
+                    emit(next);
+                } else if (items != null) {
+                    dispatch(batch, items);
+                } else if (complete) {
+                    downstream.onComplete();
+                    return;
+                } else if (error != null) {
+                    if (error != upstreamError) {
+                        subscription.cancel();
+                    }
+                    downstream.onError(error);
+                    return;
+                } else {
+                    if (linger) {
+                        Linger.SCHEDULER.schedule(() -> execute(this::lingerExpired), LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    if (demand > 0) {
+                        // May deliver items synchronously, they are picked up by the next iteration of drain.
+                        subscription.request(demand);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private AZResult poll() {
+            Batch head = batches.peek();
+            if (head == null || head.results == null) {
+                return null;
+            }
+            AZResult result = head.results.get(head.next++);
+            if (head.next == head.results.size()) {
+                batches.poll();
+            }
+            return result;
+        }
+
+        private void emit(AZResult result) {
+            try {
+                downstream.onNext(result);
+            } catch (Throwable t) {
+                // A subscriber must not throw, the subscription is considered cancelled.
+                cancel();
+            }
+        }
+
+        private void dispatch(Batch batch, List<T> items) {
+            CompletableFuture<List<AZResult>> future;
+            try {
+                future = dispatcher.apply(items);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenCompleteAsync((results, failure) -> {
+                if (failure != null || results == null || results.size() != items.size()) {
+                    results = Collections.nCopies(items.size(),
+                            AZResult.failure(ErrorKind.INTERNAL, "An unexpected error occurred.", failure));
+                }
+                synchronized (this) {
+                    inFlight--;
+                    batch.results = results;
+                    if (!ordered && !cancelled) {
+                        batches.add(batch);
+                    }
+                }
+                drain();
+            }, this::execute);
+        }
+
+        private void execute(Runnable task) {
+            try {
+                emitter.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The stream must still terminate once the emitter is shut down.
+                task.run();
+            }
+        }
+
+        private void lingerExpired() {
+            synchronized (this) {
+                lingerScheduled = false;
+                lingerExpired = true;
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Timer flushing partial batches, created on first use.
+     */
+    private static final class Linger {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "permguard-check-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The gRPC form of an authorization matrix, split into chunks of evaluations sent as separate requests.
+ * <p>
+ * Each subject, resource and action is encoded once, as the field it forms in an EvaluationRequest. The evaluation
+ * of a cell is then the concatenation of three encoded fields, so encoding a chunk only copies bytes, and the
+ * authorization model, request ID and shared context are reused unchanged by every chunk.
+ */
+final class EncodedMatrix {
+
+    private static final int EVALUATIONS_FIELD = AuthorizationCheck.AuthorizationCheckRequest.EVALUATIONS_FIELD_NUMBER;
+
+    private final ByteString modelField;
+    private final AuthorizationCheck.AuthorizationCheckRequest body;
+    private final byte[][] subjects;
+    private final byte[][] resources;
+    private final byte[][] actions;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param modelField The encoded authorization model field.
+     * @param body       The request ID and the shared context, reused by every chunk.
+     * @param subjects   The encoded subject field of each subject.
+     * @param resources  The encoded resource field of each resource.
+     * @param actions    The encoded action field of each action.
+     */
+    EncodedMatrix(ByteString modelField, AuthorizationCheck.AuthorizationCheckRequest body, byte[][] subjects,
+                  byte[][] resources, byte[][] actions) {
+        this.modelField = modelField;
+        this.body = body;
+        this.subjects = subjects;
+        this.resources = resources;
+        this.actions = actions;
+    }
+
+    /**
+     * Encodes the request checking a range of cells.
+     *
+     * @param from The index of the first cell, inclusive.
+     * @param to   The index of the last cell, exclusive.
+     * @return The request.
+     */
+    SplicedCheckRequest chunk(int from, int to) {
+        int tagSize = CodedOutputStream.computeTagSize(EVALUATIONS_FIELD);
+        int size = 0;
+        Cursor cursor = new Cursor(from);
+        for (int i = from; i < to; i++, cursor.advance()) {
+            int length = cursor.length();
+            size += tagSize + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+        }
+
+        byte[] encoded = new byte[size];
+        CodedOutputStream output = CodedOutputStream.newInstance(encoded);
+        cursor = new Cursor(from);
+        try {
+            for (int i = from; i < to; i++, cursor.advance()) {
+                output.writeTag(EVALUATIONS_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(cursor.length());
+                output.writeRawBytes(subjects[cursor.subject]);
+                output.writeRawBytes(resources[cursor.resource]);
+                output.writeRawBytes(actions[cursor.action]);
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // The array is never written again, so it is shared instead of copied.
+        return new SplicedCheckRequest(modelField.concat(UnsafeByteOperations.unsafeWrap(encoded)), body);
+    }
+
+    /**
+     * Walks the cells in index order without dividing the index at every cell.
+     */
+    private final class Cursor {
+        private int subject;
+        private int resource;
+        private int action;
+
+        private Cursor(int index) {
+            action = index % actions.length;
+            resource = index / actions.length % resources.length;
+            subject = index / actions.length / resources.length;
+        }
+
+        private int length() {
+            return subjects[subject].length + resources[resource].length + actions[action].length;
+        }
+
+        private void advance() {
+            if (++action == actions.length) {
+                action = 0;
+                if (++resource == resources.length) {
+                    resource = 0;
+                    subject++;
+                }
+            }
+        }
+    }
+}
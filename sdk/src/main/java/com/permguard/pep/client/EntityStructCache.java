@@ -0,0 +1,87 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.Struct;
+import com.permguard.pep.utils.GrpcStructMapper;
+import com.permguard.pep.utils.Hash128;
+import com.permguard.pep.utils.RequestFingerprint;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of entity item Structs, keyed by the canonical fingerprint of the item.
+ * <p>
+ * Converting an item dominates the cost of mapping large entity lists, so each distinct item is converted once
+ * and shared by every request that carries it. Items are converted on the calling thread. A hit is trusted without
+ * comparing the items, so the fingerprint is keyed with a random secret. When the cache is full, the oldest items
+ * are evicted one at a time.
+ */
+class EntityStructCache {
+
+    private final BoundedCache<Key, Struct> structs;
+    private final long key0;
+    private final long key1;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param maxEntries The maximum number of cached items.
+     */
+    EntityStructCache(int maxEntries) {
+        this.structs = new BoundedCache<>(maxEntries);
+        SecureRandom random = new SecureRandom();
+        this.key0 = random.nextLong();
+        this.key1 = random.nextLong();
+    }
+
+    /**
+     * Converts entity items to Structs, reusing the items already converted.
+     *
+     * @param items The entity items.
+     * @return The Structs, in the order of the items.
+     */
+    List<Struct> structsOf(List<Map<String, Object>> items) {
+        if (items.size() == 1) {
+            return List.of(structOf(items.get(0)));
+        }
+        List<Struct> converted = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            converted.add(structOf(item));
+        }
+        return converted;
+    }
+
+    private Struct structOf(Map<String, Object> item) {
+        if (item == null || item.isEmpty()) {
+            return Struct.getDefaultInstance();
+        }
+        Hash128 hash = new Hash128(key0, key1);
+        RequestFingerprint.hashMap(item, hash);
+        Key key = new Key(hash.high(), hash.low());
+        Struct struct = structs.get(key);
+        return struct != null ? struct : structs.putIfAbsent(key, GrpcStructMapper.toGrpcStruct(item));
+    }
+
+    private record Key(long high, long low) {
+    }
+}
@@ -1,15 +1,42 @@
 package com.permguard.pep.client;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Struct;
+import com.permguard.pep.cache.CachedDecision;
 import com.permguard.pep.internal.proto.AuthorizationCheck;
 import com.permguard.pep.model.request.*;
+import com.permguard.pep.exception.ErrorKind;
 import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.model.response.AZResult;
 import com.permguard.pep.model.response.ContextResponse;
+import com.permguard.pep.model.response.DecisionBatch;
 import com.permguard.pep.model.response.EvaluationResponse;
 import com.permguard.pep.model.response.ReasonResponse;
 import com.permguard.pep.utils.GrpcStructMapper;
+import com.permguard.pep.utils.Symbols;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 class Mapper {
 
+    private static final int MAX_CACHED_MODELS = 256;
+    private static final long MAX_CACHED_MODEL_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAX_CACHED_ENTITY_ITEMS = 64 * 1024;
+    private static final int MAX_CACHED_PRINCIPALS = 16 * 1024;
+    private static final long PRINCIPAL_DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final ModelPrefixCache modelPrefixes = new ModelPrefixCache(MAX_CACHED_MODELS, MAX_CACHED_MODEL_BYTES);
+    private final EntityStructCache entityItems = new EntityStructCache(MAX_CACHED_ENTITY_ITEMS);
+    private final PrincipalCache principals = new PrincipalCache(MAX_CACHED_PRINCIPALS, PRINCIPAL_DEFAULT_TTL_MILLIS);
+
     /**
      * Converts an AZRequest into a gRPC-compatible AuthorizationCheckRequest.
      *
@@ -17,9 +44,64 @@ class Mapper {
      * @return A gRPC-compatible AuthorizationCheckRequest.
      */
     AuthorizationCheck.AuthorizationCheckRequest mapAuthorizationCheckRequest(AZRequest request) {
+        return mapRequestBody(request)
+                .setAuthorizationModel(mapAuthorizationModel(request.getAuthorizationModel()))
+                .build();
+    }
+
+    /**
+     * Converts an AZRequest into an AuthorizationCheckRequest whose authorization model is reused already encoded.
+     *
+     * @param request The AZRequest.
+     * @return The request, split into the encoded authorization model and the per-call body.
+     */
+    SplicedCheckRequest mapSplicedCheckRequest(AZRequest request) {
+        ByteString modelField = request.getAuthorizationModel() != null
+                ? modelPrefixes.encodedFieldOf(request.getAuthorizationModel(), this::mapAuthorizationModel)
+                : ByteString.EMPTY;
+        return new SplicedCheckRequest(modelField, mapRequestBody(request).build());
+    }
+
+    /**
+     * Converts an authorization matrix into its gRPC form. Each distinct subject, resource and action, by identity,
+     * is mapped and encoded once, however many times it is listed.
+     *
+     * @param request The matrix request, already validated.
+     * @return The encoded matrix, ready to be split into requests.
+     */
+    EncodedMatrix mapMatrix(AZMatrixRequest request) {
+        ByteString modelField = modelPrefixes.encodedFieldOf(request.getAuthorizationModel(), this::mapAuthorizationModel);
+        AuthorizationCheck.AuthorizationCheckRequest.Builder body = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setRequestID(request.getRequestId() != null ? request.getRequestId() : "");
+        if (hasEntries(request.getContext())) {
+            body.setContext(GrpcStructMapper.toGrpcStruct(request.getContext()));
+        }
+
+        Map<Object, byte[]> fields = new IdentityHashMap<>();
+        List<Subject> subjects = request.getSubjects();
+        byte[][] subjectFields = new byte[subjects.size()][];
+        for (int i = 0; i < subjectFields.length; i++) {
+            subjectFields[i] = fields.computeIfAbsent(subjects.get(i), subject -> AuthorizationCheck.EvaluationRequest.newBuilder()
+                    .setSubject(mapSubject((Subject) subject)).build().toByteArray());
+        }
+        List<Resource> resources = request.getResources();
+        byte[][] resourceFields = new byte[resources.size()][];
+        for (int i = 0; i < resourceFields.length; i++) {
+            resourceFields[i] = fields.computeIfAbsent(resources.get(i), resource -> AuthorizationCheck.EvaluationRequest.newBuilder()
+                    .setResource(mapResource((Resource) resource)).build().toByteArray());
+        }
+        List<Action> actions = request.getActions();
+        byte[][] actionFields = new byte[actions.size()][];
+        for (int i = 0; i < actionFields.length; i++) {
+            actionFields[i] = fields.computeIfAbsent(actions.get(i), action -> AuthorizationCheck.EvaluationRequest.newBuilder()
+                    .setAction(mapAction((Action) action)).build().toByteArray());
+        }
+        return new EncodedMatrix(modelField, body.build(), subjectFields, resourceFields, actionFields);
+    }
+
+    private AuthorizationCheck.AuthorizationCheckRequest.Builder mapRequestBody(AZRequest request) {
         AuthorizationCheck.AuthorizationCheckRequest.Builder requestBuilder = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
-                .setRequestID(request.getRequestId() != null ? request.getRequestId() : "")
-                .setAuthorizationModel(mapAuthorizationModel(request.getAuthorizationModel()));
+                .setRequestID(request.getRequestId() != null ? request.getRequestId() : "");
 
         if (request.getSubject() != null) {
             requestBuilder.setSubject(mapSubject(request.getSubject()));
@@ -30,16 +112,44 @@ class Mapper {
         if (request.getAction() != null) {
             requestBuilder.setAction(mapAction(request.getAction()));
         }
-        if (request.getContext() != null) {
+        if (hasEntries(request.getContext())) {
             requestBuilder.setContext(GrpcStructMapper.toGrpcStruct(request.getContext())); // Use Struct directly
         }
         if (request.getEvaluations() != null) {
             for (Evaluation eval : request.getEvaluations()) {
-                requestBuilder.addEvaluations(mapEvaluation(eval));
+                if (eval != null) {
+                    requestBuilder.addEvaluations(mapEvaluation(eval));
+                }
             }
         }
 
-        return requestBuilder.build();
+        return requestBuilder;
+    }
+
+    /**
+     * Converts a gRPC AuthorizationCheckRequest back into an AZRequest, for instance to replay recorded traffic.
+     *
+     * @param request The gRPC request.
+     * @return An AZRequest instance.
+     */
+    AZRequest mapAZRequest(AuthorizationCheck.AuthorizationCheckRequest request) {
+        List<Evaluation> evaluations = new ArrayList<>(request.getEvaluationsCount());
+        for (AuthorizationCheck.EvaluationRequest evaluation : request.getEvaluationsList()) {
+            evaluations.add(new Evaluation(
+                    evaluation.hasRequestID() ? evaluation.getRequestID() : null,
+                    evaluation.hasSubject() ? mapSubject(evaluation.getSubject()) : null,
+                    evaluation.hasResource() ? mapResource(evaluation.getResource()) : null,
+                    evaluation.hasAction() ? mapAction(evaluation.getAction()) : null,
+                    evaluation.hasContext() ? GrpcStructMapper.fromGrpcStruct(evaluation.getContext()) : null));
+        }
+        return new AZRequest(
+                request.hasRequestID() ? request.getRequestID() : null,
+                request.hasAuthorizationModel() ? mapAuthorizationModel(request.getAuthorizationModel()) : null,
+                request.hasSubject() ? mapSubject(request.getSubject()) : null,
+                request.hasResource() ? mapResource(request.getResource()) : null,
+                request.hasAction() ? mapAction(request.getAction()) : null,
+                request.hasContext() ? GrpcStructMapper.fromGrpcStruct(request.getContext()) : null,
+                evaluations);
     }
 
     /**
@@ -57,76 +167,334 @@ class Mapper {
         );
     }
 
+    /**
+     * Converts an AuthorizationCheckResponse into an AZResponse without its evaluations.
+     *
+     * @param response The gRPC response.
+     * @return An AZResponse instance with an empty list of evaluations.
+     */
+    AZResponse mapResponseHeader(AuthorizationCheck.AuthorizationCheckResponse response) {
+        return new AZResponse(
+                response.getDecision(),
+                response.hasRequestID() ? response.getRequestID() : "",
+                response.hasContext() ? mapContextResponse(response.getContext()) : null,
+                List.of()
+        );
+    }
+
+    /**
+     * Decodes an AuthorizationCheckResponse straight into a compact batch, without an object per evaluation.
+     *
+     * @param response The gRPC response. Its evaluations stay referenced to read the request IDs on demand.
+     * @return A DecisionBatch instance.
+     */
+    DecisionBatch mapDecisionBatch(AuthorizationCheck.AuthorizationCheckResponse response) {
+        int size = response.getEvaluationsCount();
+        long[] permitted = new long[(size + 63) >>> 6];
+        int reasonCount = 0;
+        int[] reasonIndexes = new int[0];
+        ContextResponse[] reasons = new ContextResponse[0];
+        for (int i = 0; i < size; i++) {
+            AuthorizationCheck.EvaluationResponse evaluation = response.getEvaluations(i);
+            if (evaluation.getDecision()) {
+                permitted[i >>> 6] |= 1L << i;
+            } else if (evaluation.hasContext()) {
+                if (reasonCount == reasons.length) {
+                    reasonIndexes = Arrays.copyOf(reasonIndexes, Math.max(8, reasonCount * 2));
+                    reasons = Arrays.copyOf(reasons, reasonIndexes.length);
+                }
+                reasonIndexes[reasonCount] = i;
+                reasons[reasonCount++] = mapContextResponse(evaluation.getContext());
+            }
+        }
+        return new DecisionBatch(response.getDecision(), response.hasRequestID() ? response.getRequestID() : "",
+                response.hasContext() ? mapContextResponse(response.getContext()) : null, size, permitted,
+                Arrays.copyOf(reasonIndexes, reasonCount), Arrays.copyOf(reasons, reasonCount),
+                size > 0 ? new EvaluationRequestIds(response.getEvaluationsList()) : List.of());
+    }
+
+    /**
+     * Converts a decision answered without evaluations, such as a cached one, into a batch.
+     *
+     * @param response The response.
+     * @return A DecisionBatch instance without evaluations.
+     */
+    DecisionBatch mapDecisionBatch(AZResponse response) {
+        return new DecisionBatch(response.isDecision(), response.getRequestId(), response.getContext(), 0, new long[0],
+                new int[0], new ContextResponse[0], List.of());
+    }
+
+    /**
+     * Converts a cached decision into an AZResponse.
+     *
+     * @param requestId The request ID of the current request.
+     * @param cached    The cached decision.
+     * @return An AZResponse instance.
+     */
+    AZResponse mapCachedDecision(String requestId, CachedDecision cached) {
+        ContextResponse context = cached.getReasonCode() != null
+                ? new ContextResponse(null, new ReasonResponse(cached.getReasonCode(), null), null)
+                : null;
+        return new AZResponse(cached.isDecision(), requestId, context, List.of());
+    }
+
+    /**
+     * Splits the result of a multi-evaluation request into one result per evaluation.
+     * A failed request fails every evaluation.
+     *
+     * @param result The result of the request.
+     * @param count  The number of evaluations of the request.
+     * @return The results, in the order of the evaluations.
+     */
+    List<AZResult> splitEvaluations(AZResult result, int count) {
+        if (!result.isSuccess()) {
+            return Collections.nCopies(count, result);
+        }
+        List<EvaluationResponse> evaluations = result.getResponse().getEvaluations();
+        int returned = evaluations != null ? evaluations.size() : 0;
+        if (returned != count) {
+            return Collections.nCopies(count, AZResult.failure(ErrorKind.INTERNAL,
+                    "The PDP returned " + returned + " evaluations for " + count + " requested.", null));
+        }
+        AZResult[] results = new AZResult[count];
+        for (int i = 0; i < count; i++) {
+            EvaluationResponse evaluation = evaluations.get(i);
+            results[i] = AZResult.success(new AZResponse(evaluation.isDecision(), evaluation.getRequestId(),
+                    evaluation.getContext(), List.of()));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Extracts the reason code to cache along with a decision, preferring the admin reason.
+     *
+     * @param response The gRPC response.
+     * @return The reason code, or null if the response carries none.
+     */
+    String reasonCodeOf(AuthorizationCheck.AuthorizationCheckResponse response) {
+        if (!response.hasContext()) {
+            return null;
+        }
+        AuthorizationCheck.ContextResponse context = response.getContext();
+        if (context.hasReasonAdmin() && !context.getReasonAdmin().getCode().isEmpty()) {
+            return context.getReasonAdmin().getCode();
+        }
+        if (context.hasReasonUser() && !context.getReasonUser().getCode().isEmpty()) {
+            return context.getReasonUser().getCode();
+        }
+        return null;
+    }
+
     /** MAPPING HELPERS **/
 
+    // Plain proto3 strings are left at their default when null, optional fields are only set when present:
+    // the request was validated beforehand, so mapping never throws on a missing field.
+    // Types, names, sources, kinds and schemas are written from the encodings shared by the symbol table.
+
     private AuthorizationCheck.AuthorizationModelRequest mapAuthorizationModel(AZModel model) {
-        return AuthorizationCheck.AuthorizationModelRequest.newBuilder()
-                .setZoneID(model.getZoneId())
-                .setPolicyStore(mapPolicyStore(model.getPolicyStore()))
-                .setPrincipal(mapPrincipal(model.getPrincipal()))
-                .setEntities(mapEntities(model.getEntities()))
-                .build();
+        AuthorizationCheck.AuthorizationModelRequest.Builder builder = AuthorizationCheck.AuthorizationModelRequest.newBuilder()
+                .setZoneID(model.getZoneId());
+        if (model.getPolicyStore() != null) {
+            builder.setPolicyStore(mapPolicyStore(model.getPolicyStore()));
+        }
+        if (model.getPrincipal() != null) {
+            builder.setPrincipal(mapPrincipal(model.getPrincipal()));
+        }
+        if (model.getEntities() != null) {
+            builder.setEntities(mapEntities(model.getEntities()));
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.PolicyStore mapPolicyStore(PolicyStore store) {
-        return AuthorizationCheck.PolicyStore.newBuilder()
-                .setKind(store.getKind())
-                .setID(store.getId())
-                .build();
+        AuthorizationCheck.PolicyStore.Builder builder = AuthorizationCheck.PolicyStore.newBuilder();
+        if (store.getKind() != null) {
+            ByteString kind = Symbols.encodedOf(store.getKind());
+            if (kind != null) {
+                builder.setKindBytes(kind);
+            } else {
+                builder.setKind(store.getKind());
+            }
+        }
+        if (store.getId() != null) {
+            builder.setID(store.getId());
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.Principal mapPrincipal(Principal principal) {
-        return AuthorizationCheck.Principal.newBuilder()
-                .setType(principal.getType())
-                .setID(principal.getId())
-                .setSource(principal.getSource())
-                .build();
+        if (principal.getIdentityToken() != null || principal.getAccessToken() != null) {
+            return principals.principalOf(principal, this::mapPrincipalFields);
+        }
+        return mapPrincipalFields(principal);
+    }
+
+    private AuthorizationCheck.Principal mapPrincipalFields(Principal principal) {
+        AuthorizationCheck.Principal.Builder builder = AuthorizationCheck.Principal.newBuilder();
+        if (principal.getType() != null) {
+            ByteString type = Symbols.encodedOf(principal.getType());
+            if (type != null) {
+                builder.setTypeBytes(type);
+            } else {
+                builder.setType(principal.getType());
+            }
+        }
+        if (principal.getId() != null) {
+            builder.setID(principal.getId());
+        }
+        if (principal.getSource() != null) {
+            ByteString source = Symbols.encodedOf(principal.getSource());
+            if (source != null) {
+                builder.setSourceBytes(source);
+            } else {
+                builder.setSource(principal.getSource());
+            }
+        }
+        if (principal.getIdentityToken() != null) {
+            builder.setIdentityToken(principal.getIdentityToken());
+        }
+        if (principal.getAccessToken() != null) {
+            builder.setAccessToken(principal.getAccessToken());
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.Entities mapEntities(Entities entities) {
-        return AuthorizationCheck.Entities.newBuilder()
-                .setSchema(entities.getSchema())
-                .build();
+        AuthorizationCheck.Entities.Builder builder = AuthorizationCheck.Entities.newBuilder();
+        if (entities.getSchema() != null) {
+            ByteString schema = Symbols.encodedOf(entities.getSchema());
+            if (schema != null) {
+                builder.setSchemaBytes(schema);
+            } else {
+                builder.setSchema(entities.getSchema());
+            }
+        }
+        if (entities.getItems() != null && !entities.getItems().isEmpty()) {
+            builder.addAllItems(entityItems.structsOf(entities.getItems()));
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.Subject mapSubject(Subject subject) {
-        return AuthorizationCheck.Subject.newBuilder()
-                .setType(subject.getType())
-                .setID(subject.getId())
-                .setSource(subject.getSource())
-                .setProperties(GrpcStructMapper.toGrpcStruct(subject.getProperties()))
-                .build();
+        AuthorizationCheck.Subject.Builder builder = AuthorizationCheck.Subject.newBuilder();
+        if (subject.getType() != null) {
+            ByteString type = Symbols.encodedOf(subject.getType());
+            if (type != null) {
+                builder.setTypeBytes(type);
+            } else {
+                builder.setType(subject.getType());
+            }
+        }
+        if (subject.getId() != null) {
+            builder.setID(subject.getId());
+        }
+        if (subject.getSource() != null) {
+            ByteString source = Symbols.encodedOf(subject.getSource());
+            if (source != null) {
+                builder.setSourceBytes(source);
+            } else {
+                builder.setSource(subject.getSource());
+            }
+        }
+        if (hasEntries(subject.getProperties())) {
+            builder.setProperties(GrpcStructMapper.toGrpcStruct(subject.getProperties()));
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.Resource mapResource(Resource resource) {
-        return AuthorizationCheck.Resource.newBuilder()
-                .setType(resource.getType())
-                .setID(resource.getId())
-                .setProperties(GrpcStructMapper.toGrpcStruct(resource.getProperties()))
-                .build();
+        AuthorizationCheck.Resource.Builder builder = AuthorizationCheck.Resource.newBuilder();
+        if (resource.getType() != null) {
+            ByteString type = Symbols.encodedOf(resource.getType());
+            if (type != null) {
+                builder.setTypeBytes(type);
+            } else {
+                builder.setType(resource.getType());
+            }
+        }
+        if (resource.getId() != null) {
+            builder.setID(resource.getId());
+        }
+        if (hasEntries(resource.getProperties())) {
+            builder.setProperties(GrpcStructMapper.toGrpcStruct(resource.getProperties()));
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.Action mapAction(Action action) {
-        return AuthorizationCheck.Action.newBuilder()
-                .setName(action.getName())
-                .setProperties(GrpcStructMapper.toGrpcStruct(action.getProperties()))
-                .build();
+        AuthorizationCheck.Action.Builder builder = AuthorizationCheck.Action.newBuilder();
+        if (action.getName() != null) {
+            ByteString name = Symbols.encodedOf(action.getName());
+            if (name != null) {
+                builder.setNameBytes(name);
+            } else {
+                builder.setName(action.getName());
+            }
+        }
+        if (hasEntries(action.getProperties())) {
+            builder.setProperties(GrpcStructMapper.toGrpcStruct(action.getProperties()));
+        }
+        return builder.build();
     }
 
     private AuthorizationCheck.EvaluationRequest mapEvaluation(Evaluation evaluation) {
         AuthorizationCheck.EvaluationRequest.Builder builder = AuthorizationCheck.EvaluationRequest.newBuilder()
-                .setRequestID(evaluation.getRequestId() != null ? evaluation.getRequestId() : "")
-                .setSubject(mapSubject(evaluation.getSubject()))
-                .setResource(mapResource(evaluation.getResource()))
-                .setAction(mapAction(evaluation.getAction()));
-
-        if (evaluation.getContext() != null) {
+                .setRequestID(evaluation.getRequestId() != null ? evaluation.getRequestId() : "");
+        if (evaluation.getSubject() != null) {
+            builder.setSubject(mapSubject(evaluation.getSubject()));
+        }
+        if (evaluation.getResource() != null) {
+            builder.setResource(mapResource(evaluation.getResource()));
+        }
+        if (evaluation.getAction() != null) {
+            builder.setAction(mapAction(evaluation.getAction()));
+        }
+        if (hasEntries(evaluation.getContext())) {
             builder.setContext(GrpcStructMapper.toGrpcStruct(evaluation.getContext()));
         }
-
         return builder.build();
     }
 
+    private static boolean hasEntries(Map<String, Object> map) {
+        return map != null && !map.isEmpty();
+    }
+
+    private AZModel mapAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest model) {
+        Principal principal = null;
+        if (model.hasPrincipal()) {
+            AuthorizationCheck.Principal grpcPrincipal = model.getPrincipal();
+            principal = new Principal(grpcPrincipal.getType(), grpcPrincipal.getID(),
+                    grpcPrincipal.hasSource() ? grpcPrincipal.getSource() : null,
+                    grpcPrincipal.hasIdentityToken() ? grpcPrincipal.getIdentityToken() : null,
+                    grpcPrincipal.hasAccessToken() ? grpcPrincipal.getAccessToken() : null);
+        }
+        Entities entities = null;
+        if (model.hasEntities()) {
+            List<Map<String, Object>> items = new ArrayList<>(model.getEntities().getItemsCount());
+            for (Struct item : model.getEntities().getItemsList()) {
+                items.add(GrpcStructMapper.fromGrpcStruct(item));
+            }
+            entities = new Entities(model.getEntities().getSchema(), items);
+        }
+        return new AZModel(model.getZoneID(),
+                new PolicyStore(model.getPolicyStore().getKind(), model.getPolicyStore().getID()), principal, entities);
+    }
+
+    private Subject mapSubject(AuthorizationCheck.Subject subject) {
+        return new Subject(subject.getType(), subject.getID(), subject.hasSource() ? subject.getSource() : null,
+                subject.hasProperties() ? GrpcStructMapper.fromGrpcStruct(subject.getProperties()) : null);
+    }
+
+    private Resource mapResource(AuthorizationCheck.Resource resource) {
+        return new Resource(resource.getType(), resource.getID(),
+                resource.hasProperties() ? GrpcStructMapper.fromGrpcStruct(resource.getProperties()) : null);
+    }
+
+    private Action mapAction(AuthorizationCheck.Action action) {
+        return new Action(action.getName(),
+                action.hasProperties() ? GrpcStructMapper.fromGrpcStruct(action.getProperties()) : null);
+    }
+
     private EvaluationResponse mapEvaluationResponse(AuthorizationCheck.EvaluationResponse response) {
         return new EvaluationResponse(
                 response.getDecision(),
@@ -153,5 +521,31 @@ class Mapper {
         );
     }
 
+    /**
+     * Request IDs of decoded evaluations, read from the response only when asked for.
+     */
+    private static final class EvaluationRequestIds extends AbstractList<String> implements RandomAccess {
+
+        private final List<AuthorizationCheck.EvaluationResponse> evaluations;
+
+        /**
+         * Constructor with parameters.
+         *
+         * @param evaluations The decoded evaluations.
+         */
+        EvaluationRequestIds(List<AuthorizationCheck.EvaluationResponse> evaluations) {
+            this.evaluations = evaluations;
+        }
 
+        @Override
+        public String get(int index) {
+            AuthorizationCheck.EvaluationResponse evaluation = evaluations.get(index);
+            return evaluation.hasRequestID() ? evaluation.getRequestID() : "";
+        }
+
+        @Override
+        public int size() {
+            return evaluations.size();
+        }
+    }
 }
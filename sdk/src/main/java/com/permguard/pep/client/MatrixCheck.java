@@ -0,0 +1,229 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZMatrixRequest;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.model.response.DecisionMatrix;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The progress of an authorization matrix being checked one chunk of cells per RPC.
+ * <p>
+ * Chunks are a multiple of 64 cells, so no two chunks share a word of the bitsets and their RPCs can complete
+ * concurrently without locking. The matrix completes once every chunk has been decided or failed.
+ */
+final class MatrixCheck {
+
+    static final int MAX_CELLS = 1 << 30;
+
+    private final AZMatrixRequest request;
+    private final EncodedMatrix encoded;
+    private final int cellCount;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final long[] permitted;
+    private final long[] failed;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicInteger pendingChunks;
+    private final AtomicReference<AZResult> failure = new AtomicReference<>();
+    private final CompletableFuture<DecisionMatrix> result = new CompletableFuture<>();
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param request   The matrix request.
+     * @param encoded   The gRPC form of the matrix.
+     * @param chunkSize The maximum number of cells per RPC, rounded up to a multiple of 64.
+     */
+    MatrixCheck(AZMatrixRequest request, EncodedMatrix encoded, int chunkSize) {
+        this.request = request;
+        this.encoded = encoded;
+        this.cellCount = (int) request.getCellCount();
+        this.chunkSize = (int) Math.min(Integer.MAX_VALUE - 63, ((long) chunkSize + 63) & ~63L);
+        this.chunkCount = (int) (((long) cellCount + this.chunkSize - 1) / this.chunkSize);
+        this.permitted = new long[(cellCount + 63) >>> 6];
+        this.failed = new long[permitted.length];
+        this.pendingChunks = new AtomicInteger(chunkCount);
+        if (chunkCount == 0) {
+            result.complete(toMatrix());
+        }
+    }
+
+    /**
+     * Builds the result of a matrix that could not be checked at all, every cell failed.
+     *
+     * @param request The matrix request.
+     * @param failure The failure.
+     * @return The matrix.
+     */
+    static DecisionMatrix failed(AZMatrixRequest request, AZResult failure) {
+        int subjects = request != null && request.getSubjects() != null ? request.getSubjects().size() : 0;
+        int resources = request != null && request.getResources() != null ? request.getResources().size() : 0;
+        int actions = request != null && request.getActions() != null ? request.getActions().size() : 0;
+        long cells = (long) subjects * resources * actions;
+        if (cells > MAX_CELLS) {
+            subjects = resources = actions = 0;
+            cells = 0;
+        }
+        long[] failed = new long[(int) ((cells + 63) >>> 6)];
+        for (int i = 0; i < cells; i++) {
+            failed[i >>> 6] |= 1L << i;
+        }
+        return new DecisionMatrix(subjects, resources, actions, new long[failed.length], failed, failure);
+    }
+
+    /**
+     * Gets the future completed with the matrix once every chunk is done.
+     *
+     * @return The future of the matrix.
+     */
+    CompletableFuture<DecisionMatrix> getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the number of chunks.
+     *
+     * @return The number of chunks.
+     */
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Claims the next chunk to check.
+     *
+     * @return The index of the chunk, or -1 if every chunk has been claimed.
+     */
+    int claimChunk() {
+        int chunk = nextChunk.getAndIncrement();
+        return chunk < chunkCount ? chunk : -1;
+    }
+
+    /**
+     * Gets the index of the first cell of a chunk.
+     */
+    int fromOf(int chunk) {
+        return chunk * chunkSize;
+    }
+
+    /**
+     * Gets the index past the last cell of a chunk.
+     */
+    int toOf(int chunk) {
+        return (int) Math.min(cellCount, (long) (chunk + 1) * chunkSize);
+    }
+
+    /**
+     * Encodes the RPC of a chunk.
+     */
+    SplicedCheckRequest encode(int chunk) {
+        return encoded.chunk(fromOf(chunk), toOf(chunk));
+    }
+
+    /**
+     * Gets a chunk as an AZRequest, for the audit log, the traffic recorder and diagnostics. Its evaluations are
+     * only created when they are read.
+     */
+    AZRequest requestOf(int chunk) {
+        return new AZRequest(request.getRequestId(), request.getAuthorizationModel(), null, null, null,
+                request.getContext(), new Evaluations(fromOf(chunk), toOf(chunk)));
+    }
+
+    /**
+     * Records the decisions of a chunk, straight from the response.
+     *
+     * @param chunk    The index of the chunk.
+     * @param response The response of the chunk, with one evaluation per cell.
+     */
+    void decide(int chunk, AuthorizationCheck.AuthorizationCheckResponse response) {
+        int from = fromOf(chunk);
+        int count = toOf(chunk) - from;
+        for (int i = 0; i < count; i++) {
+            if (response.getEvaluations(i).getDecision()) {
+                int index = from + i;
+                permitted[index >>> 6] |= 1L << index;
+            }
+        }
+        done();
+    }
+
+    /**
+     * Marks every cell of a chunk as failed.
+     *
+     * @param chunk  The index of the chunk.
+     * @param reason The failure.
+     */
+    void fail(int chunk, AZResult reason) {
+        for (int index = fromOf(chunk), to = toOf(chunk); index < to; index++) {
+            failed[index >>> 6] |= 1L << index;
+        }
+        failure.compareAndSet(null, reason);
+        done();
+    }
+
+    private void done() {
+        // Each chunk writes its own words before this update, so the last one sees every write.
+        if (pendingChunks.decrementAndGet() == 0) {
+            result.complete(toMatrix());
+        }
+    }
+
+    private DecisionMatrix toMatrix() {
+        return new DecisionMatrix(request.getSubjects().size(), request.getResources().size(),
+                request.getActions().size(), permitted, failed, failure.get());
+    }
+
+    /**
+     * The evaluations of a range of cells, created on access.
+     */
+    private final class Evaluations extends AbstractList<Evaluation> {
+        private final int from;
+        private final int to;
+
+        private Evaluations(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Evaluation get(int index) {
+            int cell = from + Objects.checkIndex(index, to - from);
+            int actions = request.getActions().size();
+            int resources = request.getResources().size();
+            return new Evaluation(null, request.getSubjects().get(cell / actions / resources),
+                    request.getResources().get(cell / actions % resources), request.getActions().get(cell % actions), null);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.utils.Hash128;
+import com.permguard.pep.utils.RequestFingerprint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of encoded authorization model fields, keyed by the canonical fingerprint of the model.
+ * <p>
+ * Models are compared by content, so a model rebuilt for every request still hits. A hit is trusted without
+ * comparing the models and the model carries the principal and its tokens, so the fingerprint is keyed with a
+ * random secret: a caller cannot craft a model whose fields collide with the ones of another caller.
+ * When the cache exceeds its entry or byte budget, the oldest models are evicted one at a time.
+ */
+class ModelPrefixCache {
+
+    private static final int AUTHORIZATION_MODEL_FIELD = AuthorizationCheck.AuthorizationCheckRequest.AUTHORIZATIONMODEL_FIELD_NUMBER;
+
+    private final BoundedCache<Key, ByteString> fields;
+    private final long key0;
+    private final long key1;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param maxEntries The maximum number of cached models.
+     * @param maxBytes   The maximum total size of the cached fields.
+     */
+    ModelPrefixCache(int maxEntries, long maxBytes) {
+        this.fields = new BoundedCache<>(maxEntries, maxBytes, ByteString::size);
+        SecureRandom random = new SecureRandom();
+        this.key0 = random.nextLong();
+        this.key1 = random.nextLong();
+    }
+
+    /**
+     * Gets the encoded authorization model field of a model, mapping and encoding it on a miss.
+     *
+     * @param model  The authorization model.
+     * @param mapper The function mapping the model to its gRPC form.
+     * @return The encoded field, tag and length included.
+     */
+    ByteString encodedFieldOf(AZModel model, Function<AZModel, AuthorizationCheck.AuthorizationModelRequest> mapper) {
+        Hash128 hash = new Hash128(key0, key1);
+        RequestFingerprint.hashModel(model, hash);
+        Key key = new Key(hash.high(), hash.low());
+        ByteString field = fields.get(key);
+        if (field != null) {
+            return field;
+        }
+        return fields.putIfAbsent(key, encode(mapper.apply(model)));
+    }
+
+    private static ByteString encode(AuthorizationCheck.AuthorizationModelRequest model) {
+        byte[] encoded = new byte[CodedOutputStream.computeMessageSize(AUTHORIZATION_MODEL_FIELD, model)];
+        CodedOutputStream output = CodedOutputStream.newInstance(encoded);
+        try {
+            output.writeMessage(AUTHORIZATION_MODEL_FIELD, model);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // The array never escapes, so it can back the ByteString without a copy.
+        return UnsafeByteOperations.unsafeWrap(encoded);
+    }
+
+    private record Key(long high, long low) {
+    }
+}
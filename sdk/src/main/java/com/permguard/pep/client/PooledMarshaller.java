@@ -0,0 +1,197 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Protobuf marshaller that keeps steady-state allocation per call low.
+ * <p>
+ * Messages are encoded into a reusable thread-local buffer and handed to the transport in a single write,
+ * instead of a fresh buffer per call. Messages with a length hint from the transport are read into the same
+ * buffer and parsed from it; the parser copies every field out, so the buffer is free again once it returns.
+ * Buffers larger than 1 MiB serve a single call and are not kept.
+ *
+ * @param <T> The message type.
+ */
+class PooledMarshaller<T extends MessageLite> implements MethodDescriptor.Marshaller<T> {
+
+    private static final int INITIAL_BUFFER_BYTES = 4 * 1024;
+    private static final int MAX_POOLED_BUFFER_BYTES = 1024 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_BYTES]);
+
+    private final Parser<T> parser;
+    private final T defaultInstance;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param defaultInstance The default instance of the message type.
+     */
+    @SuppressWarnings("unchecked")
+    PooledMarshaller(T defaultInstance) {
+        this.defaultInstance = defaultInstance;
+        this.parser = (Parser<T>) defaultInstance.getParserForType();
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return new MessageStream(ByteString.EMPTY, value);
+    }
+
+    /**
+     * Streams already encoded fields followed by a message. Protobuf allows fields in any order, so the result
+     * decodes as a single message as long as the prefix and the message do not set the same singular field.
+     *
+     * @param prefix  The encoded fields written first.
+     * @param message The message written after the prefix.
+     * @return The stream handed to the transport.
+     */
+    static InputStream stream(ByteString prefix, MessageLite message) {
+        return new MessageStream(prefix, message);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        try {
+            if (stream instanceof KnownLength) {
+                int size = stream.available();
+                if (size == 0) {
+                    return defaultInstance;
+                }
+                byte[] bytes = buffer(size);
+                int read = 0;
+                while (read < size) {
+                    int count = stream.read(bytes, read, size - read);
+                    if (count < 0) {
+                        break;
+                    }
+                    read += count;
+                }
+                if (read == size && stream.read() == -1) {
+                    CodedInputStream input = CodedInputStream.newInstance(bytes, 0, size);
+                    T message = parser.parseFrom(input);
+                    input.checkLastTagWas(0);
+                    return message;
+                }
+                throw new IOException("Message length does not match the transport length hint.");
+            }
+            return parser.parseFrom(stream);
+        } catch (InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Unable to read the message").withCause(e).asRuntimeException();
+        }
+    }
+
+    /**
+     * Encodes a message into the calling thread's buffer, growing it up to a bounded size.
+     */
+    static byte[] encode(MessageLite message, int size) throws IOException {
+        byte[] buffer = buffer(size);
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer, 0, size);
+        message.writeTo(output);
+        output.checkNoSpaceLeft();
+        return buffer;
+    }
+
+    /**
+     * Gets the calling thread's buffer, growing it to hold at least the given number of bytes.
+     */
+    private static byte[] buffer(int size) {
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.max(size, buffer.length * 2)];
+            if (buffer.length <= MAX_POOLED_BUFFER_BYTES) {
+                BUFFER.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Lazily serialized message. The transport drains it straight into its own buffers.
+     */
+    private static final class MessageStream extends InputStream implements Drainable, KnownLength {
+        private final ByteString prefix;
+        private MessageLite message;
+        private ByteArrayInputStream fallback;
+
+        private MessageStream(ByteString prefix, MessageLite message) {
+            this.prefix = prefix;
+            this.message = message;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            if (message != null) {
+                int size = message.getSerializedSize();
+                byte[] buffer = encode(message, size);
+                prefix.writeTo(target);
+                target.write(buffer, 0, size);
+                message = null;
+                return prefix.size() + size;
+            }
+            if (fallback != null) {
+                return (int) fallback.transferTo(target);
+            }
+            return 0;
+        }
+
+        @Override
+        public int read() {
+            return fallback().read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            return fallback().read(bytes, offset, length);
+        }
+
+        @Override
+        public int available() {
+            if (message != null) {
+                return prefix.size() + message.getSerializedSize();
+            }
+            return fallback != null ? fallback.available() : 0;
+        }
+
+        private ByteArrayInputStream fallback() {
+            if (fallback == null) {
+                fallback = new ByteArrayInputStream(message != null ? prefix.concat(message.toByteString()).toByteArray() : new byte[0]);
+                message = null;
+            }
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.Principal;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of mapped principals carrying tokens, keyed by the principal fields.
+ * <p>
+ * The same tokens are sent on every request of a session, so the gRPC principal holding them is built once.
+ * Strings cache their hash code, so looking up the same token instances again is cheap. An entry lives until
+ * the earliest {@code exp} claim of its JWT tokens, or for a default TTL when the tokens are not JWTs. A full
+ * cache evicts its oldest entries one at a time.
+ */
+class PrincipalCache {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final long defaultTtlMillis;
+    private final BoundedCache<Key, Entry> principals;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param maxEntries       The maximum number of cached principals.
+     * @param defaultTtlMillis The lifetime of entries whose tokens carry no expiry.
+     */
+    PrincipalCache(int maxEntries, long defaultTtlMillis) {
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.principals = new BoundedCache<>(maxEntries);
+    }
+
+    /**
+     * Gets the gRPC principal of a principal, mapping it on a miss or once its tokens expired.
+     *
+     * @param principal The principal, carrying at least one token.
+     * @param mapper    The function mapping the principal to its gRPC form.
+     * @return The gRPC principal.
+     */
+    AuthorizationCheck.Principal principalOf(Principal principal, Function<Principal, AuthorizationCheck.Principal> mapper) {
+        Key key = new Key(principal.getType(), principal.getId(), principal.getSource(),
+                principal.getIdentityToken(), principal.getAccessToken());
+        long now = System.currentTimeMillis();
+        Entry entry = principals.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.principal;
+        }
+        AuthorizationCheck.Principal mapped = mapper.apply(principal);
+        long expiresAt = Math.min(expiryOf(key.identityToken, now), expiryOf(key.accessToken, now));
+        if (expiresAt > now) {
+            Entry fresh = new Entry(mapped, expiresAt);
+            if (entry == null) {
+                principals.putIfAbsent(key, fresh);
+            } else {
+                principals.replace(key, entry, fresh);
+            }
+        } else if (entry != null) {
+            principals.remove(key, entry);
+        }
+        return mapped;
+    }
+
+    private long expiryOf(String token, long now) {
+        if (token == null) {
+            return Long.MAX_VALUE;
+        }
+        long exp = jwtExpiry(token);
+        return exp >= 0 ? Math.min(exp, now + defaultTtlMillis) : now + defaultTtlMillis;
+    }
+
+    /**
+     * Gets the number of cached principals.
+     *
+     * @return The number of cached principals.
+     */
+    int size() {
+        return principals.size();
+    }
+
+    /**
+     * Reads the {@code exp} claim of a JWT, in epoch milliseconds.
+     *
+     * @param token The token.
+     * @return The expiry, or -1 if the token is not a JWT or has no expiry.
+     */
+    static long jwtExpiry(String token) {
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0) {
+            return -1;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(first + 1, second));
+            try (JsonParser parser = JSON.createParser(payload)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return -1;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("exp".equals(name) && value.isNumeric()) {
+                        return parser.getLongValue() * 1000L;
+                    }
+                    parser.skipChildren();
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            // Opaque tokens are cached for the default TTL.
+        }
+        return -1;
+    }
+
+    private record Key(String type, String id, String source, String identityToken, String accessToken) {
+    }
+
+    private record Entry(AuthorizationCheck.Principal principal, long expiresAt) {
+    }
+}
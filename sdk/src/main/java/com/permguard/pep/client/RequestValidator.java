@@ -0,0 +1,239 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.model.request.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validates an authorization request before it is mapped, collecting every problem instead of stopping at the first.
+ * <p>
+ * Evaluations inherit the subject, resource and action of the request, so they only need to carry the ones
+ * the request does not provide. Locations are passed down as an element and an index, and a path is only
+ * formatted for a problem, so validating a large valid request allocates nothing.
+ */
+final class RequestValidator {
+
+    private static final int NO_INDEX = -1;
+
+    private RequestValidator() {
+    }
+
+    /**
+     * Validates a request.
+     *
+     * @param request The request to validate.
+     * @return The problems found, empty if the request is valid.
+     */
+    static List<String> validate(AZRequest request) {
+        if (request == null) {
+            return List.of("request is required");
+        }
+        Problems problems = new Problems();
+        validateModel(request.getAuthorizationModel(), problems);
+
+        Subject subject = request.getSubject();
+        Resource resource = request.getResource();
+        Action action = request.getAction();
+        validateSubject(subject, Element.SUBJECT, NO_INDEX, problems);
+        validateResource(resource, Element.RESOURCE, NO_INDEX, problems);
+        validateAction(action, Element.ACTION, NO_INDEX, problems);
+        List<Evaluation> evaluations = request.getEvaluations();
+        if (evaluations == null || evaluations.isEmpty()) {
+            problems.requirePresent(subject, Element.SUBJECT, NO_INDEX);
+            problems.requirePresent(resource, Element.RESOURCE, NO_INDEX);
+            problems.requirePresent(action, Element.ACTION, NO_INDEX);
+            return problems.toList();
+        }
+        int i = 0;
+        for (Evaluation evaluation : evaluations) {
+            if (evaluation == null) {
+                problems.add(Element.EVALUATION, i, " must not be null");
+            } else {
+                validateSubject(evaluation.getSubject(), Element.EVALUATION_SUBJECT, i, problems);
+                validateResource(evaluation.getResource(), Element.EVALUATION_RESOURCE, i, problems);
+                validateAction(evaluation.getAction(), Element.EVALUATION_ACTION, i, problems);
+                problems.requirePresent(evaluation.getSubject() != null ? evaluation.getSubject() : subject, Element.EVALUATION_SUBJECT, i);
+                problems.requirePresent(evaluation.getResource() != null ? evaluation.getResource() : resource, Element.EVALUATION_RESOURCE, i);
+                problems.requirePresent(evaluation.getAction() != null ? evaluation.getAction() : action, Element.EVALUATION_ACTION, i);
+            }
+            i++;
+        }
+        return problems.toList();
+    }
+
+    /**
+     * Validates an authorization matrix.
+     *
+     * @param request The matrix request to validate.
+     * @return The problems found, empty if the request is valid.
+     */
+    static List<String> validate(AZMatrixRequest request) {
+        if (request == null) {
+            return List.of("request is required");
+        }
+        Problems problems = new Problems();
+        validateModel(request.getAuthorizationModel(), problems);
+        List<Subject> subjects = request.getSubjects();
+        List<Resource> resources = request.getResources();
+        List<Action> actions = request.getActions();
+        requireEntries(subjects, "subjects", problems);
+        requireEntries(resources, "resources", problems);
+        requireEntries(actions, "actions", problems);
+        for (int i = 0; subjects != null && i < subjects.size(); i++) {
+            problems.requirePresent(subjects.get(i), Element.MATRIX_SUBJECT, i);
+            validateSubject(subjects.get(i), Element.MATRIX_SUBJECT, i, problems);
+        }
+        for (int i = 0; resources != null && i < resources.size(); i++) {
+            problems.requirePresent(resources.get(i), Element.MATRIX_RESOURCE, i);
+            validateResource(resources.get(i), Element.MATRIX_RESOURCE, i, problems);
+        }
+        for (int i = 0; actions != null && i < actions.size(); i++) {
+            problems.requirePresent(actions.get(i), Element.MATRIX_ACTION, i);
+            validateAction(actions.get(i), Element.MATRIX_ACTION, i, problems);
+        }
+        if (request.getCellCount() > MatrixCheck.MAX_CELLS) {
+            problems.add("the matrix must not have more than " + MatrixCheck.MAX_CELLS + " cells");
+        }
+        return problems.toList();
+    }
+
+    private static void validateModel(AZModel model, Problems problems) {
+        if (model == null) {
+            problems.add("authorization_model is required");
+            return;
+        }
+        PolicyStore store = model.getPolicyStore();
+        if (store == null) {
+            problems.add("authorization_model.policy_store is required");
+        } else {
+            problems.require(store.getKind(), "authorization_model.policy_store.kind");
+            problems.require(store.getId(), "authorization_model.policy_store.id");
+        }
+        Principal principal = model.getPrincipal();
+        if (principal != null) {
+            problems.require(principal.getType(), "authorization_model.principal.type");
+            problems.require(principal.getId(), "authorization_model.principal.id");
+        }
+    }
+
+    private static void validateSubject(Subject subject, Element element, int index, Problems problems) {
+        if (subject != null) {
+            problems.require(subject.getType(), element, index, ".type");
+            problems.require(subject.getId(), element, index, ".id");
+        }
+    }
+
+    private static void validateResource(Resource resource, Element element, int index, Problems problems) {
+        if (resource != null) {
+            problems.require(resource.getType(), element, index, ".type");
+        }
+    }
+
+    private static void validateAction(Action action, Element element, int index, Problems problems) {
+        if (action != null) {
+            problems.require(action.getName(), element, index, ".name");
+        }
+    }
+
+    private static void requireEntries(List<?> list, String path, Problems problems) {
+        if (list == null || list.isEmpty()) {
+            problems.add(path + " must not be empty");
+        }
+    }
+
+    /**
+     * Element of a request a problem is reported on, formatted as {@code list[index].name}.
+     */
+    private enum Element {
+        SUBJECT(null, "subject"),
+        RESOURCE(null, "resource"),
+        ACTION(null, "action"),
+        EVALUATION("evaluations", null),
+        EVALUATION_SUBJECT("evaluations", "subject"),
+        EVALUATION_RESOURCE("evaluations", "resource"),
+        EVALUATION_ACTION("evaluations", "action"),
+        MATRIX_SUBJECT("subjects", null),
+        MATRIX_RESOURCE("resources", null),
+        MATRIX_ACTION("actions", null);
+
+        private final String list;
+        private final String name;
+
+        Element(String list, String name) {
+            this.list = list;
+            this.name = name;
+        }
+
+        void appendPath(int index, StringBuilder path) {
+            if (list != null) {
+                path.append(list).append('[').append(index).append(']');
+            }
+            if (name != null) {
+                path.append(list != null ? "." : "").append(name);
+            }
+        }
+    }
+
+    /**
+     * Problem list allocated on the first problem, so a valid request allocates nothing.
+     */
+    private static final class Problems {
+        private List<String> list;
+
+        void add(String problem) {
+            if (list == null) {
+                list = new ArrayList<>(4);
+            }
+            list.add(problem);
+        }
+
+        void add(Element element, int index, String problem) {
+            StringBuilder path = new StringBuilder(48);
+            element.appendPath(index, path);
+            add(path.append(problem).toString());
+        }
+
+        void require(String value, String path) {
+            if (value == null || value.isEmpty()) {
+                add(path + " is required");
+            }
+        }
+
+        void require(String value, Element element, int index, String field) {
+            if (value == null || value.isEmpty()) {
+                StringBuilder path = new StringBuilder(48);
+                element.appendPath(index, path);
+                add(path.append(field).append(" is required").toString());
+            }
+        }
+
+        void requirePresent(Object value, Element element, int index) {
+            if (value == null) {
+                add(element, index, " is required");
+            }
+        }
+
+        List<String> toList() {
+            return list != null ? list : List.of();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Netty event loop group and executor shared by every {@link AZClient} using the native transport.
+ * <p>
+ * The resources are created by the first client and released when the last one is shut down. The native epoll
+ * transport is used when it is available, which requires Linux on x86_64 or aarch64; NIO is used otherwise.
+ */
+final class SharedEventLoops {
+
+    private static SharedEventLoops instance;
+    private static int references;
+
+    private final EventLoopGroup group;
+    private final Class<? extends Channel> channelType;
+    private final ExecutorService executor;
+
+    private SharedEventLoops(int threads) {
+        if (Epoll.isAvailable()) {
+            this.group = new EpollEventLoopGroup(threads, new DefaultThreadFactory("permguard-epoll", true));
+            this.channelType = EpollSocketChannel.class;
+        } else {
+            this.group = new NioEventLoopGroup(threads, new DefaultThreadFactory("permguard-nio", true));
+            this.channelType = NioSocketChannel.class;
+        }
+        AtomicInteger executorThreads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "permguard-grpc-executor-" + executorThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Takes a reference to the shared resources, creating them if no client holds them.
+     *
+     * @param threads The number of event loop threads if the group is created, or 0 for the Netty default.
+     * @return The shared resources.
+     */
+    static synchronized SharedEventLoops acquire(int threads) {
+        if (instance == null) {
+            instance = new SharedEventLoops(threads);
+        }
+        references++;
+        return instance;
+    }
+
+    /**
+     * Drops a reference to the shared resources, shutting them down when it was the last one.
+     */
+    void release() {
+        synchronized (SharedEventLoops.class) {
+            if (--references > 0 || instance != this) {
+                return;
+            }
+            instance = null;
+        }
+        group.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the event loop group.
+     */
+    EventLoopGroup group() {
+        return group;
+    }
+
+    /**
+     * Gets the socket channel type matching the event loop group.
+     */
+    Class<? extends Channel> channelType() {
+        return channelType;
+    }
+
+    /**
+     * Gets the executor running the channel callbacks.
+     */
+    ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Checks whether the native epoll transport is used.
+     */
+    boolean isEpoll() {
+        return channelType == EpollSocketChannel.class;
+    }
+}
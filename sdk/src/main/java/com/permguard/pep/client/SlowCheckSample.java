@@ -0,0 +1,250 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+/**
+ * Diagnostics captured for a check slower than the threshold of a {@link SlowCheckSampler}.
+ * <p>
+ * The request is summarized without the subject, resource and principal identifiers, the context or the tokens,
+ * so samples can be dumped to ordinary logs.
+ */
+public final class SlowCheckSample {
+    private final long sequence;
+    private final long epochMillis;
+    private final String requestId;
+    private final long zoneId;
+    private final String policyStoreId;
+    private final String subjectType;
+    private final String resourceType;
+    private final String action;
+    private final int evaluations;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long prepareNanos;
+    private final long rpcNanos;
+    private final long completeNanos;
+    private final String outcome;
+    private final String channelState;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param sequence      The capture order of the sample.
+     * @param epochMillis   The epoch millis the check ended at.
+     * @param requestId     The request ID.
+     * @param zoneId        The zone ID.
+     * @param policyStoreId The policy store ID.
+     * @param subjectType   The subject type.
+     * @param resourceType  The resource type.
+     * @param action        The action name.
+     * @param evaluations   The number of evaluations, 0 for an atomic request.
+     * @param requestBytes  The encoded size of the request, 0 if it was not sent.
+     * @param responseBytes The encoded size of the response, 0 if none was received.
+     * @param prepareNanos  The duration of validation, cache lookup and mapping.
+     * @param rpcNanos      The duration of the call, 0 if it was not sent.
+     * @param completeNanos The duration of the response mapping and cache update.
+     * @param outcome       OK, or the kind of failure.
+     * @param channelState  The connectivity state of the channel when the check ended.
+     */
+    public SlowCheckSample(long sequence, long epochMillis, String requestId, long zoneId, String policyStoreId,
+                           String subjectType, String resourceType, String action, int evaluations,
+                           long requestBytes, long responseBytes, long prepareNanos, long rpcNanos, long completeNanos,
+                           String outcome, String channelState) {
+        this.sequence = sequence;
+        this.epochMillis = epochMillis;
+        this.requestId = requestId;
+        this.zoneId = zoneId;
+        this.policyStoreId = policyStoreId;
+        this.subjectType = subjectType;
+        this.resourceType = resourceType;
+        this.action = action;
+        this.evaluations = evaluations;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.prepareNanos = prepareNanos;
+        this.rpcNanos = rpcNanos;
+        this.completeNanos = completeNanos;
+        this.outcome = outcome;
+        this.channelState = channelState;
+    }
+
+    /**
+     * Gets the capture order of the sample.
+     *
+     * @return The sequence number, starting at 0.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the time the check ended at.
+     *
+     * @return The epoch millis.
+     */
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    /**
+     * Gets the request ID.
+     *
+     * @return The request ID, or null if the request had none.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the zone ID.
+     *
+     * @return The zone ID.
+     */
+    public long getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * Gets the policy store ID.
+     *
+     * @return The policy store ID.
+     */
+    public String getPolicyStoreId() {
+        return policyStoreId;
+    }
+
+    /**
+     * Gets the subject type.
+     *
+     * @return The subject type.
+     */
+    public String getSubjectType() {
+        return subjectType;
+    }
+
+    /**
+     * Gets the resource type.
+     *
+     * @return The resource type.
+     */
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * Gets the action name.
+     *
+     * @return The action name.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the number of evaluations.
+     *
+     * @return The number of evaluations, 0 for an atomic request.
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Gets the encoded size of the request.
+     *
+     * @return The size in bytes, 0 if the request was not sent.
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Gets the encoded size of the response.
+     *
+     * @return The size in bytes, 0 if no response was received.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Gets the duration of the validation, cache lookup and mapping.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    /**
+     * Gets the duration of the call.
+     *
+     * @return The duration in nanoseconds, 0 if the request was not sent.
+     */
+    public long getRpcNanos() {
+        return rpcNanos;
+    }
+
+    /**
+     * Gets the duration of the response mapping and cache update.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getCompleteNanos() {
+        return completeNanos;
+    }
+
+    /**
+     * Gets the total duration of the check.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return prepareNanos + rpcNanos + completeNanos;
+    }
+
+    /**
+     * Gets the outcome of the check.
+     *
+     * @return OK, or the kind of failure.
+     */
+    public String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Gets the connectivity state of the channel when the check ended.
+     *
+     * @return The state, such as READY or TRANSIENT_FAILURE.
+     */
+    public String getChannelState() {
+        return channelState;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowCheckSample{seq=" + sequence + ", at=" + epochMillis + ", requestId=" + requestId
+                + ", zoneId=" + zoneId + ", policyStoreId=" + policyStoreId + ", subjectType=" + subjectType
+                + ", resourceType=" + resourceType + ", action=" + action + ", evaluations=" + evaluations
+                + ", requestBytes=" + requestBytes + ", responseBytes=" + responseBytes
+                + ", totalMicros=" + getTotalNanos() / 1000 + ", prepareMicros=" + prepareNanos / 1000
+                + ", rpcMicros=" + rpcNanos / 1000 + ", completeMicros=" + completeNanos / 1000
+                + ", outcome=" + outcome + ", channelState=" + channelState + "}";
+    }
+}
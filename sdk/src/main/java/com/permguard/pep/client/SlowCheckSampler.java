@@ -0,0 +1,148 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.AZRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Opt-in detector of slow authorization checks.
+ * <p>
+ * Checks slower than the threshold are summarized into a {@link SlowCheckSample} and kept in a fixed-size ring,
+ * where the newest samples overwrite the oldest ones. Capturing claims a slot with a single atomic increment and
+ * never blocks. Checks under the threshold only pay for reading the clock.
+ */
+public class SlowCheckSampler {
+
+    private final long thresholdNanos;
+    private final int mask;
+    private final AtomicReferenceArray<SlowCheckSample> slots;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong dumped = new AtomicLong();
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param thresholdMillis The duration a check must reach to be sampled.
+     * @param capacity        The number of samples kept, rounded up to a power of two.
+     */
+    public SlowCheckSampler(long thresholdMillis, int capacity) {
+        if (thresholdMillis < 0 || capacity <= 0 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("The threshold must not be negative and the capacity must be positive.");
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Gets the number of slow checks captured since the sampler was created, including overwritten samples.
+     *
+     * @return The number of captured samples.
+     */
+    public long getCaptured() {
+        return next.get();
+    }
+
+    /**
+     * Gets the samples currently kept, oldest first.
+     *
+     * @return The samples.
+     */
+    public List<SlowCheckSample> getSamples() {
+        return samplesBetween(0, next.get());
+    }
+
+    /**
+     * Writes the samples currently kept, oldest first, one per line.
+     *
+     * @param output The destination.
+     * @return The number of written samples.
+     * @throws IOException If the destination cannot be written.
+     */
+    public int dump(Appendable output) throws IOException {
+        return write(samplesBetween(0, next.get()), output);
+    }
+
+    /**
+     * Writes the samples captured since the previous call to this method, oldest first, one per line.
+     * Samples overwritten in between are skipped.
+     *
+     * @param output The destination.
+     * @return The number of written samples.
+     * @throws IOException If the destination cannot be written.
+     */
+    public int dumpNew(Appendable output) throws IOException {
+        long end = next.get();
+        return write(samplesBetween(dumped.getAndAccumulate(end, Math::max), end), output);
+    }
+
+    /**
+     * Gets the duration a check must reach to be sampled.
+     */
+    long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * Captures a slow check.
+     */
+    void capture(AZRequest request, long requestBytes, long responseBytes, long prepareNanos, long rpcNanos,
+                 long completeNanos, String outcome, String channelState) {
+        long sequence = next.getAndIncrement();
+        AZModel model = request != null ? request.getAuthorizationModel() : null;
+        slots.set((int) sequence & mask, new SlowCheckSample(sequence, System.currentTimeMillis(),
+                request != null ? request.getRequestId() : null,
+                model != null ? model.getZoneId() : 0,
+                model != null && model.getPolicyStore() != null ? model.getPolicyStore().getId() : null,
+                request != null && request.getSubject() != null ? request.getSubject().getType() : null,
+                request != null && request.getResource() != null ? request.getResource().getType() : null,
+                request != null && request.getAction() != null ? request.getAction().getName() : null,
+                request != null && request.getEvaluations() != null ? request.getEvaluations().size() : 0,
+                requestBytes, responseBytes, prepareNanos, rpcNanos, completeNanos, outcome, channelState));
+    }
+
+    private List<SlowCheckSample> samplesBetween(long from, long end) {
+        long start = Math.max(from, end - (mask + 1));
+        List<SlowCheckSample> samples = new ArrayList<>((int) Math.max(0, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            SlowCheckSample sample = slots.get((int) sequence & mask);
+            // A slot may still hold an older sample while its new one is being stored, or already a newer one.
+            if (sample != null && sample.getSequence() == sequence) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+
+    private static int write(List<SlowCheckSample> samples, Appendable output) throws IOException {
+        for (SlowCheckSample sample : samples) {
+            output.append(sample.toString()).append(System.lineSeparator());
+        }
+        return samples.size();
+    }
+}
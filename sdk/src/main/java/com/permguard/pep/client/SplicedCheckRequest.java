@@ -0,0 +1,96 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import io.grpc.MethodDescriptor;
+
+import java.io.InputStream;
+
+/**
+ * An AuthorizationCheckRequest whose authorization model field is already encoded.
+ * <p>
+ * The model is usually identical across the requests of a tenant, so its encoded bytes are reused and only
+ * the per-call fields of the body are serialized. On the wire the two parts form a single request message.
+ * Matrix checks also pass their evaluations already encoded, after the model field.
+ */
+final class SplicedCheckRequest {
+
+    private final ByteString encodedFields;
+    private final AuthorizationCheck.AuthorizationCheckRequest body;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param encodedFields The encoded authorization model field, tag included, possibly followed by encoded
+     *                      evaluations, or an empty ByteString.
+     * @param body          The request without the encoded fields.
+     */
+    SplicedCheckRequest(ByteString encodedFields, AuthorizationCheck.AuthorizationCheckRequest body) {
+        this.encodedFields = encodedFields;
+        this.body = body;
+    }
+
+    /**
+     * Gets the encoded fields written before the body.
+     *
+     * @return The encoded fields.
+     */
+    ByteString getEncodedFields() {
+        return encodedFields;
+    }
+
+    /**
+     * Gets the request without the encoded fields.
+     *
+     * @return The request body.
+     */
+    AuthorizationCheck.AuthorizationCheckRequest getBody() {
+        return body;
+    }
+
+    /**
+     * Gets the size of the request on the wire.
+     *
+     * @return The size of the encoded fields and of the body, in bytes.
+     */
+    int getSerializedSize() {
+        return encodedFields.size() + body.getSerializedSize();
+    }
+
+    /**
+     * Marshaller writing the encoded fields followed by the body.
+     */
+    static final class Marshaller implements MethodDescriptor.Marshaller<SplicedCheckRequest> {
+
+        private final PooledMarshaller<AuthorizationCheck.AuthorizationCheckRequest> requests =
+                new PooledMarshaller<>(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance());
+
+        @Override
+        public InputStream stream(SplicedCheckRequest value) {
+            return PooledMarshaller.stream(value.encodedFields, value.body);
+        }
+
+        @Override
+        public SplicedCheckRequest parse(InputStream stream) {
+            return new SplicedCheckRequest(ByteString.EMPTY, requests.parse(stream));
+        }
+    }
+}
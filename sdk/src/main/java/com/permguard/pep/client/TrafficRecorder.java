@@ -0,0 +1,202 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.CodedOutputStream;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZRequest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the authorization requests of an {@link AZClient} to a binary log, for replay with {@link TrafficReplayer}.
+ * <p>
+ * The check path only offers the request and its arrival time to a bounded queue; when the queue is full the
+ * request is dropped and counted. A background thread maps the requests, redacts the principal tokens and
+ * appends them to the log. Requests must not be mutated after they were checked.
+ * <p>
+ * Log layout: a header (magic, version, start epoch millis) followed by length-delimited records, each one a
+ * varint length, the nanoseconds elapsed since the start of the recording and the encoded AuthorizationCheckRequest.
+ */
+public class TrafficRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x50475452;
+    static final int VERSION = 1;
+    static final String REDACTED = "redacted";
+
+    private static final System.Logger LOGGER = System.getLogger(TrafficRecorder.class.getName());
+    private static final int DRAIN_BATCH = 256;
+
+    private final Path path;
+    private final ArrayBlockingQueue<Entry> queue;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Mapper mapper = new Mapper();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Constructor with parameters. Starts the background writer.
+     *
+     * @param path     The log file, replaced if it exists.
+     * @param capacity The maximum number of requests waiting to be written.
+     * @throws IOException If the log file cannot be created.
+     */
+    public TrafficRecorder(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024);
+        CodedOutputStream output = CodedOutputStream.newInstance(file);
+        try {
+            output.writeFixed32NoTag(MAGIC);
+            output.writeFixed32NoTag(VERSION);
+            output.writeFixed64NoTag(System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            try {
+                file.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.writer = new Thread(() -> writeLoop(file, output), "permguard-traffic-recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Offers a request to the recorder, never blocking.
+     *
+     * @param request The request being checked.
+     */
+    void record(AZRequest request) {
+        if (closed || request == null) {
+            return;
+        }
+        if (!queue.offer(new Entry(request, System.nanoTime() - startNanos))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of requests written to the log.
+     *
+     * @return The number of recorded requests.
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * Gets the number of requests dropped because the writer could not keep up.
+     *
+     * @return The number of dropped requests.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the pending requests and closes the log.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(OutputStream file, CodedOutputStream output) {
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH);
+        try (file) {
+            while (!closed || !queue.isEmpty()) {
+                if (queue.drainTo(batch, DRAIN_BATCH) == 0) {
+                    output.flush();
+                    file.flush();
+                    Entry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (entry == null) {
+                        continue;
+                    }
+                    batch.add(entry);
+                }
+                for (Entry entry : batch) {
+                    write(output, entry);
+                }
+                batch.clear();
+            }
+            output.flush();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to write the traffic log " + path, e);
+            closed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(CodedOutputStream output, Entry entry) throws IOException {
+        AuthorizationCheck.AuthorizationCheckRequest request;
+        try {
+            request = redact(mapper.mapAuthorizationCheckRequest(entry.request));
+        } catch (RuntimeException e) {
+            // A request that cannot be mapped was rejected by the client as well, there is nothing to replay.
+            dropped.incrementAndGet();
+            return;
+        }
+        output.writeUInt32NoTag(CodedOutputStream.computeFixed64SizeNoTag(entry.elapsedNanos) + request.getSerializedSize());
+        output.writeFixed64NoTag(entry.elapsedNanos);
+        request.writeTo(output);
+        recorded.incrementAndGet();
+    }
+
+    private static AuthorizationCheck.AuthorizationCheckRequest redact(AuthorizationCheck.AuthorizationCheckRequest request) {
+        if (!request.hasAuthorizationModel() || !request.getAuthorizationModel().hasPrincipal()) {
+            return request;
+        }
+        AuthorizationCheck.Principal principal = request.getAuthorizationModel().getPrincipal();
+        if (!principal.hasIdentityToken() && !principal.hasAccessToken()) {
+            return request;
+        }
+        AuthorizationCheck.Principal.Builder redacted = principal.toBuilder();
+        if (principal.hasIdentityToken()) {
+            redacted.setIdentityToken(REDACTED);
+        }
+        if (principal.hasAccessToken()) {
+            redacted.setAccessToken(REDACTED);
+        }
+        AuthorizationCheck.AuthorizationCheckRequest.Builder builder = request.toBuilder();
+        builder.getAuthorizationModelBuilder().setPrincipal(redacted);
+        return builder.build();
+    }
+
+    private record Entry(AZRequest request, long elapsedNanos) {
+    }
+}
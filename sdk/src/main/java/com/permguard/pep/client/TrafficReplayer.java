@@ -0,0 +1,215 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.CodedInputStream;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZRequest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a log written by {@link TrafficRecorder} through an {@link AZClient}, against {@code AZServer} or a real PDP.
+ * <p>
+ * Requests are sent at their recorded offsets divided by the speed factor, so a speed of 1 reproduces the original
+ * inter-arrival times and a speed of 10 sends the same traffic ten times faster. A speed of 0 sends the requests as
+ * fast as the concurrency limit allows. Redacted tokens are replayed as recorded.
+ */
+public class TrafficReplayer {
+
+    private final Path path;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param path The traffic log.
+     */
+    public TrafficReplayer(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Replays the log.
+     *
+     * @param client         The client sending the requests.
+     * @param speed          The speed factor, or 0 to ignore the recorded timing.
+     * @param maxConcurrency The maximum number of checks in flight.
+     * @return The statistics of the replay.
+     * @throws IOException          If the log cannot be read.
+     * @throws InterruptedException If the replay is interrupted.
+     */
+    public Result replay(AZClient client, double speed, int maxConcurrency) throws IOException, InterruptedException {
+        Mapper mapper = new Mapper();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicLong failed = new AtomicLong();
+        AtomicLong totalLatencyNanos = new AtomicLong();
+        AtomicLong maxLatencyNanos = new AtomicLong();
+        long sent = 0;
+        long lateNanos = 0;
+        long start = System.nanoTime();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            CodedInputStream input = CodedInputStream.newInstance(file);
+            if (input.isAtEnd() || input.readFixed32() != TrafficRecorder.MAGIC || input.readFixed32() != TrafficRecorder.VERSION) {
+                throw new IOException("Not a traffic log: " + path);
+            }
+            input.readFixed64();
+            while (!input.isAtEnd()) {
+                input.resetSizeCounter();
+                int length = input.readRawVarint32();
+                long offsetNanos = input.readFixed64();
+                AZRequest request = mapper.mapAZRequest(AuthorizationCheck.AuthorizationCheckRequest.parseFrom(input.readRawBytes(length - 8)));
+                if (speed > 0) {
+                    long due = start + (long) (offsetNanos / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        awaitUntil(due);
+                    } else {
+                        lateNanos = Math.max(lateNanos, -wait);
+                    }
+                }
+                permits.acquire();
+                long sentAt = System.nanoTime();
+                try {
+                    client.checkAsync(request).whenComplete((result, failure) -> {
+                        long latency = System.nanoTime() - sentAt;
+                        totalLatencyNanos.addAndGet(latency);
+                        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                        if (failure != null || !result.isSuccess()) {
+                            failed.incrementAndGet();
+                        }
+                        permits.release();
+                    });
+                } catch (RuntimeException e) {
+                    // A check rejected before it was sent never completes its future, so its permit is released here.
+                    failed.incrementAndGet();
+                    permits.release();
+                }
+                sent++;
+            }
+        }
+        permits.acquire(maxConcurrency);
+        permits.release(maxConcurrency);
+        return new Result(sent, failed.get(), System.nanoTime() - start,
+                sent > 0 ? totalLatencyNanos.get() / sent : 0, maxLatencyNanos.get(), lateNanos);
+    }
+
+    /**
+     * Parks until a deadline, as a single park may return early.
+     */
+    private static void awaitUntil(long due) throws InterruptedException {
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Statistics of a replay.
+     */
+    public static final class Result {
+        private final long requests;
+        private final long failed;
+        private final long elapsedNanos;
+        private final long meanLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long maxLagNanos;
+
+        Result(long requests, long failed, long elapsedNanos, long meanLatencyNanos, long maxLatencyNanos, long maxLagNanos) {
+            this.requests = requests;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.meanLatencyNanos = meanLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.maxLagNanos = maxLagNanos;
+        }
+
+        /**
+         * Gets the number of replayed requests.
+         *
+         * @return The number of requests.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Gets the number of failed checks.
+         *
+         * @return The number of failures.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Gets the duration of the replay.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Gets the mean latency of the checks.
+         *
+         * @return The mean latency in nanoseconds.
+         */
+        public long getMeanLatencyNanos() {
+            return meanLatencyNanos;
+        }
+
+        /**
+         * Gets the maximum latency of the checks.
+         *
+         * @return The maximum latency in nanoseconds.
+         */
+        public long getMaxLatencyNanos() {
+            return maxLatencyNanos;
+        }
+
+        /**
+         * Gets how late the replayer sent a request compared to its schedule, at worst.
+         * A large value means the client or the concurrency limit could not sustain the requested speed.
+         *
+         * @return The maximum lag in nanoseconds.
+         */
+        public long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d failed in %d ms, %.0f requests/s, mean latency %d us, max latency %d us, max lag %d us",
+                    requests, failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    requests / Math.max(1e-9, elapsedNanos / 1e9), meanLatencyNanos / 1000, maxLatencyNanos / 1000, maxLagNanos / 1000);
+        }
+    }
+}
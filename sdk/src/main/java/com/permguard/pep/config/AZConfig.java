@@ -18,6 +18,19 @@
 
 package com.permguard.pep.config;
 
+import com.permguard.pep.audit.AuditLog;
+import com.permguard.pep.cache.DecisionCache;
+import com.permguard.pep.client.SlowCheckSampler;
+import com.permguard.pep.client.TrafficRecorder;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.tracing.Tracer;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration class for the AZClient.
  * This class holds the settings required to connect to the Policy Decision Point (PDP) service.
@@ -26,6 +39,26 @@ public class AZConfig {
     private String host;
     private int port;
     private boolean usePlaintext;
+    private DecisionCache decisionCache;
+    private Path decisionCacheSnapshotPath;
+    private long decisionCacheSnapshotIntervalMillis = 60_000;
+    private boolean errorStackTraces;
+    private TrafficRecorder trafficRecorder;
+    private AuditLog auditLog;
+    private final List<ClientInterceptor> interceptors = new ArrayList<>();
+    private Tracer tracer;
+    private boolean loadTracer = true;
+    private SlowCheckSampler slowCheckSampler;
+    private long slowCheckDumpIntervalMillis;
+    private boolean nativeTransport;
+    private int eventLoopThreads;
+    private String compression;
+    private int compressionThresholdBytes = 1024;
+    private final List<Codec> codecs = new ArrayList<>();
+    private boolean warmUpOnStart;
+    private int warmUpChecks = 10;
+    private long warmUpTimeoutMillis = 30_000;
+    private AZRequest warmUpRequest;
 
     /**
      * Default constructor with default settings.
@@ -103,4 +136,377 @@ public class AZConfig {
     public void setUsePlaintext(boolean usePlaintext) {
         this.usePlaintext = usePlaintext;
     }
+
+    /**
+     * Gets the cache used to store authorization decisions.
+     *
+     * @return The decision cache, or null if caching is disabled.
+     */
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    /**
+     * Sets the cache used to store authorization decisions.
+     * Only requests without evaluations are cached.
+     *
+     * @param decisionCache The decision cache, or null to disable caching.
+     */
+    public void setDecisionCache(DecisionCache decisionCache) {
+        this.decisionCache = decisionCache;
+    }
+
+    /**
+     * Gets the file the decision cache is persisted to.
+     *
+     * @return The snapshot file, or null if snapshots are disabled.
+     */
+    public Path getDecisionCacheSnapshotPath() {
+        return decisionCacheSnapshotPath;
+    }
+
+    /**
+     * Sets the file the decision cache is persisted to, periodically and on shutdown.
+     * The snapshot is loaded back on startup, which requires an OffHeapDecisionCache. Policy version tokens are not
+     * part of it: delete the file when the policies changed while the application was down.
+     *
+     * @param decisionCacheSnapshotPath The snapshot file, or null to disable snapshots.
+     */
+    public void setDecisionCacheSnapshotPath(Path decisionCacheSnapshotPath) {
+        this.decisionCacheSnapshotPath = decisionCacheSnapshotPath;
+    }
+
+    /**
+     * Gets the interval between two decision cache snapshots.
+     *
+     * @return The interval in milliseconds.
+     */
+    public long getDecisionCacheSnapshotIntervalMillis() {
+        return decisionCacheSnapshotIntervalMillis;
+    }
+
+    /**
+     * Sets the interval between two decision cache snapshots.
+     *
+     * @param decisionCacheSnapshotIntervalMillis The interval in milliseconds, or 0 to write only on shutdown.
+     */
+    public void setDecisionCacheSnapshotIntervalMillis(long decisionCacheSnapshotIntervalMillis) {
+        this.decisionCacheSnapshotIntervalMillis = decisionCacheSnapshotIntervalMillis;
+    }
+
+    /**
+     * Checks whether expected failures capture a stack trace.
+     *
+     * @return True if every AuthorizationException captures its stack trace.
+     */
+    public boolean isErrorStackTraces() {
+        return errorStackTraces;
+    }
+
+    /**
+     * Sets whether expected failures capture a stack trace. Unavailable, deadline, overloaded and invalid request
+     * failures skip it by default, as they can be raised thousands of times per second during an outage.
+     * Internal failures always capture it.
+     *
+     * @param errorStackTraces True to capture the stack trace of every failure.
+     */
+    public void setErrorStackTraces(boolean errorStackTraces) {
+        this.errorStackTraces = errorStackTraces;
+    }
+
+    /**
+     * Gets the traffic recorder.
+     *
+     * @return The traffic recorder, or null if traffic is not recorded.
+     */
+    public TrafficRecorder getTrafficRecorder() {
+        return trafficRecorder;
+    }
+
+    /**
+     * Sets the traffic recorder. Every checked request is recorded, and the recorder is closed when the client shuts down.
+     *
+     * @param trafficRecorder The traffic recorder, or null to disable recording.
+     */
+    public void setTrafficRecorder(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+    }
+
+    /**
+     * Gets the audit log of the authorization decisions.
+     *
+     * @return The audit log, or null if decisions are not audited.
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Sets the audit log of the authorization decisions. Every decision returned by the client is logged, including
+     * the ones served from the decision cache, and the log is closed when the client shuts down.
+     *
+     * @param auditLog The audit log, or null to disable auditing.
+     */
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Gets the interceptors applied to the calls to the PDP.
+     *
+     * @return The interceptors, in the order they were added.
+     */
+    public List<ClientInterceptor> getInterceptors() {
+        return interceptors;
+    }
+
+    /**
+     * Adds an interceptor applied to the calls to the PDP. Interceptors run in the order they were added,
+     * before the tracing interceptor, which is the closest one to the transport.
+     *
+     * @param interceptor The interceptor.
+     */
+    public void addInterceptor(ClientInterceptor interceptor) {
+        this.interceptors.add(interceptor);
+    }
+
+    /**
+     * Gets the tracer the calls to the PDP are reported to.
+     *
+     * @return The tracer, or null to use the one registered with the ServiceLoader, if enabled.
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets the tracer the calls to the PDP are reported to. The W3C trace context is then propagated to the PDP.
+     *
+     * @param tracer The tracer, or null to use the one registered with the ServiceLoader, if enabled.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Checks whether a tracer registered with the ServiceLoader is used when none is set.
+     *
+     * @return True if the tracer is discovered.
+     */
+    public boolean isLoadTracer() {
+        return loadTracer;
+    }
+
+    /**
+     * Sets whether a tracer registered with the ServiceLoader is used when none is set.
+     *
+     * @param loadTracer True to discover the tracer, false to disable tracing unless a tracer is set.
+     */
+    public void setLoadTracer(boolean loadTracer) {
+        this.loadTracer = loadTracer;
+    }
+
+    /**
+     * Gets the sampler of slow checks.
+     *
+     * @return The sampler, or null if slow checks are not sampled.
+     */
+    public SlowCheckSampler getSlowCheckSampler() {
+        return slowCheckSampler;
+    }
+
+    /**
+     * Sets the sampler of slow checks. Its samples can be dumped on demand, or periodically to the client log.
+     *
+     * @param slowCheckSampler The sampler, or null to disable sampling.
+     */
+    public void setSlowCheckSampler(SlowCheckSampler slowCheckSampler) {
+        this.slowCheckSampler = slowCheckSampler;
+    }
+
+    /**
+     * Gets the interval between two dumps of the new slow check samples to the client log.
+     *
+     * @return The interval in milliseconds, or 0 if samples are only dumped on demand.
+     */
+    public long getSlowCheckDumpIntervalMillis() {
+        return slowCheckDumpIntervalMillis;
+    }
+
+    /**
+     * Sets the interval between two dumps of the new slow check samples to the client log.
+     *
+     * @param slowCheckDumpIntervalMillis The interval in milliseconds, or 0 to only dump samples on demand.
+     */
+    public void setSlowCheckDumpIntervalMillis(long slowCheckDumpIntervalMillis) {
+        this.slowCheckDumpIntervalMillis = slowCheckDumpIntervalMillis;
+    }
+
+    /**
+     * Checks whether the channel is built on the Netty event loops shared by every client.
+     *
+     * @return True if the native transport is enabled.
+     */
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    /**
+     * Sets whether the channel is built on Netty event loops shared by every client with this option, using the
+     * native epoll transport when it is available and NIO otherwise. The native library is an optional dependency,
+     * see {@code netty-transport-native-epoll}. The event loops are released once the last of these clients is shut down.
+     *
+     * @param nativeTransport True to use the shared event loops, false for the gRPC defaults.
+     */
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    /**
+     * Gets the number of threads of the shared event loops.
+     *
+     * @return The number of threads, or 0 for the Netty default.
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * Sets the number of threads of the shared event loops. Only the client creating them applies it.
+     *
+     * @param eventLoopThreads The number of threads, or 0 for the Netty default.
+     */
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    /**
+     * Gets the compression of the requests.
+     *
+     * @return The name of the codec, or null if requests are not compressed.
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the compression of the requests, for instance "gzip" or the name of a codec added to the configuration.
+     * The client also accepts responses compressed with any of these codecs.
+     *
+     * @param compression The name of the codec, or null to send requests uncompressed.
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Gets the encoded size from which requests are compressed.
+     *
+     * @return The threshold in bytes.
+     */
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    /**
+     * Sets the encoded size from which requests are compressed. Smaller requests are sent uncompressed.
+     *
+     * @param compressionThresholdBytes The threshold in bytes, 0 to compress every request.
+     */
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    /**
+     * Gets the additional compression codecs.
+     *
+     * @return The codecs, besides gzip.
+     */
+    public List<Codec> getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * Adds a compression codec, which can then be selected with {@link #setCompression(String)}.
+     * The PDP must support it as well.
+     *
+     * @param codec The codec.
+     */
+    public void addCodec(Codec codec) {
+        this.codecs.add(codec);
+    }
+
+    /**
+     * Checks whether the client starts warming up as soon as it is created.
+     *
+     * @return True if the client warms up on creation.
+     */
+    public boolean isWarmUpOnStart() {
+        return warmUpOnStart;
+    }
+
+    /**
+     * Sets whether the client starts warming up as soon as it is created. Readiness can then be awaited on the
+     * future returned by AZClient.warmUp().
+     *
+     * @param warmUpOnStart True to warm up on creation.
+     */
+    public void setWarmUpOnStart(boolean warmUpOnStart) {
+        this.warmUpOnStart = warmUpOnStart;
+    }
+
+    /**
+     * Gets the number of synthetic checks run during warm-up.
+     *
+     * @return The number of checks.
+     */
+    public int getWarmUpChecks() {
+        return warmUpChecks;
+    }
+
+    /**
+     * Sets the number of synthetic checks run during warm-up, once the channel is ready.
+     *
+     * @param warmUpChecks The number of checks, 0 to only connect.
+     */
+    public void setWarmUpChecks(int warmUpChecks) {
+        this.warmUpChecks = warmUpChecks;
+    }
+
+    /**
+     * Gets the maximum duration of the warm-up.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getWarmUpTimeoutMillis() {
+        return warmUpTimeoutMillis;
+    }
+
+    /**
+     * Sets the maximum duration of the warm-up, connection included.
+     *
+     * @param warmUpTimeoutMillis The timeout in milliseconds.
+     */
+    public void setWarmUpTimeoutMillis(long warmUpTimeoutMillis) {
+        this.warmUpTimeoutMillis = warmUpTimeoutMillis;
+    }
+
+    /**
+     * Gets the request sent by the synthetic warm-up checks.
+     *
+     * @return The request, or null to use generated ones.
+     */
+    public AZRequest getWarmUpRequest() {
+        return warmUpRequest;
+    }
+
+    /**
+     * Sets the request sent by the synthetic warm-up checks, typically a representative request of the application
+     * against a zone the PDP serves. Its decision is discarded.
+     *
+     * @param warmUpRequest The request, or null to use generated ones.
+     */
+    public void setWarmUpRequest(AZRequest warmUpRequest) {
+        this.warmUpRequest = warmUpRequest;
+    }
 }
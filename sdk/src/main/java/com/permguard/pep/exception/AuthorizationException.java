@@ -23,13 +23,15 @@ package com.permguard.pep.exception;
  */
 public class AuthorizationException extends RuntimeException {
 
+    private final ErrorKind kind;
+
     /**
      * Constructs an AuthorizationException with a specific message.
      *
      * @param message The error message describing the failure.
      */
     public AuthorizationException(String message) {
-        super(message);
+        this(message, ErrorKind.INTERNAL, null, true);
     }
 
     /**
@@ -39,6 +41,38 @@ public class AuthorizationException extends RuntimeException {
      * @param cause   The root cause of the exception.
      */
     public AuthorizationException(String message, Throwable cause) {
-        super(message, cause);
+        this(message, ErrorKind.INTERNAL, cause, true);
+    }
+
+    /**
+     * Constructs a classified AuthorizationException.
+     * Skipping the stack trace makes expected failures, such as a PDP outage, cheap to raise.
+     *
+     * @param message            The error message describing the failure.
+     * @param kind               The kind of failure.
+     * @param cause              The root cause of the exception, or null.
+     * @param writableStackTrace Whether the stack trace is captured.
+     */
+    public AuthorizationException(String message, ErrorKind kind, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+        this.kind = kind;
+    }
+
+    /**
+     * Gets the kind of failure.
+     *
+     * @return The kind of failure.
+     */
+    public ErrorKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Checks whether the check may succeed when retried.
+     *
+     * @return True if the failure is transient.
+     */
+    public boolean isRetryable() {
+        return kind.isRetryable();
     }
 }
@@ -0,0 +1,65 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.exception;
+
+/**
+ * Classification of authorization check failures.
+ */
+public enum ErrorKind {
+
+    /**
+     * The PDP could not be reached or dropped the call.
+     */
+    UNAVAILABLE(true),
+
+    /**
+     * The call did not complete before its deadline.
+     */
+    DEADLINE(true),
+
+    /**
+     * The PDP rejected the call because it is out of resources.
+     */
+    OVERLOADED(true),
+
+    /**
+     * The request is invalid or not permitted; sending it again gives the same result.
+     */
+    INVALID_REQUEST(false),
+
+    /**
+     * An unexpected failure in the SDK or the PDP.
+     */
+    INTERNAL(false);
+
+    private final boolean retryable;
+
+    ErrorKind(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    /**
+     * Checks whether a failure of this kind may succeed when retried.
+     *
+     * @return True if the failure is transient.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.model.request;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents an authorization check of every combination of some subjects, resources and actions.
+ * <p>
+ * The cells of the matrix are ordered by subject, then resource, then action: the cell of subject {@code s},
+ * resource {@code r} and action {@code a} has index {@code (s * resourceCount + r) * actionCount + a}.
+ */
+public class AZMatrixRequest {
+    private final String requestId;
+    private final AZModel authorizationModel;
+    private final List<Subject> subjects;
+    private final List<Resource> resources;
+    private final List<Action> actions;
+    private final Map<String, Object> context;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param requestId          The unique request ID.
+     * @param authorizationModel The authorization model used for evaluation.
+     * @param subjects           The subjects of the matrix.
+     * @param resources          The resources of the matrix.
+     * @param actions            The actions of the matrix.
+     * @param context            Additional context shared by every evaluation.
+     */
+    public AZMatrixRequest(String requestId, AZModel authorizationModel, List<Subject> subjects, List<Resource> resources,
+                           List<Action> actions, Map<String, Object> context) {
+        this.requestId = requestId;
+        this.authorizationModel = authorizationModel;
+        this.subjects = subjects;
+        this.resources = resources;
+        this.actions = actions;
+        this.context = context;
+    }
+
+    /**
+     * Gets the request ID.
+     *
+     * @return The request ID.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the authorization model.
+     *
+     * @return The authorization model.
+     */
+    public AZModel getAuthorizationModel() {
+        return authorizationModel;
+    }
+
+    /**
+     * Gets the subjects of the matrix.
+     *
+     * @return The subjects.
+     */
+    public List<Subject> getSubjects() {
+        return subjects;
+    }
+
+    /**
+     * Gets the resources of the matrix.
+     *
+     * @return The resources.
+     */
+    public List<Resource> getResources() {
+        return resources;
+    }
+
+    /**
+     * Gets the actions of the matrix.
+     *
+     * @return The actions.
+     */
+    public List<Action> getActions() {
+        return actions;
+    }
+
+    /**
+     * Gets the context shared by every evaluation.
+     *
+     * @return The context.
+     */
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the number of cells of the matrix.
+     *
+     * @return The number of subjects times the number of resources times the number of actions.
+     */
+    public long getCellCount() {
+        return (long) sizeOf(subjects) * sizeOf(resources) * sizeOf(actions);
+    }
+
+    private static int sizeOf(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+}
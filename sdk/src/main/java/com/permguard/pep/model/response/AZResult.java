@@ -0,0 +1,115 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.model.response;
+
+import com.permguard.pep.exception.ErrorKind;
+
+/**
+ * Outcome of an authorization check: either a response or a classified failure.
+ * Returned instead of throwing, so callers can handle failures without exceptions.
+ */
+public final class AZResult {
+    private final AZResponse response;
+    private final ErrorKind errorKind;
+    private final String errorMessage;
+    private final Throwable cause;
+
+    private AZResult(AZResponse response, ErrorKind errorKind, String errorMessage, Throwable cause) {
+        this.response = response;
+        this.errorKind = errorKind;
+        this.errorMessage = errorMessage;
+        this.cause = cause;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param response The response from the PDP.
+     * @return The result.
+     */
+    public static AZResult success(AZResponse response) {
+        return new AZResult(response, null, null, null);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param errorKind    The kind of failure.
+     * @param errorMessage The error message describing the failure.
+     * @param cause        The root cause of the failure, or null.
+     * @return The result.
+     */
+    public static AZResult failure(ErrorKind errorKind, String errorMessage, Throwable cause) {
+        return new AZResult(null, errorKind, errorMessage, cause);
+    }
+
+    /**
+     * Checks whether the check succeeded.
+     *
+     * @return True if the result carries a response.
+     */
+    public boolean isSuccess() {
+        return errorKind == null;
+    }
+
+    /**
+     * Gets the response.
+     *
+     * @return The response, or null if the check failed.
+     */
+    public AZResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Gets the kind of failure.
+     *
+     * @return The kind of failure, or null if the check succeeded.
+     */
+    public ErrorKind getErrorKind() {
+        return errorKind;
+    }
+
+    /**
+     * Gets the error message.
+     *
+     * @return The error message, or null if the check succeeded.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Gets the root cause of the failure.
+     *
+     * @return The root cause, or null if there is none.
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Checks whether the check failed and may succeed when retried.
+     *
+     * @return True if the failure is transient.
+     */
+    public boolean isRetryable() {
+        return errorKind != null && errorKind.isRetryable();
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.model.response;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents the decisions of a multi-evaluation response in a compact form.
+ * <p>
+ * Decisions are kept in a bitset and only denied evaluations carrying a reason keep their context. Request IDs
+ * are only read from the decoded response when they are asked for, so a response of 100k evaluations creates
+ * no {@link EvaluationResponse} and no array per evaluation.
+ */
+public final class DecisionBatch {
+    private final boolean decision;
+    private final String requestId;
+    private final ContextResponse context;
+    private final int size;
+    private final long[] permitted;
+    private final int[] reasonIndexes;
+    private final ContextResponse[] reasons;
+    private final List<String> requestIds;
+
+    /**
+     * Constructor with parameters. The arrays are used as is, not copied.
+     *
+     * @param decision      The decision of the whole request.
+     * @param requestId     The request ID of the whole request.
+     * @param context       The context of the whole request.
+     * @param size          The number of evaluations.
+     * @param permitted     The bitset of the permitted evaluations.
+     * @param reasonIndexes The indexes of the denied evaluations with a context, in ascending order.
+     * @param reasons       The contexts of these evaluations.
+     * @param requestIds    The request IDs of the evaluations, possibly read on access, or an empty list if there are none.
+     */
+    public DecisionBatch(boolean decision, String requestId, ContextResponse context, int size, long[] permitted,
+                         int[] reasonIndexes, ContextResponse[] reasons, List<String> requestIds) {
+        this.decision = decision;
+        this.requestId = requestId;
+        this.context = context;
+        this.size = size;
+        this.permitted = permitted;
+        this.reasonIndexes = reasonIndexes;
+        this.reasons = reasons;
+        this.requestIds = requestIds;
+    }
+
+    /**
+     * Gets the decision of the whole request.
+     *
+     * @return True if the request is authorized, false otherwise.
+     */
+    public boolean isDecision() {
+        return decision;
+    }
+
+    /**
+     * Gets the request ID of the whole request.
+     *
+     * @return The request ID.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the context of the whole request.
+     *
+     * @return The context, or null if the response carries none.
+     */
+    public ContextResponse getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the number of evaluations.
+     *
+     * @return The number of evaluations.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether an evaluation is permitted.
+     *
+     * @param index The index of the evaluation.
+     * @return True if the evaluation is permitted.
+     */
+    public boolean isPermitted(int index) {
+        Objects.checkIndex(index, size);
+        return (permitted[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Finds the next permitted evaluation.
+     *
+     * @param fromIndex The index to start from, inclusive.
+     * @return The index of the next permitted evaluation, or -1 if there is none.
+     */
+    public int nextPermitted(int fromIndex) {
+        return next(fromIndex, 0);
+    }
+
+    /**
+     * Finds the next denied evaluation.
+     *
+     * @param fromIndex The index to start from, inclusive.
+     * @return The index of the next denied evaluation, or -1 if there is none.
+     */
+    public int nextDenied(int fromIndex) {
+        return next(fromIndex, -1L);
+    }
+
+    /**
+     * Gets the number of permitted evaluations.
+     *
+     * @return The number of permitted evaluations.
+     */
+    public int getPermittedCount() {
+        int count = 0;
+        for (long word : permitted) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the request ID of an evaluation.
+     *
+     * @param index The index of the evaluation.
+     * @return The request ID returned by the PDP.
+     */
+    public String getRequestId(int index) {
+        Objects.checkIndex(index, size);
+        return index < requestIds.size() ? requestIds.get(index) : "";
+    }
+
+    /**
+     * Gets the context of an evaluation, which only denied evaluations keep.
+     *
+     * @param index The index of the evaluation.
+     * @return The context, or null if the evaluation is permitted or carries none.
+     */
+    public ContextResponse getContext(int index) {
+        Objects.checkIndex(index, size);
+        int found = Arrays.binarySearch(reasonIndexes, index);
+        return found >= 0 ? reasons[found] : null;
+    }
+
+    /**
+     * Expands an evaluation into an EvaluationResponse.
+     *
+     * @param index The index of the evaluation.
+     * @return A new EvaluationResponse.
+     */
+    public EvaluationResponse getEvaluation(int index) {
+        return new EvaluationResponse(isPermitted(index), getRequestId(index), getContext(index));
+    }
+
+    private int next(int fromIndex, long flip) {
+        if (fromIndex < 0 || fromIndex >= size) {
+            return -1;
+        }
+        int word = fromIndex >>> 6;
+        long bits = (permitted[word] ^ flip) & (-1L << fromIndex);
+        while (true) {
+            if (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < size ? index : -1;
+            }
+            if (++word == permitted.length) {
+                return -1;
+            }
+            bits = permitted[word] ^ flip;
+        }
+    }
+}
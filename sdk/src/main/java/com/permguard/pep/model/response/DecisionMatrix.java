@@ -0,0 +1,224 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.model.response;
+
+import java.util.Objects;
+
+/**
+ * Represents the decisions of an authorization matrix, one bit per cell.
+ * <p>
+ * Cells are indexed as in {@link com.permguard.pep.model.request.AZMatrixRequest}:
+ * {@code (s * resourceCount + r) * actionCount + a}. A cell whose check failed is denied and flagged as failed.
+ */
+public final class DecisionMatrix {
+    private final int subjectCount;
+    private final int resourceCount;
+    private final int actionCount;
+    private final long[] permitted;
+    private final long[] failed;
+    private final AZResult failure;
+
+    /**
+     * Constructor with parameters. The bitsets are used as is, not copied.
+     *
+     * @param subjectCount  The number of subjects.
+     * @param resourceCount The number of resources.
+     * @param actionCount   The number of actions.
+     * @param permitted     The bitset of the permitted cells.
+     * @param failed        The bitset of the cells whose check failed.
+     * @param failure       The first failure, or null if every check succeeded.
+     */
+    public DecisionMatrix(int subjectCount, int resourceCount, int actionCount, long[] permitted, long[] failed,
+                          AZResult failure) {
+        this.subjectCount = subjectCount;
+        this.resourceCount = resourceCount;
+        this.actionCount = actionCount;
+        this.permitted = permitted;
+        this.failed = failed;
+        this.failure = failure;
+    }
+
+    /**
+     * Gets the number of subjects.
+     *
+     * @return The number of subjects.
+     */
+    public int getSubjectCount() {
+        return subjectCount;
+    }
+
+    /**
+     * Gets the number of resources.
+     *
+     * @return The number of resources.
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * Gets the number of actions.
+     *
+     * @return The number of actions.
+     */
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Gets the number of cells.
+     *
+     * @return The number of cells.
+     */
+    public int getCellCount() {
+        return subjectCount * resourceCount * actionCount;
+    }
+
+    /**
+     * Gets the index of a cell.
+     *
+     * @param subject  The index of the subject.
+     * @param resource The index of the resource.
+     * @param action   The index of the action.
+     * @return The index of the cell.
+     * @throws IndexOutOfBoundsException If an index is out of range.
+     */
+    public int indexOf(int subject, int resource, int action) {
+        Objects.checkIndex(subject, subjectCount);
+        Objects.checkIndex(resource, resourceCount);
+        Objects.checkIndex(action, actionCount);
+        return (subject * resourceCount + resource) * actionCount + action;
+    }
+
+    /**
+     * Checks whether a subject is permitted an action on a resource.
+     *
+     * @param subject  The index of the subject.
+     * @param resource The index of the resource.
+     * @param action   The index of the action.
+     * @return True if the action is permitted, false if it is denied or its check failed.
+     */
+    public boolean isPermitted(int subject, int resource, int action) {
+        return isPermitted(indexOf(subject, resource, action));
+    }
+
+    /**
+     * Checks whether a cell is permitted.
+     *
+     * @param index The index of the cell.
+     * @return True if the cell is permitted, false if it is denied or its check failed.
+     */
+    public boolean isPermitted(int index) {
+        Objects.checkIndex(index, getCellCount());
+        return (permitted[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks whether the check of a cell failed.
+     *
+     * @param subject  The index of the subject.
+     * @param resource The index of the resource.
+     * @param action   The index of the action.
+     * @return True if the check failed.
+     */
+    public boolean isFailed(int subject, int resource, int action) {
+        return isFailed(indexOf(subject, resource, action));
+    }
+
+    /**
+     * Checks whether the check of a cell failed.
+     *
+     * @param index The index of the cell.
+     * @return True if the check failed.
+     */
+    public boolean isFailed(int index) {
+        Objects.checkIndex(index, getCellCount());
+        return (failed[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Finds the next permitted cell.
+     *
+     * @param fromIndex The index to start from, inclusive.
+     * @return The index of the next permitted cell, or -1 if there is none.
+     */
+    public int nextPermitted(int fromIndex) {
+        int cells = getCellCount();
+        if (fromIndex < 0 || fromIndex >= cells) {
+            return -1;
+        }
+        int word = fromIndex >>> 6;
+        long bits = permitted[word] & (-1L << fromIndex);
+        while (true) {
+            if (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < cells ? index : -1;
+            }
+            if (++word == permitted.length) {
+                return -1;
+            }
+            bits = permitted[word];
+        }
+    }
+
+    /**
+     * Gets the number of permitted cells.
+     *
+     * @return The number of permitted cells.
+     */
+    public int getPermittedCount() {
+        return bitCount(permitted);
+    }
+
+    /**
+     * Gets the number of cells whose check failed.
+     *
+     * @return The number of failed cells.
+     */
+    public int getFailedCount() {
+        return bitCount(failed);
+    }
+
+    /**
+     * Checks whether every cell was decided by the PDP.
+     *
+     * @return True if no check failed.
+     */
+    public boolean isComplete() {
+        return failure == null;
+    }
+
+    /**
+     * Gets the first failure met while checking the matrix.
+     *
+     * @return The failure, or null if every check succeeded.
+     */
+    public AZResult getFailure() {
+        return failure;
+    }
+
+    private static int bitCount(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
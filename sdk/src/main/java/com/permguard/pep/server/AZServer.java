@@ -20,6 +20,9 @@ package com.permguard.pep.server;
 
 import com.permguard.pep.internal.proto.AuthorizationCheck;
 import com.permguard.pep.internal.proto.V1PDPServiceGrpc;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 
@@ -39,8 +42,30 @@ public class AZServer {
      * @throws IOException If the server fails to start.
      */
     public void start(int port) throws IOException {
+        start(port, new Codec[0]);
+    }
+
+    /**
+     * Starts the gRPC server on the specified port, accepting requests compressed with additional codecs.
+     * Gzip compressed requests are always accepted.
+     *
+     * @param port   The port to start the server on.
+     * @param codecs The additional compression codecs.
+     * @throws IOException If the server fails to start.
+     */
+    public void start(int port, Codec... codecs) throws IOException {
+        CompressorRegistry compressors = CompressorRegistry.newEmptyInstance();
+        compressors.register(new Codec.Gzip());
+        compressors.register(Codec.Identity.NONE);
+        DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+        for (Codec codec : codecs) {
+            compressors.register(codec);
+            decompressors = decompressors.with(codec, true);
+        }
         server = ServerBuilder.forPort(port)
                 .addService(new V1PDPServiceImpl())
+                .compressorRegistry(compressors)
+                .decompressorRegistry(decompressors)
                 .build()
                 .start();
 
@@ -76,12 +101,16 @@ public class AZServer {
                                        io.grpc.stub.StreamObserver<AuthorizationCheck.AuthorizationCheckResponse> responseObserver) {
             boolean decision = request.getRequestID().hashCode() % 2 == 0; // Mock decision logic
 
-            AuthorizationCheck.AuthorizationCheckResponse response = AuthorizationCheck.AuthorizationCheckResponse.newBuilder()
+            AuthorizationCheck.AuthorizationCheckResponse.Builder response = AuthorizationCheck.AuthorizationCheckResponse.newBuilder()
                     .setDecision(decision)
-                    .setRequestID(request.getRequestID())
-                    .build();
+                    .setRequestID(request.getRequestID());
+            for (AuthorizationCheck.EvaluationRequest evaluation : request.getEvaluationsList()) {
+                response.addEvaluations(AuthorizationCheck.EvaluationResponse.newBuilder()
+                        .setDecision(evaluation.getRequestID().hashCode() % 2 == 0)
+                        .setRequestID(evaluation.getRequestID()));
+            }
 
-            responseObserver.onNext(response);
+            responseObserver.onNext(response.build());
             responseObserver.onCompleted();
         }
     }
@@ -0,0 +1,105 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+/**
+ * Timing of a completed RPC to the PDP, reported to the {@link Tracer}.
+ */
+public final class Span {
+    private final TraceContext context;
+    private final long parentSpanId;
+    private final String method;
+    private final long startEpochMicros;
+    private final long durationNanos;
+    private final String statusCode;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param context          The context of the span, propagated to the PDP.
+     * @param parentSpanId     The span ID of the upstream span, or 0 if the span is a root.
+     * @param method           The full gRPC method name.
+     * @param startEpochMicros The epoch micros the call started at.
+     * @param durationNanos    The duration of the call.
+     * @param statusCode       The gRPC status code the call completed with.
+     */
+    public Span(TraceContext context, long parentSpanId, String method, long startEpochMicros,
+                long durationNanos, String statusCode) {
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.method = method;
+        this.startEpochMicros = startEpochMicros;
+        this.durationNanos = durationNanos;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Gets the context of the span.
+     *
+     * @return The trace context sent to the PDP.
+     */
+    public TraceContext getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the span ID of the upstream span.
+     *
+     * @return The parent span ID, or 0 if the span is a root.
+     */
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * Gets the gRPC method.
+     *
+     * @return The full method name.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the time the call started at.
+     *
+     * @return The epoch micros.
+     */
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+
+    /**
+     * Gets the duration of the call, from its start to the reception of its status.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Gets the status of the call.
+     *
+     * @return The gRPC status code, such as OK or UNAVAILABLE.
+     */
+    public String getStatusCode() {
+        return statusCode;
+    }
+}
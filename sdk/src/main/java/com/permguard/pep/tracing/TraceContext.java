@@ -0,0 +1,201 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+/**
+ * W3C trace context of a span, as carried by the {@code traceparent} header.
+ */
+public final class TraceContext {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+    private final String traceState;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param traceIdHigh The high 64 bits of the trace ID.
+     * @param traceIdLow  The low 64 bits of the trace ID.
+     * @param spanId      The span ID.
+     * @param sampled     Whether the trace is sampled.
+     * @param traceState  The vendor specific {@code tracestate} header, or null if there is none.
+     */
+    public TraceContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled, String traceState) {
+        if ((traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+            throw new IllegalArgumentException("The trace ID and the span ID must not be zero.");
+        }
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+        this.traceState = traceState;
+    }
+
+    /**
+     * Parses a {@code traceparent} header.
+     *
+     * @param traceparent The header value.
+     * @param traceState  The {@code tracestate} header value, or null if there is none.
+     * @return The trace context, or null if the header is not a valid version 00 traceparent.
+     */
+    public static TraceContext parse(String traceparent, String traceState) {
+        if (traceparent == null || traceparent.length() != TRACEPARENT_LENGTH
+                || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-'
+                || !traceparent.startsWith("00")
+                || !isLowerHex(traceparent, 3, 35) || !isLowerHex(traceparent, 36, 52) || !isLowerHex(traceparent, 53, 55)) {
+            return null;
+        }
+        long high = Long.parseUnsignedLong(traceparent, 3, 19, 16);
+        long low = Long.parseUnsignedLong(traceparent, 19, 35, 16);
+        long span = Long.parseUnsignedLong(traceparent, 36, 52, 16);
+        int flags = Integer.parseInt(traceparent, 53, 55, 16);
+        if ((high == 0 && low == 0) || span == 0) {
+            return null;
+        }
+        return new TraceContext(high, low, span, (flags & 1) != 0, traceState);
+    }
+
+    /**
+     * Creates the context of a child span, in the same trace.
+     *
+     * @param childSpanId The span ID of the child, not zero.
+     * @return The child context.
+     */
+    public TraceContext child(long childSpanId) {
+        return new TraceContext(traceIdHigh, traceIdLow, childSpanId, sampled, traceState);
+    }
+
+    /**
+     * Gets the high 64 bits of the trace ID.
+     *
+     * @return The high bits of the trace ID.
+     */
+    public long getTraceIdHigh() {
+        return traceIdHigh;
+    }
+
+    /**
+     * Gets the low 64 bits of the trace ID.
+     *
+     * @return The low bits of the trace ID.
+     */
+    public long getTraceIdLow() {
+        return traceIdLow;
+    }
+
+    /**
+     * Gets the span ID.
+     *
+     * @return The span ID.
+     */
+    public long getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Gets the trace ID as 32 lowercase hex characters.
+     *
+     * @return The trace ID.
+     */
+    public String getTraceId() {
+        char[] chars = new char[32];
+        writeHex(chars, 0, traceIdHigh);
+        writeHex(chars, 16, traceIdLow);
+        return new String(chars);
+    }
+
+    /**
+     * Gets the span ID as 16 lowercase hex characters.
+     *
+     * @return The span ID.
+     */
+    public String getSpanIdHex() {
+        char[] chars = new char[16];
+        writeHex(chars, 0, spanId);
+        return new String(chars);
+    }
+
+    /**
+     * Checks whether the trace is sampled.
+     *
+     * @return True if the sampled flag is set.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Gets the vendor specific trace state.
+     *
+     * @return The {@code tracestate} header, or null if there is none.
+     */
+    public String getTraceState() {
+        return traceState;
+    }
+
+    /**
+     * Formats the context as a version 00 {@code traceparent} header.
+     *
+     * @return The header value.
+     */
+    public String toTraceparent() {
+        char[] chars = new char[TRACEPARENT_LENGTH];
+        chars[0] = '0';
+        chars[1] = '0';
+        chars[2] = '-';
+        writeHex(chars, 3, traceIdHigh);
+        writeHex(chars, 19, traceIdLow);
+        chars[35] = '-';
+        writeHex(chars, 36, spanId);
+        chars[52] = '-';
+        chars[53] = '0';
+        chars[54] = sampled ? '1' : '0';
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+
+    /**
+     * Checks a range holds lowercase hex digits only, as the number parsers also accept signs and uppercase.
+     */
+    private static boolean isLowerHex(String value, int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+}
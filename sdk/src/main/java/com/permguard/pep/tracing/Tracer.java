@@ -0,0 +1,62 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider bridging the {@link TracingInterceptor} to a tracing system.
+ * <p>
+ * Implementations are registered in {@code META-INF/services/com.permguard.pep.tracing.Tracer}, or set
+ * explicitly on the configuration of the client. Both methods are called on the hot path of every RPC
+ * and must not block.
+ */
+public interface Tracer {
+
+    /**
+     * Gets the context of the span the calling thread is working on, typically the one of the upstream request.
+     *
+     * @return The current trace context, or null to start a new trace.
+     */
+    TraceContext currentContext();
+
+    /**
+     * Records a completed span. Only called for sampled traces.
+     *
+     * @param span The span.
+     */
+    void onSpanEnd(Span span);
+
+    /**
+     * Loads the first tracer registered with the {@link ServiceLoader}.
+     *
+     * @return The tracer, or null if none is registered.
+     */
+    static Tracer load() {
+        Iterator<Tracer> tracers = ServiceLoader.load(Tracer.class).iterator();
+        try {
+            return tracers.hasNext() ? tracers.next() : null;
+        } catch (ServiceConfigurationError e) {
+            System.getLogger(Tracer.class.getName()).log(System.Logger.Level.WARNING, "Unable to load the tracer", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Client interceptor propagating the W3C trace context to the PDP and timing each call.
+ * <p>
+ * Each call gets a child span of the context returned by the {@link Tracer}, or a new sampled root span when
+ * there is none. The span is sent in the {@code traceparent} header, along with the {@code tracestate} header
+ * of the parent, and is reported to the tracer once the call is closed.
+ */
+public class TracingInterceptor implements ClientInterceptor {
+
+    static final Metadata.Key<String> TRACEPARENT = Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> TRACESTATE = Metadata.Key.of("tracestate", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final System.Logger LOGGER = System.getLogger(TracingInterceptor.class.getName());
+
+    private final Tracer tracer;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param tracer The tracer providing the parent contexts and recording the spans.
+     */
+    public TracingInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        TraceContext parent = currentContext();
+        TraceContext context = parent != null ? parent.child(nextId()) : new TraceContext(nextId(), nextId(), nextId(), true, null);
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                headers.put(TRACEPARENT, context.toTraceparent());
+                if (context.getTraceState() != null) {
+                    headers.put(TRACESTATE, context.getTraceState());
+                }
+                if (!context.isSampled()) {
+                    super.start(responseListener, headers);
+                    return;
+                }
+                long startEpochMicros = System.currentTimeMillis() * 1000;
+                long startNanos = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        record(new Span(context, parent != null ? parent.getSpanId() : 0, method.getFullMethodName(),
+                                startEpochMicros, System.nanoTime() - startNanos, status.getCode().name()));
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private TraceContext currentContext() {
+        try {
+            return tracer.currentContext();
+        } catch (RuntimeException e) {
+            // Without a usable parent the call starts a new trace rather than failing.
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to get the current trace context", e);
+            return null;
+        }
+    }
+
+    private void record(Span span) {
+        try {
+            tracer.onSpanEnd(span);
+        } catch (RuntimeException e) {
+            // A faulty tracer must not fail the authorization check it observes.
+            LOGGER.log(System.Logger.Level.WARNING, "Unable to record the span of " + span.getMethod(), e);
+        }
+    }
+
+    private static long nextId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+}
@@ -0,0 +1,404 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Action;
+import com.permguard.pep.model.request.Entities;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.request.PolicyStore;
+import com.permguard.pep.model.request.Principal;
+import com.permguard.pep.model.request.Resource;
+import com.permguard.pep.model.request.Subject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an {@link AZRequest} from JSON without reflection.
+ * <p>
+ * The streaming parser walks the document and calls the model constructors directly, so no databinding metadata
+ * is needed, which keeps native images free of reflection configuration for the model. It accepts the same
+ * documents as binding {@link AZRequest} with a default {@code ObjectMapper} and builds the same values: objects
+ * become {@link LinkedHashMap}s, arrays {@link ArrayList}s, integers the smallest of Integer, Long and BigInteger
+ * and other numbers Doubles. Unknown properties are rejected.
+ */
+public final class AZRequestReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private AZRequestReader() {
+    }
+
+    /**
+     * Reads a request from a JSON string.
+     *
+     * @param json The JSON document.
+     * @return The request, or null if the document is the JSON null.
+     * @throws IOException If the document is not a valid request.
+     */
+    public static AZRequest read(String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads a request from a slice of UTF-8 encoded JSON.
+     *
+     * @param json   The buffer holding the JSON document.
+     * @param offset The offset of the document in the buffer.
+     * @param length The length of the document.
+     * @return The request, or null if the document is the JSON null.
+     * @throws IOException If the document is not a valid request.
+     */
+    public static AZRequest read(byte[] json, int offset, int length) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json, offset, length)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads a request from a stream of JSON. The stream is not closed.
+     *
+     * @param json The stream holding the JSON document.
+     * @return The request, or null if the document is the JSON null.
+     * @throws IOException If the stream cannot be read or the document is not a valid request.
+     */
+    public static AZRequest read(InputStream json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return read(parser);
+        }
+    }
+
+    private static AZRequest read(JsonParser parser) throws IOException {
+        if (parser.nextToken() == null) {
+            throw new JsonParseException(parser, "No content to map due to end-of-input");
+        }
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        String requestId = null;
+        AZModel model = null;
+        Subject subject = null;
+        Resource resource = null;
+        Action action = null;
+        Map<String, Object> context = null;
+        List<Evaluation> evaluations = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "request_id" -> requestId = readString(parser);
+                case "authorization_model" -> model = readModel(parser);
+                case "subject" -> subject = readSubject(parser);
+                case "resource" -> resource = readResource(parser);
+                case "action" -> action = readAction(parser);
+                case "context" -> context = readMap(parser);
+                case "evaluations" -> evaluations = readEvaluations(parser);
+                default -> throw unknown(parser, name, AZRequest.class);
+            }
+        }
+        return new AZRequest(requestId, model, subject, resource, action, context, evaluations);
+    }
+
+    private static AZModel readModel(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        long zoneId = 0;
+        PolicyStore policyStore = null;
+        Principal principal = null;
+        Entities entities = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "zone_id" -> zoneId = readLong(parser);
+                case "policy_store" -> policyStore = readPolicyStore(parser);
+                case "principal" -> principal = readPrincipal(parser);
+                case "entities" -> entities = readEntities(parser);
+                default -> throw unknown(parser, name, AZModel.class);
+            }
+        }
+        return new AZModel(zoneId, policyStore, principal, entities);
+    }
+
+    private static PolicyStore readPolicyStore(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        PolicyStore policyStore = new PolicyStore();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "kind" -> policyStore.setKind(readSymbol(parser));
+                case "id" -> policyStore.setId(readString(parser));
+                default -> throw unknown(parser, name, PolicyStore.class);
+            }
+        }
+        return policyStore;
+    }
+
+    private static Principal readPrincipal(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Principal principal = new Principal();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "type" -> principal.setType(readSymbol(parser));
+                case "id" -> principal.setId(readString(parser));
+                case "source" -> principal.setSource(readSymbol(parser));
+                case "identity_token" -> principal.setIdentityToken(readString(parser));
+                case "access_token" -> principal.setAccessToken(readString(parser));
+                default -> throw unknown(parser, name, Principal.class);
+            }
+        }
+        return principal;
+    }
+
+    private static Entities readEntities(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Entities entities = new Entities();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "schema" -> entities.setSchema(readSymbol(parser));
+                case "items" -> entities.setItems(readItems(parser));
+                default -> throw unknown(parser, name, Entities.class);
+            }
+        }
+        return entities;
+    }
+
+    private static Subject readSubject(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Subject subject = new Subject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "type" -> subject.setType(readSymbol(parser));
+                case "id" -> subject.setId(readString(parser));
+                case "source" -> subject.setSource(readSymbol(parser));
+                case "properties" -> subject.setProperties(readMap(parser));
+                default -> throw unknown(parser, name, Subject.class);
+            }
+        }
+        return subject;
+    }
+
+    private static Resource readResource(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Resource resource = new Resource();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "type" -> resource.setType(readSymbol(parser));
+                case "id" -> resource.setId(readString(parser));
+                case "properties" -> resource.setProperties(readMap(parser));
+                default -> throw unknown(parser, name, Resource.class);
+            }
+        }
+        return resource;
+    }
+
+    private static Action readAction(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Action action = new Action();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "name" -> action.setName(readSymbol(parser));
+                case "properties" -> action.setProperties(readMap(parser));
+                default -> throw unknown(parser, name, Action.class);
+            }
+        }
+        return action;
+    }
+
+    private static List<Evaluation> readEvaluations(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectArray(parser);
+        List<Evaluation> evaluations = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            evaluations.add(readEvaluation(parser));
+        }
+        return evaluations;
+    }
+
+    private static Evaluation readEvaluation(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Evaluation evaluation = new Evaluation();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "requestId" -> evaluation.setRequestId(readString(parser));
+                case "subject" -> evaluation.setSubject(readSubject(parser));
+                case "resource" -> evaluation.setResource(readResource(parser));
+                case "action" -> evaluation.setAction(readAction(parser));
+                case "context" -> evaluation.setContext(readMap(parser));
+                default -> throw unknown(parser, name, Evaluation.class);
+            }
+        }
+        return evaluation;
+    }
+
+    private static List<Map<String, Object>> readItems(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectArray(parser);
+        List<Map<String, Object>> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            items.add(readMap(parser));
+        }
+        return items;
+    }
+
+    private static Map<String, Object> readMap(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(parser);
+        Map<String, Object> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            map.put(name, readValue(parser));
+        }
+        return map;
+    }
+
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                return readMap(parser);
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(parser));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + parser.currentToken());
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        throw new JsonParseException(parser, "Expected a string but found " + token);
+    }
+
+    // Types, names, sources and schemas repeat across requests, so they share one instance from the symbol table.
+    private static String readSymbol(JsonParser parser) throws IOException {
+        return Symbols.intern(readString(parser));
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getValueAsLong();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException(parser, "Expected a long but found \"" + parser.getText() + "\"", e);
+            }
+        }
+        throw new JsonParseException(parser, "Expected a long but found " + token);
+    }
+
+    private static void expectObject(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected an object but found " + parser.currentToken());
+        }
+    }
+
+    private static void expectArray(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array but found " + parser.currentToken());
+        }
+    }
+
+    private static JsonParseException unknown(JsonParser parser, String name, Class<?> type) {
+        return new JsonParseException(parser, "Unrecognized field \"" + name + "\" of " + type.getSimpleName());
+    }
+}
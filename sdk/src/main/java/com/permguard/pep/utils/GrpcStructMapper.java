@@ -19,18 +19,36 @@
 package com.permguard.pep.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.NullValue;
 import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
 import com.google.protobuf.util.JsonFormat;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Utility for converting between gRPC Struct and Java Map.
+ * <p>
+ * Maps with string keys, collections, arrays, strings, booleans and the JDK numbers are converted directly.
+ * Other objects are written by Jackson and parsed back by JsonFormat, which are then loaded on first use, so the
+ * common conversions neither print nor parse JSON. The result is the one of that round trip: numbers become
+ * doubles, non-finite ones strings, and byte arrays Base64 strings.
  */
 public class GrpcStructMapper {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Value NULL = Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build();
+    private static final Value TRUE = Value.newBuilder().setBoolValue(true).build();
+    private static final Value FALSE = Value.newBuilder().setBoolValue(false).build();
 
     /**
      * Converts a Map<String, Object> to a Protobuf Struct.
@@ -39,14 +57,7 @@ public class GrpcStructMapper {
      * @return A Protobuf Struct representation of the map.
      */
     public static Struct toGrpcStruct(Map<String, Object> map) {
-        try {
-            String json = objectMapper.writeValueAsString(map);
-            Struct.Builder structBuilder = Struct.newBuilder();
-            JsonFormat.parser().merge(json, structBuilder);
-            return structBuilder.build();
-        } catch (IOException e) {
-            throw new RuntimeException("❌ Failed to convert Map to Struct", e);
-        }
+        return structOf(map);
     }
 
     /**
@@ -56,11 +67,141 @@ public class GrpcStructMapper {
      * @return A Java Map representation of the Struct.
      */
     public static Map<String, Object> fromGrpcStruct(Struct struct) {
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(16, struct.getFieldsCount() * 4 / 3 + 1));
+        for (Map.Entry<String, Value> field : struct.getFieldsMap().entrySet()) {
+            map.put(field.getKey(), fromValue(field.getValue()));
+        }
+        return map;
+    }
+
+    private static Struct structOf(Map<?, ?> map) {
+        if (!hasStringKeys(map)) {
+            return toJsonValue(map).getStructValue();
+        }
+        Struct.Builder builder = Struct.newBuilder();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            builder.putFields((String) entry.getKey(), toValue(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Converts a single Java value to a Protobuf Value, the way it is sent to the PDP.
+     * Only JDK types are converted directly, anything else, including enums, paths and Jackson annotated beans,
+     * is written by Jackson and parsed back, so it keeps the form Jackson gives it.
+     */
+    static Value toValue(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof String string) {
+            return Value.newBuilder().setStringValue(string).build();
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? TRUE : FALSE;
+        }
+        if (isJdkNumber(value)) {
+            double number = doubleOf((Number) value);
+            if (!Double.isFinite(number) && (value instanceof Double || value instanceof Float)) {
+                // JSON has no literal for these, Jackson writes them as the strings "NaN", "Infinity" and "-Infinity".
+                return Value.newBuilder().setStringValue(value.toString()).build();
+            }
+            return Value.newBuilder().setNumberValue(number).build();
+        }
+        if (value instanceof Character) {
+            return Value.newBuilder().setStringValue(value.toString()).build();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return Value.newBuilder().setStructValue(structOf(map)).build();
+        }
+        if (value instanceof Collection<?> collection) {
+            ListValue.Builder list = ListValue.newBuilder();
+            for (Object item : collection) {
+                list.addValues(toValue(item));
+            }
+            return Value.newBuilder().setListValue(list).build();
+        }
+        if (value instanceof byte[] bytes) {
+            return Value.newBuilder().setStringValue(Base64.getEncoder().encodeToString(bytes)).build();
+        }
+        if (value instanceof char[] chars) {
+            return Value.newBuilder().setStringValue(new String(chars)).build();
+        }
+        if (value.getClass().isArray()) {
+            ListValue.Builder list = ListValue.newBuilder();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                list.addValues(toValue(Array.get(value, i)));
+            }
+            return Value.newBuilder().setListValue(list).build();
+        }
+        return toJsonValue(value);
+    }
+
+    /**
+     * Tells whether a value is one of the JDK numbers converted without Jackson.
+     */
+    static boolean isJdkNumber(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof BigDecimal
+                || value instanceof BigInteger;
+    }
+
+    /**
+     * Gets the double a JDK number is sent as. Floats are written in their shortest decimal form, so 0.1f is 0.1.
+     */
+    static double doubleOf(Number number) {
+        return number instanceof Float ? Double.parseDouble(number.toString()) : number.doubleValue();
+    }
+
+    /**
+     * Tells whether every key of a map is a string, otherwise the map is converted by Jackson.
+     */
+    static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Value toJsonValue(Object value) {
         try {
-            String json = JsonFormat.printer().print(struct);
-            return objectMapper.readValue(json, Map.class);
+            Value.Builder builder = Value.newBuilder();
+            JacksonHolder.PARSER.merge(JacksonHolder.MAPPER.writeValueAsString(value), builder);
+            return builder.build();
         } catch (IOException e) {
-            throw new RuntimeException("❌ Failed to convert Struct to Map", e);
+            throw new RuntimeException("❌ Failed to convert Map to Struct", e);
         }
     }
+
+    private static Object fromValue(Value value) {
+        switch (value.getKindCase()) {
+            case STRING_VALUE:
+                return value.getStringValue();
+            case NUMBER_VALUE:
+                return value.getNumberValue();
+            case BOOL_VALUE:
+                return value.getBoolValue();
+            case STRUCT_VALUE:
+                return fromGrpcStruct(value.getStructValue());
+            case LIST_VALUE:
+                List<Object> list = new ArrayList<>(value.getListValue().getValuesCount());
+                for (Value item : value.getListValue().getValuesList()) {
+                    list.add(fromValue(item));
+                }
+                return list;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Holds the Jackson mapper and the JSON parser, so they are only loaded when an object needs them.
+     */
+    private static final class JacksonHolder {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+        private static final JsonFormat.Parser PARSER = JsonFormat.parser();
+    }
 }
@@ -0,0 +1,219 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.utils;
+
+/**
+ * Streaming 128-bit hash built on SipHash-2-4 with a 128-bit output.
+ * Values are fed one at a time, so callers never need to materialize an intermediate buffer.
+ * <p>
+ * With a secret random key the result cannot be forced to collide by whoever controls the input, so a keyed
+ * hasher is safe to use as the whole key of a security-relevant cache. The unkeyed constructors are meant for
+ * trusted input only.
+ */
+public final class Hash128 {
+
+    private long v0;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long length;
+    private boolean finished;
+    private long high;
+    private long low;
+
+    /**
+     * Creates a hasher with a zero key.
+     */
+    public Hash128() {
+        this(0L, 0L);
+    }
+
+    /**
+     * Creates a hasher with the given seed.
+     *
+     * @param seed The seed, used as both halves of the key.
+     */
+    public Hash128(long seed) {
+        this(seed, seed);
+    }
+
+    /**
+     * Creates a hasher with a 128-bit key.
+     *
+     * @param key0 The first half of the key.
+     * @param key1 The second half of the key.
+     */
+    public Hash128(long key0, long key1) {
+        this.v0 = key0 ^ 0x736f6d6570736575L;
+        this.v1 = key1 ^ 0x646f72616e646f6dL ^ 0xee;
+        this.v2 = key0 ^ 0x6c7967656e657261L;
+        this.v3 = key1 ^ 0x7465646279746573L;
+    }
+
+    /**
+     * Feeds a 64-bit value.
+     *
+     * @param value The value to hash.
+     * @return The current hasher instance.
+     */
+    public Hash128 putLong(long value) {
+        v3 ^= value;
+        round();
+        round();
+        v0 ^= value;
+        length += 8;
+        finished = false;
+        return this;
+    }
+
+    /**
+     * Feeds a 32-bit value.
+     *
+     * @param value The value to hash.
+     * @return The current hasher instance.
+     */
+    public Hash128 putInt(int value) {
+        return putLong(value & 0xffffffffL);
+    }
+
+    /**
+     * Feeds a byte range.
+     *
+     * @param bytes  The source array.
+     * @param offset The offset of the first byte.
+     * @param count  The number of bytes to hash.
+     * @return The current hasher instance.
+     */
+    public Hash128 putBytes(byte[] bytes, int offset, int count) {
+        int end = offset + count;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            long word = (bytes[i] & 0xffL)
+                    | (bytes[i + 1] & 0xffL) << 8
+                    | (bytes[i + 2] & 0xffL) << 16
+                    | (bytes[i + 3] & 0xffL) << 24
+                    | (bytes[i + 4] & 0xffL) << 32
+                    | (bytes[i + 5] & 0xffL) << 40
+                    | (bytes[i + 6] & 0xffL) << 48
+                    | (bytes[i + 7] & 0xffL) << 56;
+            putLong(word);
+        }
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += 8) {
+            tail |= (bytes[i] & 0xffL) << shift;
+        }
+        return putLong(tail ^ ((long) count << 56));
+    }
+
+    /**
+     * Feeds the UTF-16 code units of a string, prefixed by its length.
+     *
+     * @param value The string to hash.
+     * @return The current hasher instance.
+     */
+    public Hash128 putString(CharSequence value) {
+        int count = value.length();
+        putInt(count);
+        int i = 0;
+        for (; i + 4 <= count; i += 4) {
+            putLong(value.charAt(i)
+                    | (long) value.charAt(i + 1) << 16
+                    | (long) value.charAt(i + 2) << 32
+                    | (long) value.charAt(i + 3) << 48);
+        }
+        if (i < count) {
+            long tail = 0;
+            for (int shift = 0; i < count; i++, shift += 16) {
+                tail |= (long) value.charAt(i) << shift;
+            }
+            putLong(tail);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the high 64 bits of the hash of everything fed so far.
+     *
+     * @return The high half of the hash.
+     */
+    public long high() {
+        finish();
+        return high;
+    }
+
+    /**
+     * Returns the low 64 bits of the hash of everything fed so far.
+     *
+     * @return The low half of the hash.
+     */
+    public long low() {
+        finish();
+        return low;
+    }
+
+    private void round() {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13);
+        v1 ^= v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16);
+        v3 ^= v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21);
+        v3 ^= v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17);
+        v1 ^= v2;
+        v2 = Long.rotateLeft(v2, 32);
+    }
+
+    // Finalizes a copy of the state, so more values can still be fed after reading the hash.
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        long s0 = v0;
+        long s1 = v1;
+        long s2 = v2;
+        long s3 = v3;
+        long last = length << 56;
+        v3 ^= last;
+        round();
+        round();
+        v0 ^= last;
+        v2 ^= 0xee;
+        round();
+        round();
+        round();
+        round();
+        high = v0 ^ v1 ^ v2 ^ v3;
+        v1 ^= 0xdd;
+        round();
+        round();
+        round();
+        round();
+        low = v0 ^ v1 ^ v2 ^ v3;
+        v0 = s0;
+        v1 = s1;
+        v2 = s2;
+        v3 = s3;
+        finished = true;
+    }
+}
@@ -0,0 +1,417 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.utils;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Canonical 128-bit fingerprint of an authorization request, used as a stable key for caching and deduplication.
+ * <p>
+ * Fields are streamed straight into a {@link Hash128} and map entries are visited in key order, so the result
+ * does not depend on map iteration order and no JSON or protobuf encoding is produced. The top-level request ID
+ * is not part of the fingerprint. An {@link AZRequest} and the AuthorizationCheckRequest it maps to have the
+ * same fingerprint: null and absent values, null and empty maps and all numeric types are normalized the way
+ * the PDP sees them.
+ * <p>
+ * {@link #of(AZRequest)} uses an unkeyed hasher. Where a matching fingerprint is trusted in place of the request,
+ * as in the decision cache, feed the request into a hasher with a secret key instead.
+ */
+public final class RequestFingerprint {
+
+    private static final int TAG_ABSENT = 0;
+    private static final int TAG_NULL = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_TRUE = 3;
+    private static final int TAG_NUMBER = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_LIST = 6;
+    private static final int TAG_STRUCT = 7;
+    private static final int TAG_PRESENT = 8;
+
+    private static final Comparator<Map.Entry<?, ?>> BY_KEY =
+            Comparator.comparing(entry -> String.valueOf(entry.getKey()));
+
+    private RequestFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a request.
+     *
+     * @param request The request.
+     * @return The 128-bit fingerprint.
+     */
+    public static Hash128 of(AZRequest request) {
+        Hash128 hash = new Hash128();
+        hash(request, hash);
+        return hash;
+    }
+
+    /**
+     * Computes the fingerprint of a gRPC request.
+     *
+     * @param request The gRPC request.
+     * @return The 128-bit fingerprint.
+     */
+    public static Hash128 of(AuthorizationCheck.AuthorizationCheckRequest request) {
+        Hash128 hash = new Hash128();
+        hash(request, hash);
+        return hash;
+    }
+
+    /**
+     * Feeds the canonical form of a request into a hasher.
+     *
+     * @param request The request.
+     * @param hash    The hasher.
+     */
+    public static void hash(AZRequest request, Hash128 hash) {
+        hashModel(request.getAuthorizationModel(), hash);
+        hashSubject(request.getSubject(), hash);
+        hashResource(request.getResource(), hash);
+        hashAction(request.getAction(), hash);
+        hashMap(request.getContext(), hash);
+        List<Evaluation> evaluations = request.getEvaluations();
+        int count = evaluations != null ? evaluations.size() : 0;
+        hash.putInt(count);
+        for (int i = 0; i < count; i++) {
+            Evaluation evaluation = evaluations.get(i);
+            putRequired(evaluation.getRequestId(), hash);
+            hashSubject(evaluation.getSubject(), hash);
+            hashResource(evaluation.getResource(), hash);
+            hashAction(evaluation.getAction(), hash);
+            hashMap(evaluation.getContext(), hash);
+        }
+    }
+
+    /**
+     * Feeds the canonical form of a gRPC request into a hasher.
+     *
+     * @param request The gRPC request.
+     * @param hash    The hasher.
+     */
+    public static void hash(AuthorizationCheck.AuthorizationCheckRequest request, Hash128 hash) {
+        hashModel(request.hasAuthorizationModel() ? request.getAuthorizationModel() : null, hash);
+        hashSubject(request.hasSubject() ? request.getSubject() : null, hash);
+        hashResource(request.hasResource() ? request.getResource() : null, hash);
+        hashAction(request.hasAction() ? request.getAction() : null, hash);
+        hashStruct(request.hasContext() ? request.getContext() : null, hash);
+        int count = request.getEvaluationsCount();
+        hash.putInt(count);
+        for (int i = 0; i < count; i++) {
+            AuthorizationCheck.EvaluationRequest evaluation = request.getEvaluations(i);
+            hash.putString(evaluation.getRequestID());
+            hashSubject(evaluation.hasSubject() ? evaluation.getSubject() : null, hash);
+            hashResource(evaluation.hasResource() ? evaluation.getResource() : null, hash);
+            hashAction(evaluation.hasAction() ? evaluation.getAction() : null, hash);
+            hashStruct(evaluation.hasContext() ? evaluation.getContext() : null, hash);
+        }
+    }
+
+    /**
+     * Feeds the canonical form of an authorization model into a hasher.
+     *
+     * @param model The authorization model, or null.
+     * @param hash  The hasher.
+     */
+    public static void hashModel(AZModel model, Hash128 hash) {
+        if (model == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT).putLong(model.getZoneId());
+        PolicyStore store = model.getPolicyStore();
+        putRequired(store != null ? store.getKind() : null, hash);
+        putRequired(store != null ? store.getId() : null, hash);
+        Principal principal = model.getPrincipal();
+        if (principal == null) {
+            hash.putInt(TAG_ABSENT);
+        } else {
+            hash.putInt(TAG_PRESENT);
+            putRequired(principal.getType(), hash);
+            putRequired(principal.getId(), hash);
+            putOptional(principal.getSource(), hash);
+            putOptional(principal.getIdentityToken(), hash);
+            putOptional(principal.getAccessToken(), hash);
+        }
+        Entities entities = model.getEntities();
+        if (entities == null) {
+            hash.putInt(TAG_ABSENT);
+        } else {
+            hash.putInt(TAG_PRESENT);
+            putRequired(entities.getSchema(), hash);
+            List<Map<String, Object>> items = entities.getItems();
+            int count = items != null ? items.size() : 0;
+            hash.putInt(count);
+            for (int i = 0; i < count; i++) {
+                hashMap(items.get(i), hash);
+            }
+        }
+    }
+
+    /**
+     * Feeds the canonical form of a gRPC authorization model into a hasher.
+     *
+     * @param model The gRPC authorization model, or null.
+     * @param hash  The hasher.
+     */
+    public static void hashModel(AuthorizationCheck.AuthorizationModelRequest model, Hash128 hash) {
+        if (model == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT).putLong(model.getZoneID());
+        hash.putString(model.getPolicyStore().getKind());
+        hash.putString(model.getPolicyStore().getID());
+        if (!model.hasPrincipal()) {
+            hash.putInt(TAG_ABSENT);
+        } else {
+            AuthorizationCheck.Principal principal = model.getPrincipal();
+            hash.putInt(TAG_PRESENT);
+            hash.putString(principal.getType());
+            hash.putString(principal.getID());
+            putOptional(principal.hasSource() ? principal.getSource() : null, hash);
+            putOptional(principal.hasIdentityToken() ? principal.getIdentityToken() : null, hash);
+            putOptional(principal.hasAccessToken() ? principal.getAccessToken() : null, hash);
+        }
+        if (!model.hasEntities()) {
+            hash.putInt(TAG_ABSENT);
+        } else {
+            AuthorizationCheck.Entities entities = model.getEntities();
+            hash.putInt(TAG_PRESENT);
+            hash.putString(entities.getSchema());
+            int count = entities.getItemsCount();
+            hash.putInt(count);
+            for (int i = 0; i < count; i++) {
+                hashStruct(entities.getItems(i), hash);
+            }
+        }
+    }
+
+    /**
+     * Feeds the canonical form of a property map into a hasher; a null map hashes like an empty one.
+     *
+     * @param map  The map, or null.
+     * @param hash The hasher.
+     */
+    public static void hashMap(Map<String, ?> map, Hash128 hash) {
+        hashEntries(map, hash);
+    }
+
+    /**
+     * Feeds the canonical form of a Struct into a hasher; an absent Struct hashes like an empty one.
+     *
+     * @param struct The Struct, or null.
+     * @param hash   The hasher.
+     */
+    public static void hashStruct(Struct struct, Hash128 hash) {
+        int size = struct != null ? struct.getFieldsCount() : 0;
+        hash.putInt(TAG_STRUCT).putInt(size);
+        if (size == 0) {
+            return;
+        }
+        Map<String, Value> fields = struct.getFieldsMap();
+        if (size == 1) {
+            for (Map.Entry<String, Value> entry : fields.entrySet()) {
+                hash.putString(entry.getKey());
+                hashValue(entry.getValue(), hash);
+            }
+            return;
+        }
+        String[] keys = fields.keySet().toArray(new String[size]);
+        Arrays.sort(keys);
+        for (String key : keys) {
+            hash.putString(key);
+            hashValue(fields.get(key), hash);
+        }
+    }
+
+    private static void hashSubject(Subject subject, Hash128 hash) {
+        if (subject == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        putRequired(subject.getType(), hash);
+        putRequired(subject.getId(), hash);
+        putOptional(subject.getSource(), hash);
+        hashMap(subject.getProperties(), hash);
+    }
+
+    private static void hashSubject(AuthorizationCheck.Subject subject, Hash128 hash) {
+        if (subject == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        hash.putString(subject.getType());
+        hash.putString(subject.getID());
+        putOptional(subject.hasSource() ? subject.getSource() : null, hash);
+        hashStruct(subject.hasProperties() ? subject.getProperties() : null, hash);
+    }
+
+    private static void hashResource(Resource resource, Hash128 hash) {
+        if (resource == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        putRequired(resource.getType(), hash);
+        putRequired(resource.getId(), hash);
+        hashMap(resource.getProperties(), hash);
+    }
+
+    private static void hashResource(AuthorizationCheck.Resource resource, Hash128 hash) {
+        if (resource == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        hash.putString(resource.getType());
+        hash.putString(resource.getID());
+        hashStruct(resource.hasProperties() ? resource.getProperties() : null, hash);
+    }
+
+    private static void hashAction(Action action, Hash128 hash) {
+        if (action == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        putRequired(action.getName(), hash);
+        hashMap(action.getProperties(), hash);
+    }
+
+    private static void hashAction(AuthorizationCheck.Action action, Hash128 hash) {
+        if (action == null) {
+            hash.putInt(TAG_ABSENT);
+            return;
+        }
+        hash.putInt(TAG_PRESENT);
+        hash.putString(action.getName());
+        hashStruct(action.hasProperties() ? action.getProperties() : null, hash);
+    }
+
+    private static void hashValue(Object value, Hash128 hash) {
+        if (value == null) {
+            hash.putInt(TAG_NULL);
+        } else if (value instanceof String string) {
+            hash.putInt(TAG_STRING).putString(string);
+        } else if (value instanceof Boolean bool) {
+            hash.putInt(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (GrpcStructMapper.isJdkNumber(value)) {
+            double number = GrpcStructMapper.doubleOf((Number) value);
+            if (Double.isFinite(number)) {
+                // Struct numbers are doubles, so 1, 1L and 1.0 reach the PDP as the same value.
+                hash.putInt(TAG_NUMBER).putLong(Double.doubleToLongBits(number));
+            } else {
+                hashValue(GrpcStructMapper.toValue(value), hash);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            hashEntries(map, hash);
+        } else if (value instanceof List<?> list) {
+            int size = list.size();
+            hash.putInt(TAG_LIST).putInt(size);
+            for (int i = 0; i < size; i++) {
+                hashValue(list.get(i), hash);
+            }
+        } else if (value instanceof Collection<?> collection) {
+            hash.putInt(TAG_LIST).putInt(collection.size());
+            for (Object item : collection) {
+                hashValue(item, hash);
+            }
+        } else if (value instanceof Object[] array) {
+            hash.putInt(TAG_LIST).putInt(array.length);
+            for (Object item : array) {
+                hashValue(item, hash);
+            }
+        } else {
+            // Any other object is hashed in the form the mapper sends, e.g. a Date as the epoch millis Jackson writes.
+            hashValue(GrpcStructMapper.toValue(value), hash);
+        }
+    }
+
+    // Keys are hashed as the strings the mapper writes, so a nested map may have keys of any type.
+    private static void hashEntries(Map<?, ?> map, Hash128 hash) {
+        if (map != null && !GrpcStructMapper.hasStringKeys(map)) {
+            // Sent as Jackson writes it, e.g. with enum keys by name.
+            hashValue(GrpcStructMapper.toValue(map), hash);
+            return;
+        }
+        int size = map != null ? map.size() : 0;
+        hash.putInt(TAG_STRUCT).putInt(size);
+        if (size == 0) {
+            return;
+        }
+        if (size == 1 || map instanceof SortedMap<?, ?> sorted && sorted.comparator() == null
+                && sorted.firstKey() instanceof String) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                hash.putString(String.valueOf(entry.getKey()));
+                hashValue(entry.getValue(), hash);
+            }
+            return;
+        }
+        Map.Entry<?, ?>[] entries = map.entrySet().toArray(new Map.Entry<?, ?>[size]);
+        Arrays.sort(entries, BY_KEY);
+        for (Map.Entry<?, ?> entry : entries) {
+            hash.putString(String.valueOf(entry.getKey()));
+            hashValue(entry.getValue(), hash);
+        }
+    }
+
+    private static void hashValue(Value value, Hash128 hash) {
+        switch (value.getKindCase()) {
+            case STRING_VALUE -> hash.putInt(TAG_STRING).putString(value.getStringValue());
+            case BOOL_VALUE -> hash.putInt(value.getBoolValue() ? TAG_TRUE : TAG_FALSE);
+            case NUMBER_VALUE -> hash.putInt(TAG_NUMBER).putLong(Double.doubleToLongBits(value.getNumberValue()));
+            case STRUCT_VALUE -> hashStruct(value.getStructValue(), hash);
+            case LIST_VALUE -> {
+                ListValue list = value.getListValue();
+                int size = list.getValuesCount();
+                hash.putInt(TAG_LIST).putInt(size);
+                for (int i = 0; i < size; i++) {
+                    hashValue(list.getValues(i), hash);
+                }
+            }
+            default -> hash.putInt(TAG_NULL);
+        }
+    }
+
+    private static void putRequired(String value, Hash128 hash) {
+        hash.putString(value != null ? value : "");
+    }
+
+    private static void putOptional(String value, Hash128 hash) {
+        if (value == null) {
+            hash.putInt(TAG_ABSENT);
+        } else {
+            hash.putInt(TAG_PRESENT).putString(value);
+        }
+    }
+}
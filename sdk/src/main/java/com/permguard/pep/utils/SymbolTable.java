@@ -0,0 +1,106 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.google.protobuf.ByteString;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded table of identifiers backing {@link Symbols}, keeping a canonical String and its UTF-8 encoding per entry.
+ */
+final class SymbolTable {
+
+    private final ConcurrentMap<String, Symbol> table = new ConcurrentHashMap<>();
+    private final int maxSymbols;
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param maxSymbols The number of identifiers {@link #intern(String)} registers at most.
+     */
+    SymbolTable(int maxSymbols) {
+        this.maxSymbols = maxSymbols;
+    }
+
+    /**
+     * Registers an identifier, regardless of the table bound.
+     *
+     * @param value The identifier to register.
+     * @return The canonical instance of the identifier.
+     */
+    String register(String value) {
+        if (value == null) {
+            return null;
+        }
+        return table.computeIfAbsent(value, Symbol::new).value;
+    }
+
+    /**
+     * Gets the canonical instance of an identifier, registering it while the table has room.
+     *
+     * @param value The identifier.
+     * @return The canonical instance, or the value itself once the table is full.
+     */
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        Symbol symbol = table.get(value);
+        if (symbol == null && table.size() < maxSymbols) {
+            symbol = table.computeIfAbsent(value, Symbol::new);
+        }
+        return symbol != null ? symbol.value : value;
+    }
+
+    /**
+     * Gets the UTF-8 encoding of a registered identifier, without registering it.
+     *
+     * @param value The identifier.
+     * @return The shared encoding, or null if the identifier is not registered.
+     */
+    ByteString encodedOf(String value) {
+        if (value == null) {
+            return null;
+        }
+        Symbol symbol = table.get(value);
+        return symbol != null ? symbol.bytes : null;
+    }
+
+    /**
+     * Gets the number of registered identifiers.
+     *
+     * @return The number of registered identifiers.
+     */
+    int size() {
+        return table.size();
+    }
+
+    private static final class Symbol {
+        private final String value;
+        private final ByteString bytes;
+
+        private Symbol(String value) {
+            this.value = value;
+            this.bytes = ByteString.copyFromUtf8(value);
+        }
+    }
+}
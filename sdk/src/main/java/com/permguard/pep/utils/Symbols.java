@@ -0,0 +1,104 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.google.protobuf.ByteString;
+
+
+/**
+ * Process-wide symbol table for low-cardinality identifiers: subject, principal and resource types, action names,
+ * sources, policy store kinds and entity schemas.
+ * <p>
+ * Each symbol is registered once and keeps a canonical String together with its UTF-8 encoding, so large batches
+ * share one instance per identifier instead of one copy per request, and the mapper writes the encoded bytes of
+ * registered identifiers without converting the String again. The builders and {@link AZRequestReader} intern these
+ * identifiers automatically, while the mapper only looks them up. The table is bounded: once {@link #MAX_SYMBOLS}
+ * identifiers are interned, further values are used as they are. Identifiers with high cardinality, such as ids and
+ * tokens, should not be interned.
+ */
+public final class Symbols {
+
+    /** The maximum number of interned symbols. */
+    public static final int MAX_SYMBOLS = 4096;
+
+    private static final SymbolTable TABLE = new SymbolTable(MAX_SYMBOLS);
+
+    /** The default subject and principal type. */
+    public static final String USER = register("user");
+    /** The workload subject type. */
+    public static final String WORKLOAD = register("workload");
+    /** The policy store kind used by the builders. */
+    public static final String LEDGER = register("ledger");
+    /** The Cedar entities schema. */
+    public static final String CEDAR = register("cedar");
+
+    private Symbols() {
+    }
+
+    /**
+     * Registers the given identifiers, regardless of the table bound.
+     *
+     * @param values The identifiers to register.
+     */
+    public static void register(String... values) {
+        for (String value : values) {
+            register(value);
+        }
+    }
+
+    /**
+     * Registers an identifier, regardless of the table bound.
+     *
+     * @param value The identifier to register.
+     * @return The canonical instance of the identifier.
+     */
+    public static String register(String value) {
+        return TABLE.register(value);
+    }
+
+    /**
+     * Gets the canonical instance of an identifier, registering it while the table has room.
+     *
+     * @param value The identifier.
+     * @return The canonical instance, or the value itself once the table is full.
+     */
+    public static String intern(String value) {
+        return TABLE.intern(value);
+    }
+
+    /**
+     * Gets the UTF-8 encoding of a registered identifier. Unlike {@link #intern(String)}, it never registers the value.
+     *
+     * @param value The identifier.
+     * @return The shared encoding, or null if the identifier is not registered.
+     */
+    public static ByteString encodedOf(String value) {
+        return TABLE.encodedOf(value);
+    }
+
+    /**
+     * Gets the number of registered symbols.
+     *
+     * @return The number of registered symbols.
+     */
+    public static int size() {
+        return TABLE.size();
+    }
+}
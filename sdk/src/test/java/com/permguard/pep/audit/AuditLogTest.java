@@ -0,0 +1,98 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.audit;
+
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.response.AZResponse;
+import com.permguard.pep.model.response.EvaluationResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogTest {
+
+    @Test
+    void fallsBackToTheRequestedIdWhenTheResponseHasNone() {
+        List<AuditRecord> records = new ArrayList<>();
+        try (AuditLog log = new AuditLog(records::addAll, 16, 4)) {
+            AZRequest request = new AZRequest(null, null, null, null, null, null, List.of(
+                    new Evaluation("first", null, null, null, null),
+                    new Evaluation("second", null, null, null, null)));
+            AZResponse response = new AZResponse(true, "", null, List.of(
+                    new EvaluationResponse(true, "", null),
+                    new EvaluationResponse(false, "answered", null)));
+            log.log(request, response);
+        }
+        assertEquals(2, records.size());
+        assertEquals("first", records.get(0).getRequestId());
+        assertEquals("answered", records.get(1).getRequestId());
+    }
+
+    @Test
+    void wakesUpTheIdleDrainer() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        try (AuditLog log = new AuditLog(records -> written.countDown(), 16, 4)) {
+            // Lets the drainer find the ring empty and park.
+            Thread.sleep(50);
+            log.offer(record(1));
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void accountsForEveryRecordOfferedWhileClosing() throws Exception {
+        AtomicLong sunk = new AtomicLong();
+        AuditLog log = new AuditLog(records -> sunk.addAndGet(records.size()), 1 << 16, 64);
+        AtomicLong offered = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 200_000; i++) {
+                    log.offer(record(i));
+                    offered.incrementAndGet();
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        started.await();
+        log.close();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(offered.get(), log.getWritten() + log.getDropped());
+        assertEquals(sunk.get(), log.getWritten());
+    }
+
+    private static AuditRecord record(long timestamp) {
+        return new AuditRecord(timestamp, "request", 1, "store", null, null, null, null, "view", true, null, null);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.cache;
+
+import com.permguard.pep.utils.Hash128;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionCacheSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void eachInstanceHasItsOwnKey() {
+        Hash128 first = new CacheGenerations().newKeyHash().putString("request");
+        Hash128 second = new CacheGenerations().newKeyHash().putString("request");
+        assertNotEquals(first.high(), second.high());
+    }
+
+    @Test
+    void restoredEntriesAreFoundWithTheKeyOfTheSnapshot() throws Exception {
+        CacheGenerations generations = new CacheGenerations();
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        Hash128 key = generations.newKeyHash().putString("request");
+        cache.put(key.high(), key.low(), 1L, "store", true, null);
+        Path path = directory.resolve("decisions.snapshot");
+        DecisionCacheSnapshot.write(cache, generations, path);
+
+        CacheGenerations restoredGenerations = new CacheGenerations();
+        OffHeapDecisionCache restoredCache = new OffHeapDecisionCache(1024, 60_000);
+        DecisionCacheSnapshot snapshot = DecisionCacheSnapshot.open(path);
+        assertNotNull(snapshot);
+        snapshot.restoreGenerations(restoredGenerations);
+        assertEquals(1, snapshot.restore(restoredCache, 1L, "store"));
+
+        Hash128 restoredKey = restoredGenerations.newKeyHash().putString("request");
+        assertEquals(key.high(), restoredKey.high());
+        assertEquals(key.low(), restoredKey.low());
+        CachedDecision decision = restoredCache.get(restoredKey.high(), restoredKey.low());
+        assertNotNull(decision);
+        assertTrue(decision.isDecision());
+    }
+
+    @Test
+    void entriesAreNotFoundWithAnotherKey() {
+        CacheGenerations generations = new CacheGenerations();
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        Hash128 key = generations.newKeyHash().putString("request");
+        cache.put(key.high(), key.low(), 1L, "store", true, null);
+
+        Hash128 other = new CacheGenerations().newKeyHash().putString("request");
+        assertNull(cache.get(other.high(), other.low()));
+    }
+
+    @Test
+    void eachScopeRestoresOnlyItsOwnEntries() throws Exception {
+        CacheGenerations generations = new CacheGenerations();
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(4096, 60_000);
+        for (int i = 0; i < 300; i++) {
+            Hash128 key = generations.newKeyHash().putInt(i);
+            cache.put(key.high(), key.low(), i % 3, "store", i % 2 == 0, null);
+        }
+        Path path = directory.resolve("decisions.snapshot");
+        DecisionCacheSnapshot.write(cache, generations, path);
+
+        DecisionCacheSnapshot snapshot = DecisionCacheSnapshot.open(path);
+        OffHeapDecisionCache restored = new OffHeapDecisionCache(4096, 60_000);
+        snapshot.restoreGenerations(new CacheGenerations());
+        assertEquals(100, snapshot.restore(restored, 1L, "store"));
+        assertEquals(0, snapshot.restore(restored, 1L, "store"));
+        assertEquals(100, restored.size());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(100, snapshot.restoreAsync(restored, 2L, "store", executor).get());
+            assertEquals(0, snapshot.restoreAsync(restored, 2L, "store", executor).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, restored.size());
+        assertTrue(snapshot.hasPendingScopes());
+    }
+
+    @Test
+    void restoredEntriesDoNotReplaceFresherDecisions() throws Exception {
+        CacheGenerations generations = new CacheGenerations();
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        Hash128 key = generations.newKeyHash().putString("request");
+        cache.put(key.high(), key.low(), 1L, "store", true, null);
+        Path path = directory.resolve("decisions.snapshot");
+        DecisionCacheSnapshot.write(cache, generations, path);
+
+        OffHeapDecisionCache restored = new OffHeapDecisionCache(1024, 60_000);
+        restored.put(key.high(), key.low(), 1L, "store", false, null);
+        DecisionCacheSnapshot.open(path).restore(restored, 1L, "store");
+        assertFalse(restored.get(key.high(), key.low()).isDecision());
+    }
+
+    @Test
+    void leavesOutStringsTooLongForTheDictionaries() throws Exception {
+        CacheGenerations generations = new CacheGenerations();
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        String longId = "s".repeat(70_000);
+        Hash128 kept = generations.newKeyHash().putString("kept");
+        Hash128 longScope = generations.newKeyHash().putString("long scope");
+        Hash128 longReason = generations.newKeyHash().putString("long reason");
+        Hash128 after = generations.newKeyHash().putString("after");
+        cache.put(kept.high(), kept.low(), 1L, "store", false, "denied");
+        cache.put(longScope.high(), longScope.low(), 1L, longId, true, null);
+        cache.put(longReason.high(), longReason.low(), 1L, "store", false, "r".repeat(70_000));
+        cache.put(after.high(), after.low(), 2L, "other", true, null);
+        Path path = directory.resolve("decisions.snapshot");
+        DecisionCacheSnapshot.write(cache, generations, path);
+
+        DecisionCacheSnapshot snapshot = DecisionCacheSnapshot.open(path);
+        assertNotNull(snapshot);
+        OffHeapDecisionCache restored = new OffHeapDecisionCache(1024, 60_000);
+        assertEquals(1, snapshot.restore(restored, 1L, "store"));
+        assertEquals(0, snapshot.restore(restored, 1L, longId));
+        assertEquals(1, snapshot.restore(restored, 2L, "other"));
+        assertEquals("denied", restored.get(kept.high(), kept.low()).getReasonCode());
+        assertNull(restored.get(longReason.high(), longReason.low()));
+        assertNotNull(restored.get(after.high(), after.low()));
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapDecisionCacheTest {
+
+    @Test
+    void getsWhatWasPut() {
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        cache.put(1L, 2L, 1L, "store", false, "denied");
+        cache.put(3L, 4L, 1L, "store", true, null);
+
+        CachedDecision denied = cache.get(1L, 2L);
+        assertNotNull(denied);
+        assertFalse(denied.isDecision());
+        assertEquals("denied", denied.getReasonCode());
+        CachedDecision permitted = cache.get(3L, 4L);
+        assertNotNull(permitted);
+        assertTrue(permitted.isDecision());
+        assertNull(permitted.getReasonCode());
+        // Same low half, so same bucket, but another key.
+        assertNull(cache.get(9L, 2L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void overwritesAnExistingKey() {
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1024, 60_000);
+        cache.put(1L, 2L, 1L, "store", false, "denied");
+        cache.put(1L, 2L, 1L, "store", true, null);
+
+        CachedDecision decision = cache.get(1L, 2L);
+        assertTrue(decision.isDecision());
+        assertNull(decision.getReasonCode());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void expiresEntriesAfterTheirTtl() throws Exception {
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(8, 20);
+        for (long key = 0; key < 8; key++) {
+            cache.put(key, key, 1L, "store", true, null);
+        }
+        assertNotNull(cache.get(1L, 1L));
+        Thread.sleep(50);
+        assertNull(cache.get(1L, 1L));
+
+        // Expired slots of a full set are reused without counting a new entry.
+        cache.put(8L, 8L, 1L, "store", true, null);
+        assertNotNull(cache.get(8L, 8L));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    void evictsTheFirstUnreferencedWayOfAFullSet() {
+        // A capacity of 8 is a single set: every key lands in it.
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(8, 60_000);
+        for (long key = 0; key < 8; key++) {
+            cache.put(key, key, 1L, "store", true, null);
+        }
+        assertEquals(8, cache.size());
+        for (long key = 0; key < 7; key++) {
+            assertNotNull(cache.get(key, key));
+        }
+
+        cache.put(8L, 8L, 1L, "store", true, null);
+
+        assertNull(cache.get(7L, 7L));
+        for (long key = 0; key < 7; key++) {
+            assertNotNull(cache.get(key, key), "key " + key);
+        }
+        assertNotNull(cache.get(8L, 8L));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    void countsEntriesUntilCleared() {
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(1 << 12, 60_000);
+        for (long key = 0; key < 1000; key++) {
+            cache.put(key, key * 0x9E3779B97F4A7C15L, 1L, "store", true, null);
+        }
+        assertEquals(1000, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1L, 0x9E3779B97F4A7C15L));
+    }
+
+    @Test
+    void readersNeverSeeATornSlot() throws Exception {
+        // A single set, so the writer keeps overwriting the slots the readers are reading.
+        OffHeapDecisionCache cache = new OffHeapDecisionCache(8, 60_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        AtomicLong hits = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            long key = 0;
+            while (running.get()) {
+                // The decision and the reason are derived from the key: a torn read would mix two entries.
+                boolean even = (key & 1) == 0;
+                cache.put(key, ~key, 1L, "store", even, even ? "even" : "odd");
+                key = (key + 1) & 15;
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(new Thread(() -> {
+                while (running.get()) {
+                    long key = ThreadLocalRandom.current().nextLong(16);
+                    CachedDecision decision = cache.get(key, ~key);
+                    if (decision == null) {
+                        continue;
+                    }
+                    hits.incrementAndGet();
+                    boolean even = (key & 1) == 0;
+                    if (decision.isDecision() != even || !(even ? "even" : "odd").equals(decision.getReasonCode())) {
+                        torn.compareAndSet(null, "key " + key + " read " + decision.isDecision() + "/"
+                                + decision.getReasonCode());
+                    }
+                }
+            }));
+        }
+        writer.start();
+        readers.forEach(Thread::start);
+        Thread.sleep(300);
+        running.set(false);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(torn.get());
+        assertTrue(hits.get() > 0);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.server.AZServer;
+import io.grpc.Codec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AZClientCompressionTest {
+
+    private static final int THRESHOLD_BYTES = 1024;
+
+    private final AZServer server = new AZServer();
+    private final CountingGzip clientCodec = new CountingGzip();
+    private final CountingGzip serverCodec = new CountingGzip();
+    private AZClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server.start(port, serverCodec);
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.addCodec(clientCodec);
+        config.setCompression(CountingGzip.NAME);
+        config.setCompressionThresholdBytes(THRESHOLD_BYTES);
+        client = new AZClient(config);
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void compressesOnlyRequestsReachingTheThreshold() {
+        AZRequest small = request(16);
+        AZRequest large = request(4 * THRESHOLD_BYTES);
+        Mapper mapper = new Mapper();
+        assertTrue(mapper.mapAuthorizationCheckRequest(small).getSerializedSize() < THRESHOLD_BYTES);
+        assertTrue(mapper.mapAuthorizationCheckRequest(large).getSerializedSize() >= THRESHOLD_BYTES);
+
+        assertNotNull(client.check(small));
+        assertEquals(0, clientCodec.compressed.get());
+        assertEquals(0, serverCodec.decompressed.get());
+
+        assertNotNull(client.check(large));
+        assertEquals(1, clientCodec.compressed.get());
+        assertEquals(1, serverCodec.decompressed.get());
+
+        assertNotNull(client.check(small));
+        assertEquals(1, clientCodec.compressed.get());
+        assertEquals(1, serverCodec.decompressed.get());
+    }
+
+    private static AZRequest request(int contextBytes) {
+        return new AZAtomicRequestBuilder(1, "store", "amy", "Branch", "view")
+                .withRequestId("request")
+                .withResourceId("b1")
+                .withContextProperty("payload", "x".repeat(contextBytes))
+                .build();
+    }
+
+    /**
+     * Gzip codec under its own name, counting the messages it compresses and decompresses.
+     */
+    private static final class CountingGzip implements Codec {
+        private static final String NAME = "counting-gzip";
+
+        private final AtomicInteger compressed = new AtomicInteger();
+        private final AtomicInteger decompressed = new AtomicInteger();
+
+        @Override
+        public String getMessageEncoding() {
+            return NAME;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os) throws IOException {
+            compressed.incrementAndGet();
+            return new GZIPOutputStream(os);
+        }
+
+        @Override
+        public InputStream decompress(InputStream is) throws IOException {
+            decompressed.incrementAndGet();
+            return new GZIPInputStream(is);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.cache.OffHeapDecisionCache;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.server.AZServer;
+import com.permguard.pep.utils.Symbols;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AZClientInvalidationTest {
+
+    private final AZServer server = new AZServer();
+    private final AtomicInteger calls = new AtomicInteger();
+    private AZClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server.start(port);
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.setDecisionCache(new OffHeapDecisionCache(1024, 60_000));
+        ClientInterceptor counter = new ClientInterceptor() {
+            @Override
+            public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions options, Channel next) {
+                calls.incrementAndGet();
+                return next.newCall(method, options);
+            }
+        };
+        client = new AZClient(config, counter);
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void repeatedChecksAreAnsweredFromTheCache() {
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(0, missesOf(1, "a", "amy"));
+    }
+
+    @Test
+    void invalidateAllMissesEveryScope() {
+        warm();
+        client.invalidateAll();
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(1, missesOf(2, "b", "bob"));
+        assertEquals(0, missesOf(1, "a", "amy"));
+    }
+
+    @Test
+    void invalidateZoneKeepsOtherZones() {
+        warm();
+        client.invalidateZone(1);
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(0, missesOf(2, "b", "bob"));
+    }
+
+    @Test
+    void invalidatePolicyStoreKeepsOtherStores() {
+        warm();
+        client.invalidatePolicyStore("a");
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(0, missesOf(2, "b", "bob"));
+    }
+
+    @Test
+    void invalidateSubjectKeepsOtherSubjects() {
+        warm();
+        client.invalidateSubject(Symbols.WORKLOAD, "amy");
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(0, missesOf(2, "b", "bob"));
+    }
+
+    @Test
+    void aNewPolicyVersionKeepsOtherStores() {
+        client.setPolicyVersion("a", "v1");
+        warm();
+        client.setPolicyVersion("a", "v1");
+        assertEquals(0, missesOf(1, "a", "amy"));
+        client.setPolicyVersion("a", "v2");
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(0, missesOf(2, "b", "bob"));
+    }
+
+    private void warm() {
+        assertEquals(1, missesOf(1, "a", "amy"));
+        assertEquals(1, missesOf(2, "b", "bob"));
+    }
+
+    /**
+     * Checks a request and returns the number of calls it sent to the PDP, 0 for a cache hit.
+     */
+    private int missesOf(long zoneId, String policyStoreId, String subjectId) {
+        int before = calls.get();
+        client.check(new AZAtomicRequestBuilder(zoneId, policyStoreId, subjectId, "Branch", "view")
+                .withRequestId("request")
+                .withResourceId("b1")
+                .build());
+        return calls.get() - before;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.config.AZConfig;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AZClientWarmUpTest {
+
+    @Test
+    void retriesAFailedWarmUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.setWarmUpTimeoutMillis(1000);
+        AZClient client = new AZClient(config);
+        try {
+            CompletableFuture<Void> first = client.warmUp();
+            assertSame(first, client.warmUp());
+            assertThrows(CompletionException.class, first::join);
+
+            CompletableFuture<Void> second = client.warmUp();
+            assertNotSame(first, second);
+            assertThrows(CompletionException.class, second::join);
+        } finally {
+            client.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsTheOldestEntryOnly() {
+        BoundedCache<String, String> cache = new BoundedCache<>(3);
+        cache.putIfAbsent("a", "1");
+        cache.putIfAbsent("b", "2");
+        cache.putIfAbsent("c", "3");
+        cache.putIfAbsent("d", "4");
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void evictsByWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 10, String::length);
+        cache.putIfAbsent("a", "12345");
+        cache.putIfAbsent("b", "1234");
+        cache.putIfAbsent("c", "123");
+        assertNull(cache.get("a"));
+        assertEquals(7, cache.weight());
+    }
+
+    @Test
+    void losingAPutDoesNotCountItsWeight() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 1_000, String::length);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String value = "value" + t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    cache.putIfAbsent("key" + i, value);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long expected = 0;
+        for (int i = 0; i < 1_000; i++) {
+            String value = cache.get("key" + i);
+            expected += value != null ? value.length() : 0;
+        }
+        assertEquals(expected, cache.weight());
+    }
+
+    @Test
+    void returnsTheStoredValue() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        String first = cache.putIfAbsent("a", "first");
+        assertSame(first, cache.putIfAbsent("a", "second"));
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.builder.AZRequestBuilder;
+import com.permguard.pep.builder.ActionBuilder;
+import com.permguard.pep.builder.EvaluationBuilder;
+import com.permguard.pep.builder.ResourceBuilder;
+import com.permguard.pep.builder.SubjectBuilder;
+import com.permguard.pep.cache.OffHeapDecisionCache;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.server.AZServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckEventTest {
+
+    private static final String EVENT = "com.permguard.AuthorizationCheck";
+
+    private final AZServer server = new AZServer();
+    private AZClient client;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void start() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server.start(port);
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.setDecisionCache(new OffHeapDecisionCache(1024, 60_000));
+        client = new AZClient(config);
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void recordsTheFieldsOfEachCheck() throws Exception {
+        // The mock PDP permits request IDs with an even hash code: "b" is permitted and "a" denied.
+        AZRequest permitted = new AZAtomicRequestBuilder(7, "store", "amy", "Branch", "view")
+                .withRequestId("b")
+                .withResourceId("b1")
+                .build();
+        AZRequest denied = new AZAtomicRequestBuilder(8, "other", "bob", "Branch", "edit")
+                .withRequestId("a")
+                .withResourceId("b1")
+                .build();
+        AZRequest batch = new AZRequestBuilder(9, "batch")
+                .withRequestId("c")
+                .withEvaluation(evaluation("read"))
+                .withEvaluation(evaluation("write"))
+                .withEvaluation(evaluation("delete"))
+                .build();
+
+        List<RecordedEvent> events = record(() -> {
+            client.check(permitted);
+            client.check(permitted);
+            client.check(denied);
+            client.check(batch);
+        });
+        assertEquals(4, events.size());
+
+        RecordedEvent miss = events.get(0);
+        assertEquals("b", miss.getString("requestId"));
+        assertEquals(7, miss.getLong("zoneId"));
+        assertEquals("store", miss.getString("policyStoreId"));
+        assertEquals("view", miss.getString("action"));
+        assertEquals(0, miss.getInt("evaluations"));
+        assertTrue(miss.getLong("requestBytes") > 0);
+        assertTrue(miss.getBoolean("decision"));
+        assertFalse(miss.getBoolean("cacheHit"));
+        assertEquals("OK", miss.getString("outcome"));
+        assertTrue(miss.getDuration("prepareNanos").toNanos() > 0);
+        assertTrue(miss.getDuration("rpcNanos").toNanos() > 0);
+        assertTrue(miss.getDuration("completeNanos").toNanos() > 0);
+
+        RecordedEvent hit = events.get(1);
+        assertEquals("b", hit.getString("requestId"));
+        assertTrue(hit.getBoolean("decision"));
+        assertTrue(hit.getBoolean("cacheHit"));
+        assertEquals(0, hit.getLong("requestBytes"));
+        assertTrue(hit.getDuration("prepareNanos").toNanos() > 0);
+        assertEquals(Duration.ZERO, hit.getDuration("rpcNanos"));
+        assertEquals(Duration.ZERO, hit.getDuration("completeNanos"));
+
+        RecordedEvent deny = events.get(2);
+        assertEquals(8, deny.getLong("zoneId"));
+        assertEquals("other", deny.getString("policyStoreId"));
+        assertEquals("edit", deny.getString("action"));
+        assertFalse(deny.getBoolean("decision"));
+        assertFalse(deny.getBoolean("cacheHit"));
+
+        RecordedEvent multi = events.get(3);
+        assertEquals(9, multi.getLong("zoneId"));
+        assertEquals(3, multi.getInt("evaluations"));
+        assertTrue(multi.getLong("requestBytes") > miss.getLong("requestBytes"));
+        assertEquals("OK", multi.getString("outcome"));
+    }
+
+    @Test
+    void recordsTheKindOfFailedChecks() throws Exception {
+        AZRequest incomplete = new AZRequestBuilder(1, "store")
+                .withRequestId("b")
+                .build();
+        AZResult[] result = new AZResult[1];
+
+        List<RecordedEvent> events = record(() -> result[0] = client.checkAsync(incomplete).join());
+
+        assertFalse(result[0].isSuccess());
+        assertEquals(1, events.size());
+        RecordedEvent failed = events.get(0);
+        assertEquals(result[0].getErrorKind().name(), failed.getString("outcome"));
+        assertEquals("b", failed.getString("requestId"));
+        assertFalse(failed.getBoolean("decision"));
+        assertFalse(failed.getBoolean("cacheHit"));
+        assertEquals(0, failed.getLong("requestBytes"));
+    }
+
+    private static Evaluation evaluation(String action) {
+        return new EvaluationBuilder(new SubjectBuilder("amy").build(), new ResourceBuilder("Branch").build(),
+                new ActionBuilder(action).build())
+                .withRequestId(action)
+                .build();
+    }
+
+    /**
+     * Runs checks under a recording enabling the event without threshold, and returns the events in commit order.
+     */
+    private List<RecordedEvent> record(Runnable checks) throws Exception {
+        Path dump = directory.resolve("checks.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT).withThreshold(Duration.ZERO);
+            recording.start();
+            checks.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals(EVENT))
+                .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                .toList();
+    }
+}
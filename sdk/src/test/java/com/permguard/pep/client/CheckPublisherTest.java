@@ -0,0 +1,127 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.exception.ErrorKind;
+import com.permguard.pep.model.response.AZResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckPublisherTest {
+
+    private final ExecutorService eventLoop = Executors.newSingleThreadExecutor(task -> new Thread(task, "event-loop"));
+    private final ExecutorService emitter = Executors.newSingleThreadExecutor(task -> new Thread(task, "emitter"));
+
+    @AfterEach
+    void shutdown() {
+        eventLoop.shutdownNow();
+        emitter.shutdownNow();
+    }
+
+    @Test
+    void emitsOffTheThreadCompletingTheRpc() throws Exception {
+        Function<List<Integer>, CompletableFuture<List<AZResult>>> dispatcher = batch -> CompletableFuture.supplyAsync(
+                () -> batch.stream().map(item -> AZResult.failure(ErrorKind.INTERNAL, "item " + item, null)).toList(),
+                eventLoop);
+        Recorder recorder = check(new CheckPublisher<>(source(100), dispatcher, 4, 8, true, emitter));
+
+        assertEquals(100, recorder.received.get());
+        assertFalse(recorder.threads.contains("event-loop"));
+        assertTrue(recorder.threads.contains("emitter"));
+    }
+
+    @Test
+    void completesWhenTheEmitterIsShutDown() throws Exception {
+        emitter.shutdown();
+        Function<List<Integer>, CompletableFuture<List<AZResult>>> dispatcher = batch -> CompletableFuture.supplyAsync(
+                () -> batch.stream().map(item -> AZResult.failure(ErrorKind.INTERNAL, "item " + item, null)).toList(),
+                eventLoop);
+        Recorder recorder = check(new CheckPublisher<>(source(10), dispatcher, 2, 3, false, emitter));
+
+        assertEquals(10, recorder.received.get());
+    }
+
+    private static Flow.Publisher<Integer> source(int count) {
+        return subscriber -> {
+            SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    publisher.submit(i);
+                }
+                publisher.close();
+            });
+            producer.setDaemon(true);
+            producer.start();
+        };
+    }
+
+    private static Recorder check(Flow.Publisher<AZResult> results) throws InterruptedException {
+        Recorder recorder = new Recorder();
+        results.subscribe(recorder);
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+        return recorder;
+    }
+
+    private static final class Recorder implements Flow.Subscriber<AZResult> {
+        private final AtomicInteger received = new AtomicInteger();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(AZResult item) {
+            received.incrementAndGet();
+            threads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import io.grpc.Drainable;
+import io.grpc.MethodDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of framing a check request with and without gzip, against the bytes it puts on the wire, for contexts
+ * of a few sizes. The context holds UUID attributes, which compress about as well as real entity identifiers.
+ * The size of the framed message is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"256", "1024", "4096", "65536"})
+    public int contextBytes;
+
+    @Param({"identity", "gzip"})
+    public String codec;
+
+    private final MethodDescriptor.Marshaller<AuthorizationCheck.AuthorizationCheckRequest> marshaller =
+            new PooledMarshaller<>(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance());
+    private final CountingStream sink = new CountingStream();
+    private Compressor compressor;
+    private AuthorizationCheck.AuthorizationCheckRequest request;
+
+    @Setup
+    public void setUp() {
+        compressor = codec.equals("gzip") ? new Codec.Gzip() : Codec.Identity.NONE;
+        Random random = new Random(42);
+        Struct.Builder context = Struct.newBuilder();
+        for (int i = 0; context.build().getSerializedSize() < contextBytes; i++) {
+            context.putFields("attribute-" + i, Value.newBuilder()
+                    .setStringValue(new UUID(random.nextLong(), random.nextLong()).toString()).build());
+        }
+        request = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setRequestID("1234")
+                .setAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest.newBuilder()
+                        .setZoneID(273165098782L)
+                        .setPolicyStore(AuthorizationCheck.PolicyStore.newBuilder().setKind("ledger")
+                                .setID("fd1ac44e4afa4fc4beec622494d3175a")))
+                .setSubject(AuthorizationCheck.Subject.newBuilder().setType("workload").setID("platform-creator"))
+                .setResource(AuthorizationCheck.Resource.newBuilder().setType("MagicFarmacia::Platform::Subscription")
+                        .setID("e3a786fd07e24bfa95ba4341d3695ae8"))
+                .setAction(AuthorizationCheck.Action.newBuilder().setName("MagicFarmacia::Platform::Action::create"))
+                .setContext(context)
+                .build();
+        try {
+            System.out.println("Wire bytes: " + frame() + " (" + request.getSerializedSize() + " encoded)");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes the request through the compressor, as the gRPC message framer does.
+     */
+    @Benchmark
+    public long frame() throws IOException {
+        sink.count = 0;
+        try (OutputStream output = compressor.compress(sink)) {
+            ((Drainable) marshaller.stream(request)).drainTo(output);
+        }
+        return sink.count;
+    }
+
+    /**
+     * Output stream only counting the bytes written to it.
+     */
+    private static final class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            // The stream is reused by every invocation.
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.response.DecisionBatch;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionBatchTest {
+
+    private final Mapper mapper = new Mapper();
+
+    @Test
+    void keepsTheRequestIdsOfTheDecodedResponse() {
+        AuthorizationCheck.AuthorizationCheckResponse response = AuthorizationCheck.AuthorizationCheckResponse.newBuilder()
+                .setDecision(false)
+                .addEvaluations(evaluation(true, "eval-0"))
+                .addEvaluations(evaluation(false, "renamed"))
+                .addEvaluations(AuthorizationCheck.EvaluationResponse.newBuilder().setDecision(true))
+                .addEvaluations(evaluation(false, "eval-3"))
+                .build();
+
+        DecisionBatch batch = mapper.mapDecisionBatch(response);
+
+        assertEquals(4, batch.size());
+        assertEquals("eval-0", batch.getRequestId(0));
+        assertSame(batch.getRequestId(0), batch.getRequestId(0));
+        assertEquals("renamed", batch.getRequestId(1));
+        assertEquals("", batch.getRequestId(2));
+        assertEquals("eval-3", batch.getRequestId(3));
+        assertTrue(batch.isPermitted(0));
+        assertFalse(batch.isPermitted(1));
+        assertEquals(2, batch.getPermittedCount());
+        assertNull(batch.getContext(3));
+    }
+
+    @Test
+    void decodesWithoutEvaluations() {
+        AuthorizationCheck.AuthorizationCheckResponse response = AuthorizationCheck.AuthorizationCheckResponse.newBuilder()
+                .setRequestID("batch")
+                .build();
+
+        DecisionBatch batch = mapper.mapDecisionBatch(response);
+
+        assertEquals(0, batch.size());
+        assertEquals("batch", batch.getRequestId());
+    }
+
+    private static AuthorizationCheck.EvaluationResponse evaluation(boolean decision, String requestId) {
+        return AuthorizationCheck.EvaluationResponse.newBuilder().setDecision(decision).setRequestID(requestId).build();
+    }
+}
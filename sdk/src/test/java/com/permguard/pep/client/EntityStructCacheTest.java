@@ -0,0 +1,66 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.Struct;
+import com.permguard.pep.utils.GrpcStructMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class EntityStructCacheTest {
+
+    @Test
+    void convertsItemsInOrder() {
+        EntityStructCache cache = new EntityStructCache(1024);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(Map.of("uid", Map.of("type", "Branch", "id", "b" + i), "attrs", Map.of("thread", i)));
+        }
+        List<Struct> structs = cache.structsOf(items);
+        assertEquals(items.size(), structs.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(GrpcStructMapper.toGrpcStruct(items.get(i)), structs.get(i));
+        }
+    }
+
+    @Test
+    void repeatedItemsShareTheirStruct() {
+        EntityStructCache cache = new EntityStructCache(16);
+        Struct first = cache.structsOf(List.of(Map.of("id", "a"))).get(0);
+        assertSame(first, cache.structsOf(List.of(Map.of("id", "a"))).get(0));
+    }
+
+    @Test
+    void aFullCacheEvictsItsOldestItemOnly() {
+        EntityStructCache cache = new EntityStructCache(2);
+        Struct a = cache.structsOf(List.of(Map.of("id", "a"))).get(0);
+        Struct b = cache.structsOf(List.of(Map.of("id", "b"))).get(0);
+        cache.structsOf(List.of(Map.of("id", "c")));
+        assertSame(b, cache.structsOf(List.of(Map.of("id", "b"))).get(0));
+        assertNotSame(a, cache.structsOf(List.of(Map.of("id", "a"))).get(0));
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZRequestBuilder;
+import com.permguard.pep.builder.ActionBuilder;
+import com.permguard.pep.builder.PrincipalBuilder;
+import com.permguard.pep.builder.ResourceBuilder;
+import com.permguard.pep.builder.SubjectBuilder;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Entities;
+import com.permguard.pep.model.request.Evaluation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation and mapping of an atomic request and of a request with many evaluations.
+ * Every optional field is set, so the same requests also map with the mapper that predates the null checks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    private static final int EVALUATIONS = 1_000;
+
+    private final Mapper mapper = new Mapper();
+    private AZRequest atomic;
+    private AZRequest evaluations;
+
+    @Setup
+    public void setUp() {
+        atomic = request().withSubject(new SubjectBuilder("platform-creator").withType("workload").withSource("keycloak")
+                        .withProperty("isSuperUser", true).build())
+                .withResource(new ResourceBuilder("MagicFarmacia::Platform::Subscription")
+                        .withId("e3a786fd07e24bfa95ba4341d3695ae8").withProperty("isEnabled", true).build())
+                .withAction(new ActionBuilder("MagicFarmacia::Platform::Action::create").build())
+                .withContext(Map.of("time", "2025-01-23T16:17:46+00:00", "isSubscriptionActive", true))
+                .build();
+        AZRequestBuilder builder = request().withContext(Map.of("isSubscriptionActive", true));
+        for (int i = 0; i < EVALUATIONS; i++) {
+            builder.withEvaluation(new Evaluation("evaluation-" + i,
+                    new SubjectBuilder("platform-creator").withType("workload").withSource("keycloak").build(),
+                    new ResourceBuilder("MagicFarmacia::Platform::Subscription").withId("subscription-" + i).build(),
+                    new ActionBuilder(i % 2 == 0 ? "MagicFarmacia::Platform::Action::view" : "MagicFarmacia::Platform::Action::create").build(),
+                    Map.of("index", i)));
+        }
+        evaluations = builder.build();
+    }
+
+    @Benchmark
+    public Object mapAtomic() {
+        return mapper.mapAuthorizationCheckRequest(atomic);
+    }
+
+    @Benchmark
+    public Object mapEvaluations() {
+        return mapper.mapAuthorizationCheckRequest(evaluations);
+    }
+
+    @Benchmark
+    public List<String> validateEvaluations() {
+        return RequestValidator.validate(evaluations);
+    }
+
+    private static AZRequestBuilder request() {
+        return new AZRequestBuilder(273165098782L, "fd1ac44e4afa4fc4beec622494d3175a")
+                .withRequestId("1234")
+                .withPrincipal(new PrincipalBuilder("amy.smith@acmecorp.com").withSource("keycloak").build())
+                .withEntitiesItems("cedar", new Entities("cedar", List.of(Map.of(
+                        "uid", Map.of("type", "MagicFarmacia::Platform::BranchInfo", "id", "subscription"),
+                        "attrs", Map.of("active", true),
+                        "parents", List.of()))));
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.permguard.pep.builder.AZMatrixRequestBuilder;
+import com.permguard.pep.builder.ActionBuilder;
+import com.permguard.pep.builder.ResourceBuilder;
+import com.permguard.pep.builder.SubjectBuilder;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.exception.ErrorKind;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZMatrixRequest;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Action;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.request.Resource;
+import com.permguard.pep.model.request.Subject;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.model.response.DecisionMatrix;
+import com.permguard.pep.server.AZServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatrixCheckTest {
+
+    // 3 subjects, 5 resources and 7 actions: 105 cells, so chunks of 64 leave a partial last chunk of 41 cells.
+    private static final int SUBJECTS = 3;
+    private static final int RESOURCES = 5;
+    private static final int ACTIONS = 7;
+    private static final int CELLS = SUBJECTS * RESOURCES * ACTIONS;
+
+    private final Mapper mapper = new Mapper();
+    private final AZMatrixRequest request = matrix();
+
+    @Test
+    void splitsTheCellsIntoChunksOf64() {
+        MatrixCheck check = new MatrixCheck(request, mapper.mapMatrix(request), 50);
+
+        assertEquals(2, check.getChunkCount());
+        assertEquals(0, check.fromOf(0));
+        assertEquals(64, check.toOf(0));
+        assertEquals(64, check.fromOf(1));
+        assertEquals(CELLS, check.toOf(1));
+        assertEquals(0, check.claimChunk());
+        assertEquals(1, check.claimChunk());
+        assertEquals(-1, check.claimChunk());
+
+        assertEquals(1, new MatrixCheck(request, mapper.mapMatrix(request), 105).getChunkCount());
+        assertEquals(2, new MatrixCheck(request, mapper.mapMatrix(request), 64).getChunkCount());
+        assertEquals(CELLS, new MatrixCheck(request, mapper.mapMatrix(request), 1).toOf(1));
+    }
+
+    @Test
+    void chunkRequestsListTheirCellsInIndexOrder() {
+        MatrixCheck check = new MatrixCheck(request, mapper.mapMatrix(request), 64);
+        for (int chunk = 0; chunk < check.getChunkCount(); chunk++) {
+            AZRequest chunkRequest = check.requestOf(chunk);
+            List<AuthorizationCheck.EvaluationRequest> encoded = decode(check, chunk).getEvaluationsList();
+            assertEquals(check.toOf(chunk) - check.fromOf(chunk), chunkRequest.getEvaluations().size());
+            assertEquals(chunkRequest.getEvaluations().size(), encoded.size());
+            for (int i = 0; i < encoded.size(); i++) {
+                int cell = check.fromOf(chunk) + i;
+                int subject = cell / (RESOURCES * ACTIONS);
+                int resource = cell / ACTIONS % RESOURCES;
+                int action = cell % ACTIONS;
+                Evaluation evaluation = chunkRequest.getEvaluations().get(i);
+                assertSame(request.getSubjects().get(subject), evaluation.getSubject());
+                assertSame(request.getResources().get(resource), evaluation.getResource());
+                assertSame(request.getActions().get(action), evaluation.getAction());
+                assertEquals("s" + subject, encoded.get(i).getSubject().getID());
+                assertEquals("r" + resource, encoded.get(i).getResource().getID());
+                assertEquals("a" + action, encoded.get(i).getAction().getName());
+            }
+        }
+    }
+
+    @Test
+    void chunksShareTheModelAndTheContext() {
+        MatrixCheck check = new MatrixCheck(request, mapper.mapMatrix(request), 64);
+        AuthorizationCheck.AuthorizationCheckRequest first = decode(check, 0);
+        AuthorizationCheck.AuthorizationCheckRequest last = decode(check, 1);
+        assertEquals("matrix", first.getRequestID());
+        assertEquals(9, first.getAuthorizationModel().getZoneID());
+        assertEquals(first.getAuthorizationModel(), last.getAuthorizationModel());
+        assertEquals(first.getContext(), last.getContext());
+        assertTrue(first.getContext().containsFields("tenant"));
+    }
+
+    @Test
+    void recordsDecisionsAndFailuresPerChunk() {
+        MatrixCheck check = new MatrixCheck(request, mapper.mapMatrix(request), 64);
+        AZResult failure = AZResult.failure(ErrorKind.UNAVAILABLE, "unavailable", null);
+
+        // Chunks may complete in any order: the partial last chunk is decided before the first one fails.
+        check.decide(1, response(check, 1, cell -> cell % 2 == 0));
+        assertFalse(check.getResult().isDone());
+        check.fail(0, failure);
+        DecisionMatrix matrix = check.getResult().join();
+
+        assertEquals(SUBJECTS, matrix.getSubjectCount());
+        assertEquals(CELLS, matrix.getCellCount());
+        for (int cell = 0; cell < CELLS; cell++) {
+            assertEquals(cell < 64, matrix.isFailed(cell), "cell " + cell);
+            assertEquals(cell >= 64 && cell % 2 == 0, matrix.isPermitted(cell), "cell " + cell);
+        }
+        assertEquals(64, matrix.getFailedCount());
+        assertEquals(21, matrix.getPermittedCount());
+        assertEquals(64, matrix.nextPermitted(0));
+        assertEquals(66, matrix.nextPermitted(65));
+        assertEquals(104, matrix.nextPermitted(103));
+        assertFalse(matrix.isComplete());
+        assertSame(failure, matrix.getFailure());
+    }
+
+    @Test
+    void keepsTheFirstFailure() {
+        MatrixCheck check = new MatrixCheck(request, mapper.mapMatrix(request), 64);
+        AZResult first = AZResult.failure(ErrorKind.UNAVAILABLE, "first", null);
+        check.fail(1, first);
+        check.fail(0, AZResult.failure(ErrorKind.INTERNAL, "second", null));
+
+        DecisionMatrix matrix = check.getResult().join();
+        assertEquals(CELLS, matrix.getFailedCount());
+        assertEquals(0, matrix.getPermittedCount());
+        assertSame(first, matrix.getFailure());
+    }
+
+    @Test
+    void aMatrixThatCannotBeCheckedFailsEveryCell() {
+        AZResult failure = AZResult.failure(ErrorKind.INVALID_REQUEST, "invalid", null);
+        DecisionMatrix matrix = MatrixCheck.failed(request, failure);
+        assertEquals(CELLS, matrix.getCellCount());
+        assertEquals(CELLS, matrix.getFailedCount());
+        assertTrue(matrix.isFailed(2, 4, 6));
+        assertSame(failure, matrix.getFailure());
+    }
+
+    @Test
+    void processesResponsesOnTheGivenExecutor() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AZServer server = new AZServer();
+        server.start(port);
+        AtomicInteger tasks = new AtomicInteger();
+        Set<String> decidingThreads = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "matrix-executor"));
+        AZClient client = new AZClient(new AZConfig("localhost", port, true));
+        try {
+            // One RPC at a time and two chunks: each response is processed by a task of the executor.
+            DecisionMatrix matrix = client.checkMatrixAsync(request, 1, 1, task -> {
+                tasks.incrementAndGet();
+                executor.execute(() -> {
+                    decidingThreads.add(Thread.currentThread().getName());
+                    task.run();
+                });
+            }).join();
+
+            assertTrue(matrix.isComplete());
+            // The mock PDP permits evaluations whose request ID has an even hash code, and matrix cells send none.
+            assertEquals(CELLS, matrix.getPermittedCount());
+            assertEquals(2, tasks.get());
+            assertEquals(Set.of("matrix-executor"), decidingThreads);
+        } finally {
+            client.shutdown();
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void completesInlineOnceTheExecutorRejects() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AZServer server = new AZServer();
+        server.start(port);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        AZClient client = new AZClient(new AZConfig("localhost", port, true));
+        try {
+            DecisionMatrix matrix = client.checkMatrixAsync(request, 2, 64, executor).join();
+            assertTrue(matrix.isComplete());
+            assertNull(matrix.getFailure());
+            assertEquals(CELLS, matrix.getPermittedCount());
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    private static AZMatrixRequest matrix() {
+        List<Subject> subjects = new ArrayList<>();
+        for (int i = 0; i < SUBJECTS; i++) {
+            subjects.add(new SubjectBuilder("s" + i).withType("user").build());
+        }
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < RESOURCES; i++) {
+            resources.add(new ResourceBuilder("Branch").withId("r" + i).build());
+        }
+        List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < ACTIONS; i++) {
+            actions.add(new ActionBuilder("a" + i).build());
+        }
+        return new AZMatrixRequestBuilder(9, "store")
+                .withRequestId("matrix")
+                .withSubjects(subjects)
+                .withResources(resources)
+                .withActions(actions)
+                .withContextProperty("tenant", "acme")
+                .build();
+    }
+
+    private static AuthorizationCheck.AuthorizationCheckRequest decode(MatrixCheck check, int chunk) {
+        SplicedCheckRequest encoded = check.encode(chunk);
+        try {
+            return AuthorizationCheck.AuthorizationCheckRequest.parseFrom(
+                    encoded.getEncodedFields().concat(encoded.getBody().toByteString()));
+        } catch (InvalidProtocolBufferException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static AuthorizationCheck.AuthorizationCheckResponse response(MatrixCheck check, int chunk,
+                                                                          IntPredicate permitted) {
+        AuthorizationCheck.AuthorizationCheckResponse.Builder response = AuthorizationCheck.AuthorizationCheckResponse.newBuilder();
+        for (int cell = check.fromOf(chunk); cell < check.toOf(chunk); cell++) {
+            response.addEvaluations(AuthorizationCheck.EvaluationResponse.newBuilder().setDecision(permitted.test(cell)));
+        }
+        return response.build();
+    }
+}
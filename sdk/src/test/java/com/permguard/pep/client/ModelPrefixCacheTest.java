@@ -0,0 +1,78 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZModel;
+import com.permguard.pep.model.request.PolicyStore;
+import com.permguard.pep.model.request.Principal;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ModelPrefixCacheTest {
+
+    private final AtomicInteger mapped = new AtomicInteger();
+    private final Function<AZModel, AuthorizationCheck.AuthorizationModelRequest> mapper = model -> {
+        mapped.incrementAndGet();
+        AuthorizationCheck.AuthorizationModelRequest.Builder builder = AuthorizationCheck.AuthorizationModelRequest.newBuilder()
+                .setZoneID(model.getZoneId());
+        if (model.getPrincipal() != null) {
+            builder.setPrincipal(AuthorizationCheck.Principal.newBuilder()
+                    .setID(model.getPrincipal().getId())
+                    .setAccessToken(model.getPrincipal().getAccessToken()));
+        }
+        return builder.build();
+    };
+
+    @Test
+    void modelsAreComparedByContent() {
+        ModelPrefixCache cache = new ModelPrefixCache(16, 1024);
+        ByteString first = cache.encodedFieldOf(model(1L, "token"), mapper);
+        ByteString second = cache.encodedFieldOf(model(1L, "token"), mapper);
+        assertEquals(first, second);
+        assertEquals(1, mapped.get());
+        assertNotEquals(first, cache.encodedFieldOf(model(1L, "other"), mapper));
+    }
+
+    @Test
+    void aFullCacheEvictsItsOldestModelOnly() {
+        ModelPrefixCache cache = new ModelPrefixCache(2, 1024);
+        cache.encodedFieldOf(model(1L, "a"), mapper);
+        cache.encodedFieldOf(model(2L, "b"), mapper);
+        cache.encodedFieldOf(model(3L, "c"), mapper);
+        assertEquals(3, mapped.get());
+        cache.encodedFieldOf(model(2L, "b"), mapper);
+        cache.encodedFieldOf(model(3L, "c"), mapper);
+        assertEquals(3, mapped.get());
+        cache.encodedFieldOf(model(1L, "a"), mapper);
+        assertEquals(4, mapped.get());
+    }
+
+    private static AZModel model(long zoneId, String accessToken) {
+        Principal principal = new Principal("user", "amy", null, null, accessToken);
+        return new AZModel(zoneId, new PolicyStore("ledger", "store"), principal, null);
+    }
+}
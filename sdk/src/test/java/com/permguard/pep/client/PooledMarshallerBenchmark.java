@@ -0,0 +1,116 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and parsing of a check request with the pooled marshaller and with the default gRPC protobuf marshaller.
+ * Run with {@code -prof gc} to compare the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PooledMarshallerBenchmark {
+
+    @Param({"256", "16384"})
+    public int contextBytes;
+
+    private final MethodDescriptor.Marshaller<AuthorizationCheck.AuthorizationCheckRequest> pooled =
+            new PooledMarshaller<>(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance());
+    private final MethodDescriptor.Marshaller<AuthorizationCheck.AuthorizationCheckRequest> standard =
+            ProtoUtils.marshaller(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance());
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private AuthorizationCheck.AuthorizationCheckRequest request;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        request = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setRequestID("1234")
+                .setAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest.newBuilder()
+                        .setZoneID(273165098782L)
+                        .setPolicyStore(AuthorizationCheck.PolicyStore.newBuilder().setKind("ledger")
+                                .setID("fd1ac44e4afa4fc4beec622494d3175a")))
+                .setSubject(AuthorizationCheck.Subject.newBuilder().setType("workload").setID("platform-creator"))
+                .setResource(AuthorizationCheck.Resource.newBuilder().setType("MagicFarmacia::Platform::Subscription")
+                        .setID("e3a786fd07e24bfa95ba4341d3695ae8"))
+                .setAction(AuthorizationCheck.Action.newBuilder().setName("MagicFarmacia::Platform::Action::create"))
+                .setContext(Struct.newBuilder().putFields("payload",
+                        Value.newBuilder().setStringValue("x".repeat(contextBytes)).build()))
+                .build();
+        encoded = request.toByteArray();
+    }
+
+    @Benchmark
+    public int encodePooled() throws IOException {
+        return ((Drainable) pooled.stream(request)).drainTo(sink);
+    }
+
+    @Benchmark
+    public int encodeDefault() throws IOException {
+        return ((Drainable) standard.stream(request)).drainTo(sink);
+    }
+
+    @Benchmark
+    public Object parsePooled() {
+        return pooled.parse(new KnownLengthStream(encoded));
+    }
+
+    @Benchmark
+    public Object parseDefault() {
+        return standard.parse(new KnownLengthStream(encoded));
+    }
+
+    /**
+     * A stream with a length hint, like the ones the transport hands to the marshaller.
+     */
+    private static final class KnownLengthStream extends ByteArrayInputStream implements KnownLength {
+        private KnownLengthStream(byte[] bytes) {
+            super(bytes);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.ByteString;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledMarshallerTest {
+
+    private final PooledMarshaller<AuthorizationCheck.AuthorizationCheckRequest> marshaller =
+            new PooledMarshaller<>(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance());
+
+    @Test
+    void drainedMessagesParseBack() throws Exception {
+        AuthorizationCheck.AuthorizationCheckRequest request = request(100);
+        InputStream stream = marshaller.stream(request);
+        assertEquals(request.getSerializedSize(), stream.available());
+
+        assertEquals(request, marshaller.parse(new KnownLengthStream(drain(stream))));
+    }
+
+    @Test
+    void streamsReadWithoutDrainingParseBack() {
+        AuthorizationCheck.AuthorizationCheckRequest request = request(100);
+        // The marshaller's own stream has a known length, so it is read into the thread buffer.
+        assertEquals(request, marshaller.parse(marshaller.stream(request)));
+        // Without a length hint the parser reads the stream as is.
+        assertEquals(request, marshaller.parse(new ByteArrayInputStream(request.toByteArray())));
+    }
+
+    @Test
+    void parsedMessagesDoNotShareTheReusedBuffer() throws Exception {
+        AuthorizationCheck.AuthorizationCheckRequest first = request(100);
+        AuthorizationCheck.AuthorizationCheckRequest parsed = marshaller.parse(new KnownLengthStream(first.toByteArray()));
+        marshaller.parse(new KnownLengthStream(request(200).toByteArray()));
+        encode(request(300));
+
+        assertEquals(first, parsed);
+        assertEquals(first.getRequestID(), parsed.getRequestID());
+    }
+
+    @Test
+    void prefixedStreamsParseAsOneMessage() throws Exception {
+        AuthorizationCheck.AuthorizationCheckRequest head = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest.newBuilder().setZoneID(42L))
+                .build();
+        AuthorizationCheck.AuthorizationCheckRequest body = request(10);
+        byte[] bytes = drain(PooledMarshaller.stream(head.toByteString(), body));
+
+        assertEquals(head.toBuilder().mergeFrom(body).build(), marshaller.parse(new KnownLengthStream(bytes)));
+    }
+
+    @Test
+    void emptyMessagesParseToTheDefaultInstance() {
+        assertSame(AuthorizationCheck.AuthorizationCheckRequest.getDefaultInstance(),
+                marshaller.parse(new KnownLengthStream(new byte[0])));
+    }
+
+    @Test
+    void reusesTheThreadBufferUpToItsBound() throws Exception {
+        // A thread of its own, so the buffer starts at its initial size whatever ran before.
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                byte[] first = encode(request(10));
+                assertSame(first, encode(request(20)));
+
+                byte[] grown = encode(request(100 * 1024));
+                assertNotSame(first, grown);
+                assertSame(grown, encode(request(10)));
+
+                byte[] beyond = encode(request(2 * 1024 * 1024));
+                assertTrue(beyond.length > 1024 * 1024);
+                // Buffers larger than the bound serve one call and are not kept.
+                assertSame(grown, encode(request(10)));
+
+                AuthorizationCheck.AuthorizationCheckRequest large = request(2 * 1024 * 1024);
+                assertEquals(large, marshaller.parse(new KnownLengthStream(drain(marshaller.stream(large)))));
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static byte[] encode(AuthorizationCheck.AuthorizationCheckRequest request) throws Exception {
+        int size = request.getSerializedSize();
+        byte[] buffer = PooledMarshaller.encode(request, size);
+        assertEquals(request, AuthorizationCheck.AuthorizationCheckRequest.parseFrom(ByteString.copyFrom(buffer, 0, size)));
+        return buffer;
+    }
+
+    private static byte[] drain(InputStream stream) throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        int drained = ((Drainable) stream).drainTo(target);
+        assertEquals(target.size(), drained);
+        return target.toByteArray();
+    }
+
+    private static AuthorizationCheck.AuthorizationCheckRequest request(int requestIdLength) {
+        return AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setRequestID("r".repeat(requestIdLength))
+                .setSubject(AuthorizationCheck.Subject.newBuilder().setType("workload").setID("amy"))
+                .setAction(AuthorizationCheck.Action.newBuilder().setName("view"))
+                .build();
+    }
+
+    /**
+     * A stream with a length hint, like the ones the transport hands to the marshaller.
+     */
+    private static final class KnownLengthStream extends ByteArrayInputStream implements KnownLength {
+        private KnownLengthStream(byte[] bytes) {
+            super(bytes);
+        }
+    }
+}
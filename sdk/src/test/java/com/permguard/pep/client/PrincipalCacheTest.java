@@ -0,0 +1,139 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.Principal;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrincipalCacheTest {
+
+    private static final long HOUR_SECONDS = 3600;
+
+    private final AtomicInteger mapped = new AtomicInteger();
+    private final Function<Principal, AuthorizationCheck.Principal> mapper = principal -> {
+        mapped.incrementAndGet();
+        return AuthorizationCheck.Principal.newBuilder().setID(principal.getId()).build();
+    };
+
+    @Test
+    void readsTheExpiryOfJwts() {
+        long exp = nowSeconds() + HOUR_SECONDS;
+        assertEquals(exp * 1000L, PrincipalCache.jwtExpiry(jwt("{\"sub\":\"a\",\"exp\":" + exp + "}")));
+        assertEquals(exp * 1000L, PrincipalCache.jwtExpiry(jwt("{\"aud\":[\"x\",\"y\"],\"ctx\":{\"exp\":1},\"exp\":" + exp + "}")));
+    }
+
+    @Test
+    void readsNoExpiryFromMissingOrMalformedClaims() {
+        assertEquals(-1, PrincipalCache.jwtExpiry(jwt("{\"sub\":\"a\"}")));
+        assertEquals(-1, PrincipalCache.jwtExpiry(jwt("{\"exp\":\"tomorrow\"}")));
+        assertEquals(-1, PrincipalCache.jwtExpiry(jwt("[1,2]")));
+        assertEquals(-1, PrincipalCache.jwtExpiry(jwt("{\"exp\":")));
+        assertEquals(-1, PrincipalCache.jwtExpiry("header.%%%.signature"));
+        assertEquals(-1, PrincipalCache.jwtExpiry("opaque-token"));
+        assertEquals(-1, PrincipalCache.jwtExpiry("one.dot"));
+    }
+
+    @Test
+    void cachesUntilTheTokenExpiry() {
+        PrincipalCache cache = new PrincipalCache(16, Long.MAX_VALUE / 2);
+        Principal principal = principal("a", jwt("{\"sub\":\"a\",\"exp\":" + (nowSeconds() + HOUR_SECONDS) + "}"));
+
+        AuthorizationCheck.Principal first = cache.principalOf(principal, mapper);
+        assertSame(first, cache.principalOf(principal, mapper));
+        assertEquals(1, mapped.get());
+    }
+
+    @Test
+    void doesNotCacheExpiredTokens() {
+        PrincipalCache cache = new PrincipalCache(16, 60_000);
+        Principal principal = principal("a", jwt("{\"sub\":\"a\",\"exp\":" + (nowSeconds() - 10) + "}"));
+
+        cache.principalOf(principal, mapper);
+        cache.principalOf(principal, mapper);
+        assertEquals(2, mapped.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void cachesTokensWithoutExpiryForTheDefaultTtl() throws Exception {
+        PrincipalCache cache = new PrincipalCache(16, 1_000);
+        Principal opaque = principal("a", "opaque-token");
+        Principal withoutExp = principal("b", jwt("{\"sub\":\"b\",\"iat\":" + nowSeconds() + "}"));
+        Principal malformed = principal("c", jwt("{\"exp\":\"tomorrow\"}"));
+        Principal distantExp = principal("d", jwt("{\"exp\":" + (nowSeconds() + HOUR_SECONDS) + "}"));
+
+        for (Principal principal : new Principal[] {opaque, withoutExp, malformed, distantExp}) {
+            cache.principalOf(principal, mapper);
+            cache.principalOf(principal, mapper);
+        }
+        assertEquals(4, mapped.get());
+
+        Thread.sleep(1_200);
+        for (Principal principal : new Principal[] {opaque, withoutExp, malformed, distantExp}) {
+            cache.principalOf(principal, mapper);
+        }
+        assertEquals(8, mapped.get());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void evictsTheOldestPrincipalWhenFull() {
+        PrincipalCache cache = new PrincipalCache(2, 60_000);
+        Principal a = principal("a", "token-a");
+        Principal b = principal("b", "token-b");
+        Principal c = principal("c", "token-c");
+
+        cache.principalOf(a, mapper);
+        cache.principalOf(b, mapper);
+        cache.principalOf(c, mapper);
+        assertEquals(3, mapped.get());
+        assertEquals(2, cache.size());
+
+        cache.principalOf(b, mapper);
+        cache.principalOf(c, mapper);
+        assertEquals(3, mapped.get());
+
+        cache.principalOf(a, mapper);
+        assertEquals(4, mapped.get());
+        assertEquals(2, cache.size());
+    }
+
+    private static Principal principal(String id, String token) {
+        return new Principal("user", id, null, token, null);
+    }
+
+    private static String jwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000L;
+    }
+}
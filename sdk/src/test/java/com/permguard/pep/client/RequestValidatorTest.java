@@ -0,0 +1,83 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZMatrixRequestBuilder;
+import com.permguard.pep.builder.AZRequestBuilder;
+import com.permguard.pep.builder.ActionBuilder;
+import com.permguard.pep.builder.ResourceBuilder;
+import com.permguard.pep.builder.SubjectBuilder;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import com.permguard.pep.model.request.Subject;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestValidatorTest {
+
+    @Test
+    void reportsEveryProblemWithItsPath() {
+        AZRequestBuilder builder = new AZRequestBuilder(1L, "store")
+                .withSubject(new Subject("user", null, null, null));
+        builder.withEvaluation(null);
+        builder.withEvaluation(new Evaluation("e1", null, new ResourceBuilder("").build(), null, null));
+        List<String> problems = RequestValidator.validate(builder.build());
+        assertEquals(List.of(
+                "subject.id is required",
+                "evaluations[0] must not be null",
+                "evaluations[1].resource.type is required",
+                "evaluations[1].action is required"), problems);
+    }
+
+    @Test
+    void reportsMatrixElementsWithTheirIndex() {
+        List<String> problems = RequestValidator.validate(new AZMatrixRequestBuilder(1L, "store")
+                .withSubject(new SubjectBuilder("amy").build())
+                .withSubject(new SubjectBuilder(null).build())
+                .withResource(new ResourceBuilder("Branch").build())
+                .withAction(new ActionBuilder("view").build())
+                .build());
+        assertEquals(List.of("subjects[1].id is required"), problems);
+    }
+
+    @Test
+    void validatingAValidRequestDoesNotAllocatePerEvaluation() {
+        AZRequestBuilder builder = new AZRequestBuilder(1L, "store")
+                .withSubject(new SubjectBuilder("amy").build())
+                .withAction(new ActionBuilder("view").build());
+        for (int i = 0; i < 100_000; i++) {
+            builder.withEvaluation(new Evaluation("e" + i, null, new ResourceBuilder("Branch").withId("b" + i).build(), null, null));
+        }
+        AZRequest request = builder.build();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(RequestValidator.validate(request).isEmpty());
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        RequestValidator.validate(request);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+    }
+}
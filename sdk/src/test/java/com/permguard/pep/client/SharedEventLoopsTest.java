@@ -0,0 +1,121 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.server.AZServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedEventLoopsTest {
+
+    @Test
+    void theLastReleaseShutsTheGroupDown() {
+        SharedEventLoops first = SharedEventLoops.acquire(1);
+        SharedEventLoops second = SharedEventLoops.acquire(1);
+        assertSame(first, second);
+
+        first.release();
+        assertFalse(first.group().isShuttingDown());
+        assertFalse(first.executor().isShutdown());
+
+        second.release();
+        assertTrue(first.group().isShuttingDown());
+        assertTrue(first.executor().isShutdown());
+    }
+
+    @Test
+    void anAcquireAfterTheLastReleaseRecreatesTheGroup() {
+        SharedEventLoops closed = SharedEventLoops.acquire(1);
+        closed.release();
+
+        SharedEventLoops recreated = SharedEventLoops.acquire(1);
+        try {
+            assertNotSame(closed, recreated);
+            assertTrue(closed.group().isShuttingDown());
+            assertFalse(recreated.group().isShuttingDown());
+            assertFalse(recreated.executor().isShutdown());
+        } finally {
+            recreated.release();
+        }
+    }
+
+    @Test
+    void clientsHoldTheGroupUntilTheLastOneShutsDown() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AZServer server = new AZServer();
+        server.start(port);
+        try {
+            AZClient first = connectedClient(port);
+            AZClient second = connectedClient(port);
+            SharedEventLoops shared = peek();
+
+            first.shutdown();
+            // The first client releases the group once its channel terminated, which leaves the second one holding it.
+            Thread.sleep(200);
+            assertSame(shared, peek());
+            assertFalse(shared.group().isShuttingDown());
+
+            second.shutdown();
+            assertTrue(shared.group().awaitTermination(10, TimeUnit.SECONDS));
+
+            AZClient third = connectedClient(port);
+            try {
+                SharedEventLoops recreated = peek();
+                assertNotSame(shared, recreated);
+                assertFalse(recreated.group().isShuttingDown());
+            } finally {
+                third.shutdown();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Gets the shared resources held by the clients, without keeping a reference to them.
+     */
+    private static SharedEventLoops peek() {
+        SharedEventLoops shared = SharedEventLoops.acquire(1);
+        shared.release();
+        return shared;
+    }
+
+    private static AZClient connectedClient(int port) {
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.setNativeTransport(true);
+        AZClient client = new AZClient(config);
+        client.check(new AZAtomicRequestBuilder(1, "store", "amy", "Branch", "view")
+                .withRequestId("request")
+                .withResourceId("b1")
+                .build());
+        return client;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.server.AZServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowCheckSamplerTest {
+
+    private static final AZRequest REQUEST = new AZAtomicRequestBuilder(3, "store", "amy", "Branch", "view")
+            .withRequestId("request")
+            .withResourceId("b1")
+            .build();
+
+    @Test
+    void keepsTheNewestSamplesWhenTheRingWraps() {
+        SlowCheckSampler sampler = new SlowCheckSampler(0, 3);
+        for (int i = 0; i < 10; i++) {
+            capture(sampler, i);
+        }
+
+        assertEquals(10, sampler.getCaptured());
+        List<SlowCheckSample> samples = sampler.getSamples();
+        assertEquals(4, samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            assertEquals(6 + i, samples.get(i).getSequence());
+            assertEquals(6 + i, samples.get(i).getRequestBytes());
+        }
+    }
+
+    @Test
+    void dumpNewWritesEachSampleOnce() throws Exception {
+        SlowCheckSampler sampler = new SlowCheckSampler(0, 4);
+        capture(sampler, 0);
+        capture(sampler, 1);
+
+        StringBuilder first = new StringBuilder();
+        assertEquals(2, sampler.dumpNew(first));
+        assertEquals(2, first.toString().lines().count());
+        assertTrue(first.toString().contains("seq=0,") && first.toString().contains("seq=1,"));
+        assertEquals(0, sampler.dumpNew(new StringBuilder()));
+
+        capture(sampler, 2);
+        StringBuilder second = new StringBuilder();
+        assertEquals(1, sampler.dumpNew(second));
+        assertTrue(second.toString().startsWith("SlowCheckSample{seq=2,"));
+
+        // The full dump is not affected by what was already dumped.
+        assertEquals(3, sampler.dump(new StringBuilder()));
+    }
+
+    @Test
+    void dumpNewSkipsOverwrittenSamples() throws Exception {
+        SlowCheckSampler sampler = new SlowCheckSampler(0, 4);
+        capture(sampler, 0);
+        sampler.dumpNew(new StringBuilder());
+        for (int i = 1; i < 11; i++) {
+            capture(sampler, i);
+        }
+
+        StringBuilder output = new StringBuilder();
+        assertEquals(4, sampler.dumpNew(output));
+        assertTrue(output.toString().startsWith("SlowCheckSample{seq=7,"));
+        assertEquals(0, sampler.dumpNew(new StringBuilder()));
+    }
+
+    @Test
+    void summarizesTheRequest() {
+        SlowCheckSampler sampler = new SlowCheckSampler(0, 1);
+        capture(sampler, 42);
+
+        SlowCheckSample sample = sampler.getSamples().get(0);
+        assertEquals("request", sample.getRequestId());
+        assertEquals(3, sample.getZoneId());
+        assertEquals("store", sample.getPolicyStoreId());
+        assertEquals("Branch", sample.getResourceType());
+        assertEquals("view", sample.getAction());
+        assertEquals(0, sample.getEvaluations());
+        assertEquals(42, sample.getRequestBytes());
+        assertEquals(60, sample.getTotalNanos());
+        assertTrue(!sample.toString().contains("amy") && !sample.toString().contains("b1"), sample.toString());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new SlowCheckSampler(-1, 8));
+        assertThrows(IllegalArgumentException.class, () -> new SlowCheckSampler(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SlowCheckSampler(10, (1 << 20) + 1));
+    }
+
+    @Test
+    void samplesOnlyChecksReachingTheThreshold() throws Exception {
+        SlowCheckSampler everything = new SlowCheckSampler(0, 8);
+        SlowCheckSampler nothing = new SlowCheckSampler(60_000, 8);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AZServer server = new AZServer();
+        server.start(port);
+        try {
+            check(port, everything, 3);
+            check(port, nothing, 3);
+        } finally {
+            server.stop();
+        }
+
+        assertEquals(3, everything.getCaptured());
+        for (SlowCheckSample sample : everything.getSamples()) {
+            assertEquals("OK", sample.getOutcome());
+            assertEquals("READY", sample.getChannelState());
+            assertTrue(sample.getRequestBytes() > 0 && sample.getResponseBytes() > 0, sample.toString());
+            assertTrue(sample.getRpcNanos() > 0, sample.toString());
+        }
+        assertEquals(0, nothing.getCaptured());
+    }
+
+    private static void check(int port, SlowCheckSampler sampler, int checks) {
+        AZConfig config = new AZConfig("localhost", port, true);
+        config.setSlowCheckSampler(sampler);
+        AZClient client = new AZClient(config);
+        try {
+            for (int i = 0; i < checks; i++) {
+                client.check(REQUEST);
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private static void capture(SlowCheckSampler sampler, long requestBytes) {
+        sampler.capture(REQUEST, requestBytes, 0, 10, 20, 30, "OK", "READY");
+    }
+}
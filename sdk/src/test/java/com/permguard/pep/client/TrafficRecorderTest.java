@@ -0,0 +1,233 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.client;
+
+import com.google.protobuf.CodedInputStream;
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.config.AZConfig;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Principal;
+import com.permguard.pep.model.response.AZResult;
+import com.permguard.pep.server.AZServer;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrafficRecorderTest {
+
+    private final AZServer server = new AZServer();
+    private final AtomicInteger calls = new AtomicInteger();
+    private int port;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void start() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server.start(port);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void replaysRecordedTrafficAtTheRecordedPace() throws Exception {
+        Path log = directory.resolve("traffic.log");
+        AZConfig config = new AZConfig("localhost", port, true);
+        TrafficRecorder recorder = new TrafficRecorder(log, 64);
+        config.setTrafficRecorder(recorder);
+        AZClient recording = new AZClient(config);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(recording.check(request("r" + i, null)));
+        }
+        Thread.sleep(200);
+        assertNotNull(recording.check(request("r5", null)));
+        recording.shutdown();
+        assertEquals(6, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+
+        List<AuthorizationCheck.AuthorizationCheckRequest> recorded = read(log);
+        assertEquals(6, recorded.size());
+        for (int i = 0; i < recorded.size(); i++) {
+            assertEquals("r" + i, recorded.get(i).getRequestID());
+        }
+
+        AZClient replaying = new AZClient(new AZConfig("localhost", port, true), countingCalls());
+        try {
+            TrafficReplayer.Result result = new TrafficReplayer(log).replay(replaying, 1, 4);
+            assertEquals(6, result.getRequests());
+            assertEquals(0, result.getFailed());
+            assertEquals(6, calls.get());
+            assertTrue(result.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(200), result.toString());
+        } finally {
+            replaying.shutdown();
+        }
+    }
+
+    @Test
+    void redactsPrincipalTokens() throws Exception {
+        Path log = directory.resolve("redacted.log");
+        try (TrafficRecorder recorder = new TrafficRecorder(log, 16)) {
+            recorder.record(request("tokens", new Principal("user", "amy", "idp", "identity-secret", "access-secret")));
+            recorder.record(request("access", new Principal("user", "bob", "idp", null, "access-secret")));
+            recorder.record(request("plain", new Principal("user", "eve", "idp", null, null)));
+        }
+
+        List<AuthorizationCheck.AuthorizationCheckRequest> recorded = read(log);
+        assertEquals(3, recorded.size());
+        AuthorizationCheck.Principal tokens = recorded.get(0).getAuthorizationModel().getPrincipal();
+        assertEquals("amy", tokens.getID());
+        assertEquals("idp", tokens.getSource());
+        assertEquals(TrafficRecorder.REDACTED, tokens.getIdentityToken());
+        assertEquals(TrafficRecorder.REDACTED, tokens.getAccessToken());
+        AuthorizationCheck.Principal access = recorded.get(1).getAuthorizationModel().getPrincipal();
+        assertFalse(access.hasIdentityToken());
+        assertEquals(TrafficRecorder.REDACTED, access.getAccessToken());
+        AuthorizationCheck.Principal plain = recorded.get(2).getAuthorizationModel().getPrincipal();
+        assertFalse(plain.hasIdentityToken());
+        assertFalse(plain.hasAccessToken());
+        assertFalse(Files.readString(log, StandardCharsets.ISO_8859_1).contains("secret"));
+    }
+
+    @Test
+    void countsRequestsTheWriterCouldNotTake() throws Exception {
+        Path log = directory.resolve("dropped.log");
+        int offered = 100_000;
+        TrafficRecorder recorder = new TrafficRecorder(log, 1);
+        AZRequest request = request("r", null);
+        for (int i = 0; i < offered; i++) {
+            recorder.record(request);
+        }
+        recorder.close();
+        recorder.record(request);
+
+        assertTrue(recorder.getDropped() > 0);
+        assertEquals(offered, recorder.getRecorded() + recorder.getDropped());
+        assertEquals(recorder.getRecorded(), read(log).size());
+    }
+
+    @Test
+    void releasesThePermitsOfChecksRejectedBeforeSending() throws Exception {
+        Path log = directory.resolve("rejected.log");
+        try (TrafficRecorder recorder = new TrafficRecorder(log, 16)) {
+            for (int i = 0; i < 3; i++) {
+                recorder.record(request("r" + i, null));
+            }
+        }
+        AZClient rejecting = new AZClient(new AZConfig("localhost", port, true)) {
+            @Override
+            public CompletableFuture<AZResult> checkAsync(AZRequest requestPayload) {
+                throw new IllegalStateException("rejected");
+            }
+        };
+        try {
+            TrafficReplayer.Result result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> new TrafficReplayer(log).replay(rejecting, 0, 1));
+            assertEquals(3, result.getRequests());
+            assertEquals(3, result.getFailed());
+        } finally {
+            rejecting.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotTrafficLogs() throws Exception {
+        Path log = Files.writeString(directory.resolve("other.log"), "not a traffic log");
+        AZClient client = new AZClient(new AZConfig("localhost", port, true));
+        try {
+            assertThrows(IOException.class, () -> new TrafficReplayer(log).replay(client, 0, 1));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private ClientInterceptor countingCalls() {
+        return new ClientInterceptor() {
+            @Override
+            public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions options, Channel next) {
+                calls.incrementAndGet();
+                return next.newCall(method, options);
+            }
+        };
+    }
+
+    private static AZRequest request(String requestId, Principal principal) {
+        AZAtomicRequestBuilder builder = new AZAtomicRequestBuilder(1, "store", "amy", "Branch", "view")
+                .withRequestId(requestId)
+                .withResourceId("b1");
+        if (principal != null) {
+            builder.withPrincipal(principal);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads the requests of a traffic log, checking the header and that the offsets never go back.
+     */
+    private static List<AuthorizationCheck.AuthorizationCheckRequest> read(Path log) throws IOException {
+        List<AuthorizationCheck.AuthorizationCheckRequest> requests = new ArrayList<>();
+        try (InputStream file = Files.newInputStream(log)) {
+            CodedInputStream input = CodedInputStream.newInstance(file);
+            assertEquals(TrafficRecorder.MAGIC, input.readFixed32());
+            assertEquals(TrafficRecorder.VERSION, input.readFixed32());
+            input.readFixed64();
+            long previous = 0;
+            while (!input.isAtEnd()) {
+                int length = input.readRawVarint32();
+                long offsetNanos = input.readFixed64();
+                assertTrue(offsetNanos >= previous);
+                previous = offsetNanos;
+                requests.add(AuthorizationCheck.AuthorizationCheckRequest.parseFrom(input.readRawBytes(length - 8)));
+            }
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.model.response;
+
+import com.permguard.pep.exception.ErrorKind;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionMatrixTest {
+
+    @Test
+    void indexesCellsBySubjectThenResourceThenAction() {
+        DecisionMatrix matrix = new DecisionMatrix(3, 5, 7, new long[2], new long[2], null);
+        assertEquals(105, matrix.getCellCount());
+        assertEquals(0, matrix.indexOf(0, 0, 0));
+        assertEquals(6, matrix.indexOf(0, 0, 6));
+        assertEquals(7, matrix.indexOf(0, 1, 0));
+        assertEquals(35, matrix.indexOf(1, 0, 0));
+        assertEquals((2 * 5 + 4) * 7 + 6, matrix.indexOf(2, 4, 6));
+        assertEquals(104, matrix.indexOf(2, 4, 6));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.indexOf(3, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.indexOf(0, 5, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.indexOf(0, 0, 7));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.indexOf(-1, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.isPermitted(105));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.isFailed(-1));
+    }
+
+    @Test
+    void readsPermittedAndFailedBits() {
+        long[] permitted = new long[2];
+        long[] failed = new long[2];
+        permitted[0] |= 1L << 3;
+        permitted[1] |= 1L << (70 - 64);
+        failed[1] |= 1L << (104 - 64);
+        AZResult failure = AZResult.failure(ErrorKind.INTERNAL, "chunk failed", null);
+        DecisionMatrix matrix = new DecisionMatrix(3, 5, 7, permitted, failed, failure);
+
+        assertTrue(matrix.isPermitted(3));
+        assertFalse(matrix.isPermitted(1, 0, 0));
+        assertTrue(matrix.isPermitted(70));
+        assertTrue(matrix.isPermitted(2, 0, 0));
+        assertFalse(matrix.isPermitted(104));
+        assertTrue(matrix.isFailed(2, 4, 6));
+        assertFalse(matrix.isFailed(70));
+        assertEquals(2, matrix.getPermittedCount());
+        assertEquals(1, matrix.getFailedCount());
+        assertFalse(matrix.isComplete());
+        assertSame(failure, matrix.getFailure());
+
+        DecisionMatrix complete = new DecisionMatrix(3, 5, 7, permitted, new long[2], null);
+        assertTrue(complete.isComplete());
+        assertNull(complete.getFailure());
+    }
+
+    @Test
+    void findsPermittedCellsAcrossWordBoundaries() {
+        int cells = 3 * 10 * 7;
+        long[] permitted = new long[(cells + 63) >>> 6];
+        int[] set = {0, 63, 64, 127, 130, 200, cells - 1};
+        for (int index : set) {
+            permitted[index >>> 6] |= 1L << index;
+        }
+        DecisionMatrix matrix = new DecisionMatrix(3, 10, 7, permitted, new long[permitted.length], null);
+
+        int found = 0;
+        for (int index = matrix.nextPermitted(0); index >= 0; index = matrix.nextPermitted(index + 1)) {
+            assertEquals(set[found++], index);
+        }
+        assertEquals(set.length, found);
+        assertEquals(63, matrix.nextPermitted(1));
+        assertEquals(64, matrix.nextPermitted(64));
+        assertEquals(130, matrix.nextPermitted(128));
+        assertEquals(200, matrix.nextPermitted(131));
+        assertEquals(-1, matrix.nextPermitted(cells));
+        assertEquals(-1, matrix.nextPermitted(-1));
+    }
+
+    @Test
+    void ignoresBitsPastTheLastCell() {
+        // 70 cells: bits 70 to 127 of the last word are padding.
+        long[] permitted = {0, -1L << 10};
+        DecisionMatrix matrix = new DecisionMatrix(2, 5, 7, permitted, new long[2], null);
+        assertEquals(-1, matrix.nextPermitted(0));
+        assertEquals(-1, matrix.nextPermitted(69));
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceContextTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    void parsesAVersion00Traceparent() {
+        TraceContext context = TraceContext.parse(TRACEPARENT, "congo=t61rcWkgMzE");
+        assertNotNull(context);
+        assertEquals(0x4bf92f3577b34da6L, context.getTraceIdHigh());
+        assertEquals(0xa3ce929d0e0e4736L, context.getTraceIdLow());
+        assertEquals(0x00f067aa0ba902b7L, context.getSpanId());
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getSpanIdHex());
+        assertTrue(context.isSampled());
+        assertEquals("congo=t61rcWkgMzE", context.getTraceState());
+        assertEquals(TRACEPARENT, context.toTraceparent());
+    }
+
+    @Test
+    void readsTheSampledFlagOnly() {
+        assertFalse(TraceContext.parse(TRACEPARENT.substring(0, 53) + "00", null).isSampled());
+        assertFalse(TraceContext.parse(TRACEPARENT.substring(0, 53) + "02", null).isSampled());
+        assertTrue(TraceContext.parse(TRACEPARENT.substring(0, 53) + "03", null).isSampled());
+        assertTrue(TraceContext.parse(TRACEPARENT.substring(0, 53) + "ff", null).isSampled());
+        assertEquals(TRACEPARENT.substring(0, 53) + "00", TraceContext.parse(TRACEPARENT.substring(0, 53) + "02", null).toTraceparent());
+    }
+
+    @Test
+    void formatsTheFull128BitTraceId() {
+        TraceContext context = new TraceContext(-1L, 1L, Long.MIN_VALUE, false, null);
+        assertEquals("00-ffffffffffffffff0000000000000001-8000000000000000-00", context.toTraceparent());
+        TraceContext parsed = TraceContext.parse(context.toTraceparent(), null);
+        assertEquals(-1L, parsed.getTraceIdHigh());
+        assertEquals(1L, parsed.getTraceIdLow());
+        assertEquals(Long.MIN_VALUE, parsed.getSpanId());
+    }
+
+    @Test
+    void rejectsInvalidHeaders() {
+        assertNull(TraceContext.parse(null, null));
+        assertNull(TraceContext.parse("", null));
+        assertNull(TraceContext.parse(TRACEPARENT + "-00", null));
+        assertNull(TraceContext.parse("01" + TRACEPARENT.substring(2), null));
+        assertNull(TraceContext.parse("ff" + TRACEPARENT.substring(2), null));
+        assertNull(TraceContext.parse(TRACEPARENT.replace('-', '_'), null));
+        assertNull(TraceContext.parse(TRACEPARENT.toUpperCase(), null));
+        assertNull(TraceContext.parse("00-+bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", null));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-+1", null));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e473g-00f067aa0ba902b7-01", null));
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01", null));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01", null));
+    }
+
+    @Test
+    void childrenKeepTheTraceAndItsState() {
+        TraceContext parent = TraceContext.parse(TRACEPARENT, "congo=t61rcWkgMzE");
+        TraceContext child = parent.child(42);
+        assertEquals(parent.getTraceId(), child.getTraceId());
+        assertEquals(42, child.getSpanId());
+        assertEquals(parent.isSampled(), child.isSampled());
+        assertEquals("congo=t61rcWkgMzE", child.getTraceState());
+        assertThrows(IllegalArgumentException.class, () -> parent.child(0));
+    }
+}
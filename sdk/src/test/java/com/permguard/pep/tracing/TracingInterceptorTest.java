@@ -0,0 +1,180 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.tracing;
+
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.internal.proto.V1PDPServiceGrpc;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracingInterceptorTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private final RecordingChannel channel = new RecordingChannel();
+    private final List<Span> spans = new ArrayList<>();
+
+    @Test
+    void sendsAChildOfTheCurrentContext() {
+        TraceContext parent = TraceContext.parse(TRACEPARENT, "congo=t61rcWkgMzE,rojo=00f067aa0ba902b7");
+        Status status = call(new TracingInterceptor(tracer(parent)));
+
+        assertEquals(Status.Code.OK, status.getCode());
+        TraceContext sent = TraceContext.parse(channel.headers.get(TracingInterceptor.TRACEPARENT), null);
+        assertNotNull(sent);
+        assertEquals(parent.getTraceId(), sent.getTraceId());
+        assertNotEquals(parent.getSpanId(), sent.getSpanId());
+        assertTrue(sent.isSampled());
+        assertEquals("congo=t61rcWkgMzE,rojo=00f067aa0ba902b7", channel.headers.get(TracingInterceptor.TRACESTATE));
+
+        assertEquals(1, spans.size());
+        Span span = spans.get(0);
+        assertEquals(sent.getSpanId(), span.getContext().getSpanId());
+        assertEquals(parent.getSpanId(), span.getParentSpanId());
+        assertEquals(V1PDPServiceGrpc.getAuthorizationCheckMethod().getFullMethodName(), span.getMethod());
+        assertEquals("OK", span.getStatusCode());
+    }
+
+    @Test
+    void startsASampledRootWithoutContext() {
+        call(new TracingInterceptor(tracer(null)));
+
+        TraceContext sent = TraceContext.parse(channel.headers.get(TracingInterceptor.TRACEPARENT), null);
+        assertNotNull(sent);
+        assertTrue(sent.isSampled());
+        assertNull(channel.headers.get(TracingInterceptor.TRACESTATE));
+        assertEquals(1, spans.size());
+        assertEquals(0, spans.get(0).getParentSpanId());
+    }
+
+    @Test
+    void propagatesUnsampledContextsWithoutRecording() {
+        TraceContext parent = TraceContext.parse(TRACEPARENT.substring(0, 53) + "00", "congo=t61rcWkgMzE");
+        call(new TracingInterceptor(tracer(parent)));
+
+        TraceContext sent = TraceContext.parse(channel.headers.get(TracingInterceptor.TRACEPARENT), null);
+        assertEquals(parent.getTraceId(), sent.getTraceId());
+        assertFalse(sent.isSampled());
+        assertEquals("congo=t61rcWkgMzE", channel.headers.get(TracingInterceptor.TRACESTATE));
+        assertTrue(spans.isEmpty());
+    }
+
+    @Test
+    void aThrowingTracerDoesNotFailTheCall() {
+        Tracer throwing = new Tracer() {
+            @Override
+            public TraceContext currentContext() {
+                throw new IllegalStateException("no context");
+            }
+
+            @Override
+            public void onSpanEnd(Span span) {
+                throw new IllegalStateException("no exporter");
+            }
+        };
+        Status status = call(new TracingInterceptor(throwing));
+
+        assertEquals(Status.Code.OK, status.getCode());
+        assertNotNull(TraceContext.parse(channel.headers.get(TracingInterceptor.TRACEPARENT), null));
+    }
+
+    private Tracer tracer(TraceContext current) {
+        return new Tracer() {
+            @Override
+            public TraceContext currentContext() {
+                return current;
+            }
+
+            @Override
+            public void onSpanEnd(Span span) {
+                spans.add(span);
+            }
+        };
+    }
+
+    /**
+     * Starts a call through the interceptor and returns the status its listener was closed with.
+     */
+    private Status call(TracingInterceptor interceptor) {
+        Status[] closed = new Status[1];
+        ClientCall<AuthorizationCheck.AuthorizationCheckRequest, AuthorizationCheck.AuthorizationCheckResponse> call =
+                interceptor.interceptCall(V1PDPServiceGrpc.getAuthorizationCheckMethod(), CallOptions.DEFAULT, channel);
+        call.start(new ClientCall.Listener<>() {
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                closed[0] = status;
+            }
+        }, new Metadata());
+        return closed[0];
+    }
+
+    /**
+     * Channel whose calls record their headers and close as soon as they start.
+     */
+    private static final class RecordingChannel extends Channel {
+        private Metadata headers;
+
+        @Override
+        public <Q, R> ClientCall<Q, R> newCall(MethodDescriptor<Q, R> method, CallOptions options) {
+            return new ClientCall<>() {
+                @Override
+                public void start(Listener<R> listener, Metadata metadata) {
+                    headers = metadata;
+                    listener.onClose(Status.OK, new Metadata());
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendMessage(Q message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "localhost";
+        }
+    }
+}
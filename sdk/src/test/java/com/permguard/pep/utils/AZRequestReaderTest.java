@@ -0,0 +1,195 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+package com.permguard.pep.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Evaluation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AZRequestReaderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String ATOMIC = """
+            {
+              "authorization_model": {
+                "zone_id": 646309364259,
+                "policy_store": {"kind": "ledger", "id": "917e468442634c5486319ca6f09475e8"},
+                "principal": {"type": "user", "id": "amy.smith@acmecorp.com", "source": "keycloak",
+                              "identity_token": "eyJhbGciOiJub25lIn0.e30.", "access_token": "opaque"},
+                "entities": {
+                  "schema": "cedar",
+                  "items": [
+                    {"uid": {"type": "PharmaAuthZFlow::Platform::BranchInfo", "id": "subscription"},
+                     "attrs": {"active": true, "rank": 3, "score": 0.5, "tags": ["a", "b"], "owner": null},
+                     "parents": []}
+                  ]
+                }
+              },
+              "request_id": "abc1",
+              "subject": {"type": "workload", "id": "platform-creator", "source": "keycloak",
+                          "properties": {"isSuperUser": true, "level": 2147483648}},
+              "resource": {"type": "PharmaAuthZFlow::Platform::Subscription", "id": "e3a786fd07e24bfa95ba4341d3695ae8",
+                           "properties": {"isEnabled": true, "quota": 12345678901234567890123}},
+              "action": {"name": "PharmaAuthZFlow::Platform::Action::create", "properties": {"isEnabled": false}},
+              "context": {
+                "time": "2025-01-23T16:17:46+00:00",
+                "count": -7,
+                "ratio": 1e3,
+                "nested": {"list": [1, 2.5, "three", [true, null], {"deep": {}}]},
+                "empty": []
+              }
+            }
+            """;
+
+    // The Evaluation model binds its ID as "requestId", unlike the "request_id" of the request.
+    private static final String MULTI = """
+            {
+              "authorization_model": {
+                "zone_id": 1,
+                "policy_store": {"kind": "ledger", "id": "store"},
+                "principal": {"type": "user", "id": "amy"}
+              },
+              "request_id": "batch",
+              "subject": {"type": "user", "id": "amy"},
+              "context": {"shared": 1},
+              "evaluations": [
+                {"requestId": "e1", "resource": {"type": "Branch", "id": "b1"}, "action": {"name": "view"}},
+                {"requestId": "e2", "subject": {"type": "workload", "id": "job"},
+                 "resource": {"type": "Branch", "id": "b2", "properties": {"size": 10}},
+                 "action": {"name": "edit", "properties": {"at": 1.25}}, "context": {"reason": ["audit"]}}
+              ]
+            }
+            """;
+
+    @Test
+    void readsAtomicRequestsLikeJackson() throws Exception {
+        assertSameRequest(ATOMIC);
+    }
+
+    @Test
+    void readsMultiEvaluationRequestsLikeJackson() throws Exception {
+        assertSameRequest(MULTI);
+    }
+
+    @Test
+    void readsMissingAndNullMembersLikeJackson() throws Exception {
+        assertSameRequest("{}");
+        assertSameRequest("""
+                {"request_id": null, "authorization_model": {"zone_id": 5, "policy_store": null},
+                 "subject": null, "context": null, "evaluations": []}
+                """);
+        assertNull(AZRequestReader.read("null"));
+        assertNull(MAPPER.readValue("null", AZRequest.class));
+    }
+
+    @Test
+    void readsEveryInputFormTheSame() throws Exception {
+        byte[] bytes = ("  " + ATOMIC + "  ").getBytes(StandardCharsets.UTF_8);
+        Object expected = MAPPER.valueToTree(MAPPER.readValue(ATOMIC, AZRequest.class));
+        assertEquals(expected, MAPPER.valueToTree(AZRequestReader.read(bytes, 2, bytes.length - 4)));
+        assertEquals(expected, MAPPER.valueToTree(AZRequestReader.read(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    void rejectsWhatJacksonRejects() {
+        for (String json : List.of(
+                "{\"unknown\": 1}",
+                "{\"subject\": {\"type\": \"user\", \"id\": \"amy\", \"unknown\": true}}",
+                "{\"authorization_model\": {\"zone_id\": 1, \"extra\": {}}}",
+                "{\"request_id\": \"a\"",
+                "[]")) {
+            assertThrows(IOException.class, () -> MAPPER.readValue(json, AZRequest.class), json);
+            assertThrows(IOException.class, () -> AZRequestReader.read(json), json);
+        }
+    }
+
+    @Test
+    void ignoresTrailingContentLikeJackson() throws Exception {
+        assertSameRequest("{\"request_id\": \"a\"} trailing");
+    }
+
+    /**
+     * Reads a document with both readers and checks they built the same request, down to the Java types of the
+     * values in property maps.
+     */
+    private static void assertSameRequest(String json) throws IOException {
+        AZRequest bound = MAPPER.readValue(json, AZRequest.class);
+        AZRequest read = AZRequestReader.read(json);
+        assertEquals(MAPPER.valueToTree(bound), MAPPER.valueToTree(read));
+
+        assertSameValues(bound.getContext(), read.getContext());
+        if (bound.getSubject() != null) {
+            assertSameValues(bound.getSubject().getProperties(), read.getSubject().getProperties());
+        }
+        if (bound.getResource() != null) {
+            assertSameValues(bound.getResource().getProperties(), read.getResource().getProperties());
+        }
+        if (bound.getAction() != null) {
+            assertSameValues(bound.getAction().getProperties(), read.getAction().getProperties());
+        }
+        if (bound.getAuthorizationModel() != null && bound.getAuthorizationModel().getEntities() != null) {
+            assertSameValues(bound.getAuthorizationModel().getEntities().getItems(),
+                    read.getAuthorizationModel().getEntities().getItems());
+        }
+        List<Evaluation> boundEvaluations = bound.getEvaluations() != null ? bound.getEvaluations() : List.of();
+        List<Evaluation> readEvaluations = read.getEvaluations() != null ? read.getEvaluations() : List.of();
+        assertEquals(boundEvaluations.size(), readEvaluations.size());
+        for (int i = 0; i < boundEvaluations.size(); i++) {
+            assertSameValues(boundEvaluations.get(i).getContext(), readEvaluations.get(i).getContext());
+        }
+    }
+
+    private static void assertSameValues(Object expected, Object actual) {
+        if (expected == null || actual == null) {
+            assertEquals(expected, actual);
+            return;
+        }
+        assertEquals(expected.getClass(), actual.getClass(), String.valueOf(expected));
+        if (expected instanceof Map<?, ?> expectedMap) {
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            assertEquals(new ArrayList<>(expectedMap.keySet()), new ArrayList<>(actualMap.keySet()));
+            for (Map.Entry<?, ?> entry : expectedMap.entrySet()) {
+                assertSameValues(entry.getValue(), actualMap.get(entry.getKey()));
+            }
+        } else if (expected instanceof List<?> expectedList) {
+            List<?> actualList = (List<?>) actual;
+            assertEquals(expectedList.size(), actualList.size());
+            Iterator<?> actualValues = actualList.iterator();
+            for (Object value : expectedList) {
+                assertSameValues(value, actualValues.next());
+            }
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+
+package com.permguard.pep.utils;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Struct;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GrpcStructMapperTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    enum Level {
+        LOW, HIGH;
+
+        @JsonValue
+        String code() {
+            return name().toLowerCase();
+        }
+    }
+
+    public static final class Account {
+        private final String id;
+        private final List<Integer> limits;
+
+        Account(String id, List<Integer> limits) {
+            this.id = id;
+            this.limits = limits;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<Integer> getLimits() {
+            return limits;
+        }
+    }
+
+    @Test
+    void convertsScalarsLikeTheJsonRoundTrip() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("string", "text");
+        map.put("character", 'c');
+        map.put("true", true);
+        map.put("int", 42);
+        map.put("long", Long.MAX_VALUE);
+        map.put("short", (short) 7);
+        map.put("byte", (byte) -3);
+        map.put("double", 0.1);
+        map.put("float", 0.1f);
+        map.put("bigDecimal", new BigDecimal("1E+3"));
+        map.put("bigInteger", BigInteger.TEN.pow(30));
+        map.put("atomic", new AtomicLong(5));
+        map.put("null", null);
+        assertSameAsJsonRoundTrip(map);
+    }
+
+    @Test
+    void convertsNonFiniteNumbersToStrings() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("nan", Double.NaN);
+        map.put("infinity", Double.POSITIVE_INFINITY);
+        map.put("negativeInfinity", Double.NEGATIVE_INFINITY);
+        map.put("floatNan", Float.NaN);
+        assertSameAsJsonRoundTrip(map);
+        assertEquals("NaN", GrpcStructMapper.toGrpcStruct(map).getFieldsOrThrow("nan").getStringValue());
+    }
+
+    @Test
+    void convertsContainersLikeTheJsonRoundTrip() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("list", List.of(1, "a", List.of(true)));
+        map.put("set", new LinkedHashSet<>(List.of("x", "y")));
+        map.put("ints", new int[] {1, 2});
+        map.put("strings", new String[] {"a", null});
+        map.put("bytes", new byte[] {1, 2, 3});
+        map.put("chars", new char[] {'h', 'i'});
+        map.put("nested", Map.of("inner", Map.of("n", 1)));
+        map.put("intKeys", Map.of(1, "one"));
+        map.put("enumKeys", Map.of(TimeUnit.SECONDS, 1));
+        assertSameAsJsonRoundTrip(map);
+    }
+
+    @Test
+    void convertsOtherObjectsLikeTheJsonRoundTrip() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("path", Path.of("/tmp/permguard"));
+        map.put("uri", URI.create("https://permguard.com"));
+        map.put("uuid", UUID.fromString("7b0b0b2c-2f3a-4b51-9a0e-6d2f1d1c4e5a"));
+        map.put("date", new Date(1_700_000_000_123L));
+        map.put("enum", TimeUnit.SECONDS);
+        map.put("annotatedEnum", Level.HIGH);
+        map.put("builder", new StringBuilder("built"));
+        map.put("bean", new Account("acme", List.of(10, 20)));
+        assertSameAsJsonRoundTrip(map);
+    }
+
+    /**
+     * Compares with the conversion the mapper used to do: the map written by Jackson, then parsed by JsonFormat.
+     */
+    private static void assertSameAsJsonRoundTrip(Map<String, Object> map) throws Exception {
+        Struct.Builder expected = Struct.newBuilder();
+        JsonFormat.parser().merge(MAPPER.writeValueAsString(map), expected);
+        assertEquals(expected.build(), GrpcStructMapper.toGrpcStruct(map));
+    }
+}
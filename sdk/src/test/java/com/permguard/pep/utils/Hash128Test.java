@@ -0,0 +1,60 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class Hash128Test {
+
+    private static final long KEY0 = 0x0706050403020100L;
+    private static final long KEY1 = 0x0f0e0d0c0b0a0908L;
+
+    @Test
+    void matchesTheSipHash128ReferenceVectors() {
+        Hash128 empty = new Hash128(KEY0, KEY1);
+        assertEquals(0xe6a825ba047f81a3L, empty.high());
+        assertEquals(0x930255c71472f66dL, empty.low());
+
+        Hash128 word = new Hash128(KEY0, KEY1).putLong(0x0706050403020100L);
+        assertEquals(0x61f55862baa9623bL, word.high());
+        assertEquals(0xb49714f364e2830fL, word.low());
+    }
+
+    @Test
+    void readingTheHashDoesNotChangeTheState() {
+        Hash128 hash = new Hash128(KEY0, KEY1).putString("subject");
+        hash.high();
+        hash.putString("resource");
+        Hash128 expected = new Hash128(KEY0, KEY1).putString("subject").putString("resource");
+        assertEquals(expected.high(), hash.high());
+        assertEquals(expected.low(), hash.low());
+    }
+
+    @Test
+    void differentKeysGiveDifferentHashes() {
+        Hash128 first = new Hash128(KEY0, KEY1).putString("amy");
+        Hash128 second = new Hash128(KEY1, KEY0).putString("amy");
+        assertNotEquals(first.high(), second.high());
+        assertNotEquals(first.low(), second.low());
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.google.protobuf.util.JsonFormat;
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.builder.PrincipalBuilder;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZRequest;
+import com.permguard.pep.model.request.Entities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fingerprint of a typical atomic request, against hashing its protobuf or JSON encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestFingerprintBenchmark {
+
+    private AZRequest request;
+    private AuthorizationCheck.AuthorizationCheckRequest grpcRequest;
+
+    @Setup
+    public void setUp() {
+        request = new AZAtomicRequestBuilder(273165098782L, "fd1ac44e4afa4fc4beec622494d3175a", "platform-creator",
+                "MagicFarmacia::Platform::Subscription", "MagicFarmacia::Platform::Action::create")
+                .withRequestId("1234")
+                .withPrincipal(new PrincipalBuilder("amy.smith@acmecorp.com").withSource("keycloak").build())
+                .withEntitiesItems("cedar", new Entities("cedar", List.of(Map.of(
+                        "uid", Map.of("type", "MagicFarmacia::Platform::BranchInfo", "id", "subscription"),
+                        "attrs", Map.of("active", true),
+                        "parents", List.of()))))
+                .withSubjectSource("keycloak")
+                .withSubjectProperty("isSuperUser", true)
+                .withResourceId("e3a786fd07e24bfa95ba4341d3695ae8")
+                .withResourceProperty("isEnabled", true)
+                .withActionProperty("isEnabled", true)
+                .withContextProperty("time", "2025-01-23T16:17:46+00:00")
+                .withContextProperty("isSubscriptionActive", true)
+                .build();
+        grpcRequest = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest.newBuilder().setZoneID(273165098782L))
+                .setSubject(AuthorizationCheck.Subject.newBuilder().setType("workload").setID("platform-creator")
+                        .setProperties(GrpcStructMapper.toGrpcStruct(request.getSubject().getProperties())))
+                .setResource(AuthorizationCheck.Resource.newBuilder().setType("MagicFarmacia::Platform::Subscription")
+                        .setID("e3a786fd07e24bfa95ba4341d3695ae8"))
+                .setAction(AuthorizationCheck.Action.newBuilder().setName("MagicFarmacia::Platform::Action::create"))
+                .setContext(GrpcStructMapper.toGrpcStruct(request.getContext()))
+                .build();
+    }
+
+    @Benchmark
+    public long fingerprint() {
+        Hash128 hash = RequestFingerprint.of(request);
+        return hash.high() ^ hash.low();
+    }
+
+    @Benchmark
+    public long fingerprintGrpc() {
+        Hash128 hash = RequestFingerprint.of(grpcRequest);
+        return hash.high() ^ hash.low();
+    }
+
+    @Benchmark
+    public long hashProtobufEncoding() {
+        byte[] bytes = grpcRequest.toByteArray();
+        Hash128 hash = new Hash128().putBytes(bytes, 0, bytes.length);
+        return hash.high() ^ hash.low();
+    }
+
+    @Benchmark
+    public long hashJsonEncoding() throws Exception {
+        String json = JsonFormat.printer().print(grpcRequest);
+        Hash128 hash = new Hash128().putString(json);
+        return hash.high() ^ hash.low();
+    }
+}
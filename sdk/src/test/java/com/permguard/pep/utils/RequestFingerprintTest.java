@@ -0,0 +1,147 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.permguard.pep.builder.AZAtomicRequestBuilder;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import com.permguard.pep.model.request.AZRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RequestFingerprintTest {
+
+    @Test
+    void propertyOrderDoesNotMatter() {
+        Map<String, Object> forward = new LinkedHashMap<>();
+        Map<String, Object> backward = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            forward.put("key" + i, i);
+            backward.put("key" + (19 - i), 19 - i);
+        }
+        assertEquals(fingerprintOf(request(forward)), fingerprintOf(request(backward)));
+        assertEquals(fingerprintOf(request(forward)), fingerprintOf(request(new TreeMap<>(backward))));
+    }
+
+    @Test
+    void numbersHashTheWayThePdpSeesThem() {
+        assertEquals(fingerprintOf(request(Map.of("n", 1))), fingerprintOf(request(Map.of("n", 1.0d))));
+        assertNotEquals(fingerprintOf(request(Map.of("n", 1))), fingerprintOf(request(Map.of("n", "1"))));
+    }
+
+    @Test
+    void fieldBoundariesAreNotAmbiguous() {
+        assertNotEquals(fingerprintOf(request(Map.of("ab", "c"))), fingerprintOf(request(Map.of("a", "bc"))));
+        assertNotEquals(fingerprintOf(request(Map.of("a", List.of("b", "c")))),
+                fingerprintOf(request(Map.of("a", List.of(List.of("b"), "c")))));
+        assertNotEquals(fingerprintOf(request(Map.of("a", ""))), fingerprintOf(request(mapOf("a", null))));
+        assertNotEquals(fingerprintOf(request(Map.of("a", Map.of()))), fingerprintOf(request(Map.of("a", List.of()))));
+        assertNotEquals(fingerprintOf(request(Map.of())), fingerprintOf(request(Map.of("", ""))));
+    }
+
+    @Test
+    void objectsHashTheValueTheMapperSends() {
+        long now = 1_700_000_000_123L;
+        // Date.toString() has second precision, the mapper sends epoch millis.
+        assertNotEquals(fingerprintOf(request(Map.of("at", new Date(now)))),
+                fingerprintOf(request(Map.of("at", new Date(now + 1)))));
+        assertEquals(fingerprintOf(request(Map.of("at", new Date(now)))), fingerprintOf(request(Map.of("at", now))));
+        assertEquals(fingerprintOf(request(Map.of("ids", Set.of("a")))), fingerprintOf(request(Map.of("ids", List.of("a")))));
+        assertEquals(fingerprintOf(request(Map.of("m", Map.of(1, "a")))), fingerprintOf(request(Map.of("m", Map.of("1", "a")))));
+    }
+
+    @Test
+    void requestAndMappedRequestHaveTheSameFingerprint() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("at", new Date(1_700_000_000_123L));
+        context.put("tags", new HashSet<>(List.of("a", "b")));
+        context.put("nested", Map.of(2, List.of(1, 2.5, true)));
+        context.put("missing", null);
+        context.put("ratio", Double.NaN);
+        context.put("weight", 0.1f);
+        context.put("home", Path.of("/home/amy"));
+        context.put("unit", TimeUnit.SECONDS);
+        context.put("units", Map.of(TimeUnit.SECONDS, 1));
+        AZRequest request = request(context);
+
+        AuthorizationCheck.AuthorizationCheckRequest grpcRequest = AuthorizationCheck.AuthorizationCheckRequest.newBuilder()
+                .setAuthorizationModel(AuthorizationCheck.AuthorizationModelRequest.newBuilder()
+                        .setZoneID(1L)
+                        .setPolicyStore(AuthorizationCheck.PolicyStore.newBuilder().setKind("ledger").setID("store")))
+                .setSubject(AuthorizationCheck.Subject.newBuilder().setType("workload").setID("amy"))
+                .setResource(AuthorizationCheck.Resource.newBuilder().setType("Branch").setID("b1"))
+                .setAction(AuthorizationCheck.Action.newBuilder().setName("view"))
+                .setContext(GrpcStructMapper.toGrpcStruct(context))
+                .build();
+        assertEquals(fingerprintOf(request), fingerprintOf(RequestFingerprint.of(grpcRequest)));
+    }
+
+    @Test
+    void distinctRequestsDoNotCollide() {
+        Set<List<Long>> seen = new HashSet<>();
+        Set<Long> highs = new HashSet<>();
+        Set<Long> lows = new HashSet<>();
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            // Neighbouring values differ in a single bit or character, the worst case for a weak mix.
+            Map<String, Object> context = Map.of("i", i, "s", Integer.toBinaryString(i), "b", (i & 1) == 0);
+            Hash128 hash = RequestFingerprint.of(request(context));
+            seen.add(List.of(hash.high(), hash.low()));
+            highs.add(hash.high());
+            lows.add(hash.low());
+        }
+        assertEquals(count, seen.size());
+        assertEquals(count, highs.size());
+        assertEquals(count, lows.size());
+    }
+
+    private static AZRequest request(Map<String, Object> context) {
+        AZAtomicRequestBuilder builder = new AZAtomicRequestBuilder(1L, "store", "amy", "Branch", "view")
+                .withResourceId("b1");
+        context.forEach(builder::withContextProperty);
+        return builder.build();
+    }
+
+    private static Map<String, Object> mapOf(String key, Object value) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(key, value);
+        return map;
+    }
+
+    private static List<Long> fingerprintOf(AZRequest request) {
+        return fingerprintOf(RequestFingerprint.of(request));
+    }
+
+    private static List<Long> fingerprintOf(Hash128 hash) {
+        return List.of(hash.high(), hash.low());
+    }
+}
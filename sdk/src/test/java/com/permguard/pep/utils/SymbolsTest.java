@@ -0,0 +1,80 @@
+/**
+ *   Copyright 2024 Nitro Agility S.r.l.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  SPDX-License-Identifier: Apache-2.0
+  */
+
+
+package com.permguard.pep.utils;
+
+import com.google.protobuf.ByteString;
+import com.permguard.pep.internal.proto.AuthorizationCheck;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SymbolsTest {
+
+    @Test
+    void internsUpToTheCapAndRegistersBeyondIt() {
+        SymbolTable table = new SymbolTable(2);
+        String first = table.intern(new String("user"));
+        table.intern("workload");
+
+        String overflow = new String("service");
+        assertSame(overflow, table.intern(overflow));
+        assertEquals(2, table.size());
+        assertSame(first, table.intern(new String("user")));
+
+        String registered = table.register(new String("service"));
+        assertEquals(3, table.size());
+        assertSame(registered, table.intern(new String("service")));
+    }
+
+    @Test
+    void lookingUpTheEncodingDoesNotRegister() {
+        SymbolTable table = new SymbolTable(16);
+        assertNull(table.encodedOf("user"));
+        assertEquals(0, table.size());
+
+        table.register("user");
+        assertSame(table.encodedOf("user"), table.encodedOf(new String("user")));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void returnsCanonicalInstances() {
+        assertSame(Symbols.USER, Symbols.intern(new String("user")));
+        assertSame(Symbols.LEDGER, Symbols.register(new String("ledger")));
+        assertSame(Symbols.encodedOf(Symbols.CEDAR), Symbols.encodedOf(new String("cedar")));
+        assertNull(Symbols.intern(null));
+        assertNull(Symbols.encodedOf(null));
+    }
+
+    @Test
+    void encodesTheSameBytesWithAndWithoutASymbol() {
+        ByteString encoded = Symbols.encodedOf(Symbols.WORKLOAD);
+        assertNotNull(encoded);
+        assertEquals(ByteString.copyFromUtf8("workload"), encoded);
+
+        AuthorizationCheck.Subject withSymbol = AuthorizationCheck.Subject.newBuilder().setTypeBytes(encoded).build();
+        AuthorizationCheck.Subject withoutSymbol = AuthorizationCheck.Subject.newBuilder().setType("workload").build();
+        assertEquals(withoutSymbol.toByteString(), withSymbol.toByteString());
+        assertEquals("workload", withSymbol.getType());
+    }
+}